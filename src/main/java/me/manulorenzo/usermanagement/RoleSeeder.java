@@ -2,6 +2,7 @@ package me.manulorenzo.usermanagement;
 
 import me.manulorenzo.usermanagement.entity.Role;
 import me.manulorenzo.usermanagement.repository.RoleRepository;
+import me.manulorenzo.usermanagement.service.RoleRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -16,14 +17,17 @@ public class RoleSeeder implements CommandLineRunner {
     private final String adminRoleName;
     private final String userRoleName;
     private final RoleRepository roleRepository;
+    private final RoleRegistry roleRegistry;
 
     public RoleSeeder(
             @Value("${app.roles.admin}") String adminRoleName,
             @Value("${app.roles.user}") String userRoleName,
-            RoleRepository roleRepository) {
+            RoleRepository roleRepository,
+            RoleRegistry roleRegistry) {
         this.adminRoleName = adminRoleName;
         this.userRoleName = userRoleName;
         this.roleRepository = roleRepository;
+        this.roleRegistry = roleRegistry;
 
         logger.info("RoleSeeder initialized with admin role: '{}', user role: '{}'", adminRoleName, userRoleName);
     }
@@ -47,6 +51,7 @@ public class RoleSeeder implements CommandLineRunner {
                 logger.debug("{} role already exists, skipping creation", userRoleName);
             }
 
+            roleRegistry.refresh();
             logger.info("Role seeding process completed successfully");
 
         } catch (Exception e) {
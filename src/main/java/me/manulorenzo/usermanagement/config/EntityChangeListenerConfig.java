@@ -0,0 +1,69 @@
+package me.manulorenzo.usermanagement.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import me.manulorenzo.usermanagement.entity.User;
+import me.manulorenzo.usermanagement.service.AvailabilityService;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Tells the in-memory caches about saved users, through a Hibernate listener registered here so
+ * the entities do not depend on the services that cache them.
+ */
+@Configuration
+public class EntityChangeListenerConfig {
+
+    @Bean
+    public EntityChangeListener entityChangeListener(
+            EntityManagerFactory entityManagerFactory,
+            ObjectProvider<AvailabilityService> availabilityService) {
+        EntityChangeListener listener = new EntityChangeListener(availabilityService);
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, listener);
+        registry.appendListeners(EventType.POST_UPDATE, listener);
+        return listener;
+    }
+
+    /**
+     * Adds new and renamed users to the {@link AvailabilityService} filters.
+     */
+    public static class EntityChangeListener implements PostInsertEventListener, PostUpdateEventListener {
+
+        private final ObjectProvider<AvailabilityService> availabilityService;
+
+        EntityChangeListener(ObjectProvider<AvailabilityService> availabilityService) {
+            this.availabilityService = availabilityService;
+        }
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            onSave(event.getEntity());
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            onSave(event.getEntity());
+        }
+
+        @Override
+        public boolean requiresPostCommitHandling(EntityPersister persister) {
+            return false;
+        }
+
+        private void onSave(Object entity) {
+            if (entity instanceof User user) {
+                availabilityService.ifAvailable(service -> service.record(user));
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package me.manulorenzo.usermanagement.config;
+
+import me.manulorenzo.usermanagement.service.PooledJavaMailSender;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Properties;
+
+@Configuration
+@EnableConfigurationProperties(MailProperties.class)
+public class MailConfig {
+
+    /**
+     * Replaces Spring Boot's connect-per-send mail sender, configured from the same spring.mail.* properties.
+     */
+    @Bean
+    public PooledJavaMailSender mailSender(
+            MailProperties properties,
+            @Value("${app.email.smtp-pool.size:4}") int poolSize,
+            @Value("${app.email.smtp-pool.max-messages-per-connection:100}") int maxMessagesPerConnection,
+            @Value("${app.email.smtp-pool.keepalive-interval-ms:30000}") long keepAliveIntervalMs,
+            @Value("${app.email.smtp-pool.borrow-timeout-ms:10000}") long borrowTimeoutMs) {
+        PooledJavaMailSender sender = new PooledJavaMailSender(poolSize, maxMessagesPerConnection,
+                keepAliveIntervalMs, borrowTimeoutMs);
+        sender.setHost(properties.getHost());
+        if (properties.getPort() != null) {
+            sender.setPort(properties.getPort());
+        }
+        sender.setUsername(properties.getUsername());
+        sender.setPassword(properties.getPassword());
+        sender.setProtocol(properties.getProtocol());
+        if (properties.getDefaultEncoding() != null) {
+            sender.setDefaultEncoding(properties.getDefaultEncoding().name());
+        }
+        Properties javaMailProperties = new Properties();
+        javaMailProperties.putAll(properties.getProperties());
+        sender.setJavaMailProperties(javaMailProperties);
+        return sender;
+    }
+}
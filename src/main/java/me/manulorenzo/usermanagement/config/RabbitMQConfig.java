@@ -1,13 +1,27 @@
 package me.manulorenzo.usermanagement.config;
 
+import me.manulorenzo.usermanagement.service.EmailRetryHandler;
+import me.manulorenzo.usermanagement.service.EmailSendShaper;
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
+@ConditionalOnProperty(name = "app.email.dispatcher", havingValue = "rabbit", matchIfMissing = true)
 public class RabbitMQConfig {
     @Bean
     public Jackson2JsonMessageConverter jackson2JsonMessageConverter() {
@@ -19,11 +33,79 @@ public class RabbitMQConfig {
                                          Jackson2JsonMessageConverter jackson2JsonMessageConverter) {
         RabbitTemplate template = new RabbitTemplate(connectionFactory);
         template.setMessageConverter(jackson2JsonMessageConverter);
+        // Unroutable messages come back as returns instead of being dropped, so the outbox relay keeps them
+        template.setMandatory(true);
         return template;
     }
 
+    /**
+     * Listener container for {@code app.email.listener.mode=batch}: delivers up to batch-size
+     * messages per call and leaves acknowledgement of each one to the listener.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.email.listener.mode", havingValue = "batch")
+    public SimpleRabbitListenerContainerFactory emailBatchContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${app.email.listener.batch-size:50}") int batchSize,
+            @Value("${app.email.listener.receive-timeout-ms:500}") long receiveTimeoutMs) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        int size = Math.max(1, batchSize);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(size);
+        factory.setReceiveTimeout(Math.max(1, receiveTimeoutMs));
+        // Keep the next batch in flight while the current one is being sent
+        factory.setPrefetchCount(size * 2);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        return factory;
+    }
+
     @Bean
     public Queue emailQueue() {
-        return new Queue("emailQueue", true);
+        return new Queue(EmailRetryHandler.EMAIL_QUEUE, true);
+    }
+
+    /**
+     * Lane for verification and password reset emails, consumed ahead of the bulk {@code emailQueue}.
+     */
+    @Bean
+    public Queue emailCriticalQueue() {
+        return new Queue(EmailRetryHandler.CRITICAL_QUEUE, true);
+    }
+
+    /**
+     * One retry queue per lane and backoff step, each dead-lettering expired tasks back to its lane
+     * via the default exchange, plus the dead-letter queue for tasks that will not be retried.
+     */
+    @Bean
+    public Declarables emailRetryQueues(EmailRetryHandler retryHandler) {
+        List<Declarable> queues = new ArrayList<>();
+        for (EmailRetryHandler.RetryQueue retryQueue : retryHandler.getRetryQueues()) {
+            queues.add(QueueBuilder.durable(retryQueue.name())
+                    .ttl((int) retryQueue.ttlMs())
+                    .deadLetterExchange("")
+                    .deadLetterRoutingKey(retryQueue.lane())
+                    .build());
+        }
+        queues.add(QueueBuilder.durable(EmailRetryHandler.DEAD_LETTER_QUEUE).build());
+        return new Declarables(queues);
+    }
+
+    /**
+     * Per lane, holds tasks whose recipient domain was throttled and dead-letters them back to the lane.
+     */
+    @Bean
+    public Declarables emailDeferQueues(EmailSendShaper sendShaper) {
+        List<Declarable> queues = new ArrayList<>();
+        for (String lane : EmailRetryHandler.LANES) {
+            queues.add(QueueBuilder.durable(sendShaper.getDeferQueue(lane))
+                    .ttl((int) Math.min(Integer.MAX_VALUE, sendShaper.getDeferMs()))
+                    .deadLetterExchange("")
+                    .deadLetterRoutingKey(lane)
+                    .build());
+        }
+        return new Declarables(queues);
     }
 }
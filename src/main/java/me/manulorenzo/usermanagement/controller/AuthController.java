@@ -8,6 +8,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import me.manulorenzo.usermanagement.dto.AvailabilityResponse;
 import me.manulorenzo.usermanagement.dto.ErrorResponse;
 import me.manulorenzo.usermanagement.security.JwtUtil;
 import me.manulorenzo.usermanagement.dto.LoginRequest;
@@ -19,6 +20,7 @@ import me.manulorenzo.usermanagement.dto.VerifyEmailRequest;
 import me.manulorenzo.usermanagement.dto.ForgotPasswordRequest;
 import me.manulorenzo.usermanagement.dto.ResetPasswordRequest;
 import me.manulorenzo.usermanagement.entity.RefreshToken;
+import me.manulorenzo.usermanagement.service.AvailabilityService;
 import me.manulorenzo.usermanagement.service.RefreshTokenService;
 import me.manulorenzo.usermanagement.service.UserService;
 import org.slf4j.Logger;
@@ -29,6 +31,7 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -48,6 +51,7 @@ public class AuthController {
     private final JwtUtil jwtUtil;
     private final RefreshTokenService refreshTokenService;
     private final UserDetailsService userDetailsService;
+    private final AvailabilityService availabilityService;
 
     @Operation(
             summary = "Register a new user account",
@@ -85,6 +89,39 @@ public class AuthController {
         return ResponseEntity.ok("User registered successfully. Please check your email to verify your account.");
     }
 
+    @Operation(
+            summary = "Check username and email availability",
+            description = "Reports whether a username and/or email is still free, for checking as the user types. " +
+                    "Names that were never registered are answered from memory without a database query. " +
+                    "The answer is advisory: registration can still fail with 409 if the name is taken meanwhile."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Availability of the requested username and/or email",
+                    content = @Content(schema = @Schema(implementation = AvailabilityResponse.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Neither a username nor an email was given",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @GetMapping("/availability")
+    public ResponseEntity<AvailabilityResponse> checkAvailability(
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) String email) {
+        boolean hasUsername = username != null && !username.isBlank();
+        boolean hasEmail = email != null && !email.isBlank();
+        if (!hasUsername && !hasEmail) {
+            throw new RuntimeException("Invalid availability request: a username or an email is required");
+        }
+
+        return ResponseEntity.ok(new AvailabilityResponse(
+                hasUsername ? availabilityService.isUsernameAvailable(username) : null,
+                hasEmail ? availabilityService.isEmailAvailable(email) : null));
+    }
+
     @Operation(
             summary = "Authenticate user and obtain tokens",
             description = "Authenticates user credentials and returns JWT access token and refresh token. " +
@@ -128,7 +165,7 @@ public class AuthController {
 
         UserDetails user = (UserDetails) authentication.getPrincipal();
         String accessToken = jwtUtil.generateToken(user);
-        RefreshToken refreshToken = refreshTokenService.createRefreshToken(request.getUsername());
+        RefreshToken refreshToken = refreshTokenService.createRefreshToken(request.getUsername(), request.getDeviceId());
 
         logger.info("Login successful for username: {} with authorities: {}",
                 request.getUsername(), user.getAuthorities());
@@ -173,6 +210,7 @@ public class AuthController {
                 .orElseThrow(() -> new RuntimeException("Refresh token is not in database!"));
 
         refreshToken = refreshTokenService.verifyExpiration(refreshToken);
+        refreshTokenService.markUsed(refreshToken);
 
         UserDetails userDetails = userDetailsService.loadUserByUsername(refreshToken.getUser().getUsername());
         String newAccessToken = jwtUtil.generateToken(userDetails);
@@ -184,7 +222,8 @@ public class AuthController {
 
     @Operation(
             summary = "Logout user",
-            description = "Invalidates the user's refresh token, effectively logging them out. " +
+            description = "Invalidates the refresh token of the calling device, effectively logging it out. " +
+                    "Sessions on the user's other devices stay active. " +
                     "The access token will remain valid until it expires naturally."
     )
     @ApiResponses(value = {
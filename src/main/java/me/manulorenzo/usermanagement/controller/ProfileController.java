@@ -1,20 +1,27 @@
 package me.manulorenzo.usermanagement.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import me.manulorenzo.usermanagement.dto.UserProfile;
+import me.manulorenzo.usermanagement.security.UserPrincipal;
 import me.manulorenzo.usermanagement.service.UserService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -28,20 +35,39 @@ public class ProfileController {
 
     @Operation(
             summary = "Get current user's profile",
-            description = "Returns the current logged-in user's full profile data. Requires a valid JWT access token."
+            description = "Returns the current logged-in user's full profile data with an ETag of its version. " +
+                    "Requires a valid JWT access token."
     )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Profile fetched successfully",
                     content = @Content(schema = @Schema(implementation = UserProfile.class))),
+            @ApiResponse(responseCode = "304", description = "Profile unchanged since the ETag in If-None-Match",
+                    content = @Content),
             @ApiResponse(responseCode = "404", description = "User not found",
                     content = @Content),
             @ApiResponse(responseCode = "401", description = "Access token missing or invalid",
                     content = @Content)
     })
     @GetMapping
-    public ResponseEntity<UserProfile> getProfile(Authentication authentication) {
+    public ResponseEntity<UserProfile> getProfile(
+            Authentication authentication,
+            @Parameter(description = "ETag of a previously fetched profile; answered with 304 while it is current")
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
         String username = authentication.getName();
-        return ResponseEntity.ok(userService.getUserProfile(username));
+        // The authentication filter read the user row for this request, and its version is the ETag: an up to
+        // date client is answered without reading the profile. The version is never staler than the start of
+        // the request, on any node; a change committed while the request runs is seen by the next one.
+        if (ifNoneMatch != null && authentication.getPrincipal() instanceof UserPrincipal principal
+                && principal.getVersion() != null && matchesAny(ifNoneMatch, principal.getVersion())) {
+            return notModified(principal.getVersion());
+        }
+
+        UserProfile profile = userService.getUserProfile(username);
+        if (ifNoneMatch != null && profile.getVersion() != null && matchesAny(ifNoneMatch, profile.getVersion())) {
+            return notModified(profile.getVersion());
+        }
+        return withETag(ResponseEntity.ok(), profile);
     }
 
     @Operation(
@@ -55,15 +81,99 @@ public class ProfileController {
                     content = @Content),
             @ApiResponse(responseCode = "404", description = "User not found",
                     content = @Content),
+            @ApiResponse(responseCode = "412", description = "Profile changed since the ETag in If-Match",
+                    content = @Content),
             @ApiResponse(responseCode = "401", description = "Access token missing or invalid",
                     content = @Content)
     })
     @PutMapping
     public ResponseEntity<UserProfile> updateProfile(
             Authentication authentication,
+            @Parameter(description = "ETag the update is based on; the update fails with 412 if the profile changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody UserProfile dto
     ) {
         String username = authentication.getName();
-        return ResponseEntity.ok(userService.updateUserProfile(username, dto));
+        applyIfMatch(ifMatch, dto);
+        return withETag(ResponseEntity.ok(), userService.updateUserProfile(username, dto));
+    }
+
+    @Operation(
+            summary = "Partially update current user's profile",
+            description = "Updates only the fields present in the body; omitted or null fields keep their value. " +
+                    "Include the version from the last read to reject the update if the profile changed since."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Profile updated successfully",
+                    content = @Content(schema = @Schema(implementation = UserProfile.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid data supplied",
+                    content = @Content),
+            @ApiResponse(responseCode = "404", description = "User not found",
+                    content = @Content),
+            @ApiResponse(responseCode = "409", description = "Email/username already exists or the profile was modified concurrently",
+                    content = @Content),
+            @ApiResponse(responseCode = "412", description = "Profile changed since the ETag in If-Match",
+                    content = @Content),
+            @ApiResponse(responseCode = "401", description = "Access token missing or invalid",
+                    content = @Content)
+    })
+    @PatchMapping
+    public ResponseEntity<UserProfile> patchProfile(
+            Authentication authentication,
+            @Parameter(description = "ETag the update is based on; the update fails with 412 if the profile changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @Valid @RequestBody UserProfile patch
+    ) {
+        String username = authentication.getName();
+        applyIfMatch(ifMatch, patch);
+        return withETag(ResponseEntity.ok(), userService.patchUserProfile(username, patch));
+    }
+
+    // Strong ETag of a profile version, e.g. "7"
+    static String eTagOf(long version) {
+        return "\"" + version + "\"";
+    }
+
+    // If-None-Match uses weak comparison, so W/"7" also matches version 7
+    private static boolean matchesAny(String ifNoneMatch, long version) {
+        String eTag = eTagOf(version);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // If-Match uses strong comparison; a tag that is not a current version can never match
+    private static void applyIfMatch(String ifMatch, UserProfile dto) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return;
+        }
+        String tag = ifMatch.trim();
+        long version = -1;
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                version = Long.parseLong(tag.substring(1, tag.length() - 1));
+            } catch (NumberFormatException ignored) {
+                // Not one of our ETags
+            }
+        }
+        dto.setVersion(version);
+    }
+
+    private static ResponseEntity<UserProfile> notModified(long version) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTagOf(version)).build();
+    }
+
+    private static ResponseEntity<UserProfile> withETag(ResponseEntity.BodyBuilder builder, UserProfile profile) {
+        if (profile.getVersion() != null) {
+            builder.eTag(eTagOf(profile.getVersion()));
+        }
+        return builder.body(profile);
     }
 }
@@ -0,0 +1,118 @@
+package me.manulorenzo.usermanagement.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import me.manulorenzo.usermanagement.dto.ErrorResponse;
+import me.manulorenzo.usermanagement.dto.SessionInfo;
+import me.manulorenzo.usermanagement.service.RefreshTokenService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+@Tag(name = "Sessions", description = "List and revoke the current user's per-device login sessions. Requires authentication.")
+@SecurityRequirement(name = "Bearer Authentication")
+@RestController
+@RequestMapping("/api/sessions")
+@RequiredArgsConstructor
+@PreAuthorize("isAuthenticated()")
+public class SessionController {
+    private static final Logger logger = LoggerFactory.getLogger(SessionController.class);
+
+    private final RefreshTokenService refreshTokenService;
+
+    @Operation(
+            summary = "List active sessions",
+            description = "Returns the current user's sessions, most recently used first. " +
+                    "The list is bounded by the per-user session cap."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Sessions returned",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = SessionInfo.class)))
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Unauthorized (invalid or missing token)",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @GetMapping
+    public ResponseEntity<List<SessionInfo>> listSessions(Authentication authentication) {
+        return ResponseEntity.ok(refreshTokenService.findSessions(authentication.getName()));
+    }
+
+    @Operation(
+            summary = "Revoke a session",
+            description = "Invalidates the refresh token of one device of the current user."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Session revoked",
+                    content = @Content(schema = @Schema(implementation = String.class))
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Unauthorized (invalid or missing token)",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Session not found",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @DeleteMapping("/{deviceId}")
+    public ResponseEntity<String> revokeSession(
+            Authentication authentication,
+            @Parameter(description = "Device identifier of the session to revoke", required = true, example = "iphone-15")
+            @PathVariable String deviceId) {
+        logger.info("User {} revoking session on device {}", authentication.getName(), deviceId);
+        if (!refreshTokenService.revokeSession(authentication.getName(), deviceId)) {
+            throw new RuntimeException("Session not found");
+        }
+        return ResponseEntity.ok("Session revoked");
+    }
+
+    @Operation(
+            summary = "Revoke all sessions",
+            description = "Invalidates the refresh tokens of all devices of the current user."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "All sessions revoked",
+                    content = @Content(schema = @Schema(implementation = Map.class))
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Unauthorized (invalid or missing token)",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    @DeleteMapping
+    public ResponseEntity<Map<String, Integer>> revokeAllSessions(Authentication authentication) {
+        logger.info("User {} revoking all sessions", authentication.getName());
+        int revoked = refreshTokenService.revokeAllSessions(authentication.getName());
+        return ResponseEntity.ok(Map.of("revoked", revoked));
+    }
+}
@@ -0,0 +1,19 @@
+package me.manulorenzo.usermanagement.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Whether a username and/or email can still be registered; advisory, registration has the final say")
+public class AvailabilityResponse {
+
+    @Schema(description = "True if no account uses the username; null if no username was asked for", example = "true")
+    private Boolean usernameAvailable;
+
+    @Schema(description = "True if no account uses the email; null if no email was asked for", example = "false")
+    private Boolean emailAvailable;
+}
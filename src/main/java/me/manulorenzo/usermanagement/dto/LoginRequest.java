@@ -17,6 +17,12 @@ public class LoginRequest {
     @Size(max = 128, message = "Password cannot exceed 128 characters")
     private String password;
 
+    @Schema(description = "Optional identifier of the client device. Each device keeps its own session; " +
+            "logging in again from the same device replaces that device's refresh token.",
+            example = "iphone-15")
+    @Size(max = 100, message = "Device id cannot exceed 100 characters")
+    private String deviceId;
+
     public String getUsername() {
         return username;
     }
@@ -32,4 +38,12 @@ public class LoginRequest {
     public void setPassword(String password) {
         this.password = password;
     }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(String deviceId) {
+        this.deviceId = deviceId;
+    }
 }
@@ -8,6 +8,7 @@ import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import me.manulorenzo.usermanagement.validation.NotBreachedPassword;
 
 @Schema(description = "User registration request with validation constraints")
 @Data
@@ -37,5 +38,6 @@ public class RegisterRequest {
     @Size(min = 8, max = 128, message = "Password must be between 8 and 128 characters")
     @Pattern(regexp = "^(?=.*[A-Za-z])(?=.*\\d)[A-Za-z\\d@$!%*#?&]{8,}$",
             message = "Password must contain at least one letter and one number")
+    @NotBreachedPassword
     private String password;
 }
@@ -8,6 +8,7 @@ import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import me.manulorenzo.usermanagement.validation.NotBreachedPassword;
 
 @Schema(description = "Password reset request with validation constraints")
 @Data
@@ -33,5 +34,6 @@ public class ResetPasswordRequest {
     @Size(min = 8, max = 128, message = "New password must be between 8 and 128 characters")
     @Pattern(regexp = "^(?=.*[A-Za-z])(?=.*\\d)[A-Za-z\\d@$!%*#?&]{8,}$",
             message = "New password must contain at least one letter and one number")
+    @NotBreachedPassword
     private String newPassword;
 }
\ No newline at end of file
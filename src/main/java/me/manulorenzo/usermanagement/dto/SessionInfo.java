@@ -0,0 +1,27 @@
+package me.manulorenzo.usermanagement.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "An active login session (one per device) of the current user")
+public class SessionInfo {
+
+    @Schema(description = "Client-supplied device identifier", example = "iphone-15")
+    private String deviceId;
+
+    @Schema(description = "When the session was first created")
+    private Instant createdAt;
+
+    @Schema(description = "When the session last logged in or refreshed its access token")
+    private Instant lastUsedAt;
+
+    @Schema(description = "When the session's refresh token expires")
+    private Instant expiryDate;
+}
@@ -41,4 +41,8 @@ public class UserProfile {
     @URL(message = "Must be a valid URL")
     @Size(max = 500, message = "Image URL cannot exceed 500 characters")
     private String imageUrl;
+
+    @Schema(description = "Version of the profile when it was read. Send it back on PATCH to reject the update " +
+            "if the profile was changed in the meantime", example = "3")
+    private Long version;
 }
@@ -0,0 +1,28 @@
+package me.manulorenzo.usermanagement.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * One-shot flags claimed once per database, e.g. whether the first admin has been created.
+ */
+@Entity
+@Table(name = "app_bootstrap")
+@Getter
+@Setter
+@NoArgsConstructor
+public class BootstrapFlag {
+    @Id
+    @Column(length = 50)
+    private String name;
+
+    @Column(name = "claimed_at", nullable = false)
+    private Instant claimedAt;
+}
@@ -0,0 +1,65 @@
+package me.manulorenzo.usermanagement.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.time.Instant;
+
+/**
+ * Single-use token sent by email (verification, password reset). Only the SHA-256 of the token
+ * is stored, and the row is deleted when the token is used.
+ */
+@Entity
+@Table(name = "one_time_token", indexes = {
+        @Index(name = "idx_one_time_token_user_purpose", columnList = "user_id, purpose"),
+        @Index(name = "idx_one_time_token_expires_at", columnList = "expires_at")
+})
+@Getter
+@NoArgsConstructor
+public class OneTimeToken {
+
+    public enum Purpose {
+        EMAIL_VERIFICATION,
+        PASSWORD_RESET
+    }
+
+    // Hex SHA-256 of the token sent to the user
+    @Id
+    @Column(name = "token_hash", length = 64)
+    private String tokenHash;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private Purpose purpose;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private User user;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    public OneTimeToken(String tokenHash, Purpose purpose, User user, Instant createdAt, Instant expiresAt) {
+        this.tokenHash = tokenHash;
+        this.purpose = purpose;
+        this.user = user;
+        this.createdAt = createdAt;
+        this.expiresAt = expiresAt;
+    }
+}
@@ -0,0 +1,51 @@
+package me.manulorenzo.usermanagement.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * A message waiting to be published to RabbitMQ, stored in the same transaction as the change
+ * that produced it. The payload is the JSON body as produced by the message converter.
+ */
+@Entity
+@Table(name = "outbox_message")
+@Getter
+@NoArgsConstructor
+public class OutboxMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String exchange;
+
+    @Column(name = "routing_key", nullable = false)
+    private String routingKey;
+
+    // Type id header of the JSON converter, lets consumers map the payload back to its class
+    @Column(name = "message_type")
+    private String messageType;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    public OutboxMessage(String exchange, String routingKey, String messageType, String payload, Instant createdAt) {
+        this.exchange = exchange;
+        this.routingKey = routingKey;
+        this.messageType = messageType;
+        this.payload = payload;
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,59 @@
+package me.manulorenzo.usermanagement.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.MapsId;
+import jakarta.persistence.OneToOne;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * Free-form profile fields of a {@link User}, kept out of {@code app_user} so loading a user for
+ * authentication does not read them. The row shares the user's id and is only created on the
+ * first profile edit; a user without one simply has an empty profile.
+ */
+@Entity
+@Table(name = "app_user_profile")
+@DynamicUpdate
+public class Profile {
+
+    @Getter
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private User user;
+
+    @Setter
+    @Getter
+    @Column(name = "full_name")
+    private String fullName;
+
+    @Setter
+    @Getter
+    @Column(length = 500)
+    private String bio;
+
+    @Setter
+    @Getter
+    @Column(name = "image_url", length = 500)
+    private String imageUrl;
+
+    protected Profile() {
+    }
+
+    public Profile(User user) {
+        this.user = user;
+    }
+}
@@ -7,10 +7,14 @@ import lombok.Setter;
 import java.time.Instant;
 
 @Entity
-@Table(name = "refresh_token")
+@Table(name = "refresh_token",
+        uniqueConstraints = @UniqueConstraint(name = "uk_refresh_token_user_device", columnNames = {"user_id", "device_id"}),
+        indexes = @Index(name = "idx_refresh_token_user_last_used", columnList = "user_id, last_used_at"))
 @Getter
 @Setter
 public class RefreshToken {
+    public static final String DEFAULT_DEVICE = "default";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -21,7 +25,17 @@ public class RefreshToken {
     @Column(nullable = false)
     private Instant expiryDate;
 
-    @OneToOne
+    // One row per (user, device): re-login from the same device rotates the token in place
+    @Column(name = "device_id", nullable = false, length = 100)
+    private String deviceId = DEFAULT_DEVICE;
+
+    @Column(name = "created_at")
+    private Instant createdAt;
+
+    @Column(name = "last_used_at")
+    private Instant lastUsedAt;
+
+    @ManyToOne
     @JoinColumn(name = "user_id", referencedColumnName = "id")
     private User user;
 
@@ -33,4 +47,4 @@ public class RefreshToken {
         this.expiryDate = expiryDate;
         this.user = user;
     }
-}
\ No newline at end of file
+}
@@ -11,6 +11,7 @@ import lombok.Setter;
 @NoArgsConstructor
 @Entity
 public class Role {
+    @Getter
     @Id
     @GeneratedValue
     private Long id;
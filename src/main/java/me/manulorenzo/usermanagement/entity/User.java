@@ -1,27 +1,48 @@
 package me.manulorenzo.usermanagement.entity;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
 import jakarta.persistence.ManyToMany;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.Instant;
 import java.util.HashSet;
+import java.util.Locale;
 import java.util.Set;
 
 @Entity
-@Table(name = "app_user")
+@Table(name = "app_user", uniqueConstraints = {
+        @UniqueConstraint(name = User.UK_USERNAME, columnNames = "normalized_username"),
+        @UniqueConstraint(name = User.UK_EMAIL, columnNames = "normalized_email")
+})
+// Profile edits change a few columns of a wide row; only write those instead of every column
+@DynamicUpdate
 public class User {
+    public static final String UK_USERNAME = "uk_app_user_username";
+    public static final String UK_EMAIL = "uk_app_user_email";
+
+    @Getter
     @Id
     @GeneratedValue
     private Long id;
-    @Setter
+    // Incremented on every update; a stale write fails instead of silently overwriting a newer one
+    @Getter
+    @Version
+    private Long version;
     @Getter
     private String username;
+    // Case-insensitive lookup key, kept in sync by setUsername and backed by a unique index
+    @Column(name = "normalized_username")
+    private String normalizedUsername;
     @Setter
     @Getter
     private String password;
@@ -29,18 +50,11 @@ public class User {
     @Getter
     @ManyToMany(fetch = FetchType.EAGER)
     private Set<Role> roles = new HashSet<>();
-    @Setter
     @Getter
     private String email;
-    @Setter
-    @Getter
-    private String fullName;
-    @Setter
-    @Getter
-    private String bio;
-    @Setter
-    @Getter
-    private String imageUrl;
+    @Column(name = "normalized_email")
+    private String normalizedEmail;
+    // Free-form profile fields live in Profile (app_user_profile) and are only loaded by the profile endpoints
 
     @Setter
     @Getter
@@ -50,19 +64,25 @@ public class User {
     @Getter
     private boolean emailVerified = false;
 
-    @Setter
-    @Getter
-    private String verificationToken;
+    // Verification and password reset tokens live in OneTimeToken (one_time_token)
 
-    @Setter
+    // Registration time; unverified accounts older than the retention period are reaped
     @Getter
-    private Instant verificationTokenExpiry;
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
 
-    @Setter
-    @Getter
-    private String passwordResetToken;
+    public void setUsername(String username) {
+        this.username = username;
+        this.normalizedUsername = normalize(username);
+    }
 
-    @Setter
-    @Getter
-    private Instant passwordResetTokenExpiry;
+    public void setEmail(String email) {
+        this.email = email;
+        this.normalizedEmail = normalize(email);
+    }
+
+    public static String normalize(String value) {
+        return value == null ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
 }
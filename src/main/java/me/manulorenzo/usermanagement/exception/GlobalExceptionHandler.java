@@ -8,7 +8,10 @@ import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import me.manulorenzo.usermanagement.dto.ErrorResponse;
+import me.manulorenzo.usermanagement.entity.User;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -28,6 +31,7 @@ import org.springframework.web.servlet.resource.NoResourceFoundException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 @Slf4j
 @RestControllerAdvice
@@ -205,14 +209,13 @@ public class GlobalExceptionHandler {
         String message = "Data integrity violation";
         String details = "The operation violates database constraints";
 
-        if (ex.getMessage() != null) {
-            if (ex.getMessage().contains("email")) {
-                message = "Email already exists";
-                details = "An account with this email address already exists";
-            } else if (ex.getMessage().contains("username")) {
-                message = "Username already exists";
-                details = "An account with this username already exists";
-            }
+        String constraint = violatedConstraint(ex);
+        if (constraint.contains(User.UK_EMAIL)) {
+            message = "Email already exists";
+            details = "An account with this email address already exists";
+        } else if (constraint.contains(User.UK_USERNAME)) {
+            message = "Username already exists";
+            details = "An account with this username already exists";
         }
 
         ErrorResponse error = ErrorResponse.builder()
@@ -227,6 +230,38 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
     }
 
+    // Prefers the constraint name reported by Hibernate, falling back to the driver message
+    private static String violatedConstraint(DataIntegrityViolationException ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof org.hibernate.exception.ConstraintViolationException violation
+                    && violation.getConstraintName() != null) {
+                return violation.getConstraintName().toLowerCase(Locale.ROOT);
+            }
+        }
+        return ex.getMessage() != null ? ex.getMessage().toLowerCase(Locale.ROOT) : "";
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorResponse> handleOptimisticLockingFailure(
+            OptimisticLockingFailureException ex, HttpServletRequest request) {
+        log.warn("Concurrent modification: {}", ex.getMessage());
+
+        // With If-Match the client stated a precondition on the version, which is what failed
+        boolean conditional = request.getHeader(HttpHeaders.IF_MATCH) != null;
+        HttpStatus status = conditional ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT;
+
+        ErrorResponse error = ErrorResponse.builder()
+                .status(status.value())
+                .error(conditional ? "PRECONDITION_FAILED" : "CONCURRENT_MODIFICATION")
+                .message("Resource was modified concurrently")
+                .details("The resource changed since it was read. Fetch it again and retry")
+                .path(request.getRequestURI())
+                .timestamp(LocalDateTime.now())
+                .build();
+
+        return ResponseEntity.status(status).body(error);
+    }
+
     // Request Processing Exceptions
     @ExceptionHandler(HttpMessageNotReadableException.class)
     public ResponseEntity<ErrorResponse> handleMessageNotReadable(
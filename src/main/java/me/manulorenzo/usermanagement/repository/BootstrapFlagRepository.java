@@ -0,0 +1,19 @@
+package me.manulorenzo.usermanagement.repository;
+
+import me.manulorenzo.usermanagement.entity.BootstrapFlag;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+@Repository
+public interface BootstrapFlagRepository extends JpaRepository<BootstrapFlag, String> {
+
+    // Returns 1 for the single caller that claims the flag; concurrent claimers wait for it to commit and get 0
+    @Modifying
+    @Query(value = "INSERT INTO app_bootstrap (name, claimed_at) VALUES (?1, ?2) ON CONFLICT (name) DO NOTHING",
+            nativeQuery = true)
+    int claim(String name, Instant claimedAt);
+}
@@ -0,0 +1,25 @@
+package me.manulorenzo.usermanagement.repository;
+
+import me.manulorenzo.usermanagement.entity.OneTimeToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface OneTimeTokenRepository extends JpaRepository<OneTimeToken, String> {
+
+    // Looks up and consumes the token in one statement; of concurrent requests with the same token only one gets the user id
+    @Query(value = "DELETE FROM one_time_token WHERE token_hash = ?1 AND purpose = ?2 AND expires_at > ?3 RETURNING user_id",
+            nativeQuery = true)
+    Optional<Long> consume(String tokenHash, String purpose, Instant now);
+
+    @Modifying
+    @Query("DELETE FROM OneTimeToken t WHERE t.user.id = ?1 AND t.purpose = ?2")
+    int deleteByUserIdAndPurpose(Long userId, OneTimeToken.Purpose purpose);
+
+    @Modifying
+    @Query("DELETE FROM OneTimeToken t WHERE t.expiresAt <= ?1")
+    int deleteExpired(Instant now);
+}
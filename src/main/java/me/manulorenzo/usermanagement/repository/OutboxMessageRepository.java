@@ -0,0 +1,22 @@
+package me.manulorenzo.usermanagement.repository;
+
+import me.manulorenzo.usermanagement.entity.OutboxMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+
+    // Relays on other nodes skip rows locked here and take the next ones, so each row is relayed by one node at a time
+    @Query(value = "SELECT * FROM outbox_message WHERE created_at <= ?2 ORDER BY id LIMIT ?1 FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<OutboxMessage> lockNextBatch(int limit, Instant createdBefore);
+
+    @Modifying
+    @Query("DELETE FROM OutboxMessage m WHERE m.id IN ?1")
+    int deleteByIdIn(Collection<Long> ids);
+}
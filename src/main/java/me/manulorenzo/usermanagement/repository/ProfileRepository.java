@@ -0,0 +1,7 @@
+package me.manulorenzo.usermanagement.repository;
+
+import me.manulorenzo.usermanagement.entity.Profile;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ProfileRepository extends JpaRepository<Profile, Long> {
+}
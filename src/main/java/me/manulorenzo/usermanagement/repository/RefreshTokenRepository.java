@@ -1,21 +1,73 @@
 package me.manulorenzo.usermanagement.repository;
 
+import me.manulorenzo.usermanagement.dto.SessionInfo;
 import me.manulorenzo.usermanagement.entity.RefreshToken;
 import me.manulorenzo.usermanagement.entity.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
     Optional<RefreshToken> findByToken(String token);
 
-    Optional<RefreshToken> findByUser(User user);
+    @Query("SELECT rt.user.id FROM RefreshToken rt WHERE rt.token = ?1")
+    Optional<Long> findUserIdByToken(String token);
+
+    Optional<RefreshToken> findByUserAndDeviceId(User user, String deviceId);
+
+    long countByUser(User user);
+
+    // Least recently used sessions first, used to evict sessions above the per-user cap
+    List<RefreshToken> findByUserOrderByLastUsedAtAsc(User user, Limit limit);
+
+    @Query("SELECT new me.manulorenzo.usermanagement.dto.SessionInfo(rt.deviceId, rt.createdAt, rt.lastUsedAt, rt.expiryDate) " +
+            "FROM RefreshToken rt WHERE rt.user.id = (SELECT u.id FROM User u WHERE u.normalizedUsername = ?1) " +
+            "ORDER BY rt.lastUsedAt DESC")
+    List<SessionInfo> findSessionsByNormalizedUsername(String normalizedUsername, Limit limit);
+
+    default List<SessionInfo> findSessionsByUsername(String username, Limit limit) {
+        return findSessionsByNormalizedUsername(User.normalize(username), limit);
+    }
+
+    @Modifying
+    @Query("UPDATE RefreshToken rt SET rt.lastUsedAt = ?2 WHERE rt.id = ?1")
+    int updateLastUsedAt(Long id, Instant lastUsedAt);
+
+    // Bulk delete: a token already removed by a concurrent logout is a no-op instead of a stale-state failure
+    @Modifying
+    @Query("DELETE FROM RefreshToken rt WHERE rt.token = ?1")
+    int deleteByToken(String token);
 
     @Modifying
     @Query("DELETE FROM RefreshToken rt WHERE rt.user = ?1")
     void deleteByUser(User user);
-}
\ No newline at end of file
+
+    @Modifying
+    @Query("DELETE FROM RefreshToken rt WHERE rt.user.id IN ?1")
+    int deleteByUserIdIn(Collection<Long> userIds);
+
+    @Modifying
+    @Query("DELETE FROM RefreshToken rt " +
+            "WHERE rt.user.id = (SELECT u.id FROM User u WHERE u.normalizedUsername = ?1) AND rt.deviceId = ?2")
+    int deleteByNormalizedUsernameAndDeviceId(String normalizedUsername, String deviceId);
+
+    default int deleteByUsernameAndDeviceId(String username, String deviceId) {
+        return deleteByNormalizedUsernameAndDeviceId(User.normalize(username), deviceId);
+    }
+
+    @Modifying
+    @Query("DELETE FROM RefreshToken rt WHERE rt.user.id = (SELECT u.id FROM User u WHERE u.normalizedUsername = ?1)")
+    int deleteAllByNormalizedUsername(String normalizedUsername);
+
+    default int deleteAllByUsername(String username) {
+        return deleteAllByNormalizedUsername(User.normalize(username));
+    }
+}
@@ -0,0 +1,10 @@
+package me.manulorenzo.usermanagement.repository;
+
+/**
+ * Closed projection of the normalized unique keys of {@code app_user}.
+ */
+public interface UserIdentifierView {
+    String getNormalizedUsername();
+
+    String getNormalizedEmail();
+}
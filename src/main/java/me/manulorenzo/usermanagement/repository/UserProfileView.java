@@ -0,0 +1,21 @@
+package me.manulorenzo.usermanagement.repository;
+
+/**
+ * Closed projection of the profile columns of {@code app_user}; selects only these columns
+ * and returns read-only values instead of managed entities.
+ */
+public interface UserProfileView {
+    Long getId();
+
+    String getUsername();
+
+    String getEmail();
+
+    String getFullName();
+
+    String getBio();
+
+    String getImageUrl();
+
+    Long getVersion();
+}
@@ -1,14 +1,85 @@
 package me.manulorenzo.usermanagement.repository;
 
+import jakarta.persistence.QueryHint;
 import me.manulorenzo.usermanagement.entity.User;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
-    Optional<User> findByUsername(String username);
+    Optional<User> findByNormalizedUsername(String normalizedUsername);
 
-    Optional<User> findByEmail(String email);
+    Optional<User> findByNormalizedEmail(String normalizedEmail);
+
+    default Optional<User> findByUsername(String username) {
+        return findByNormalizedUsername(User.normalize(username));
+    }
+
+    default Optional<User> findByEmail(String email) {
+        return findByNormalizedEmail(User.normalize(email));
+    }
+
+    @Query("SELECT u.id AS id, u.username AS username, u.email AS email, u.version AS version, " +
+            "p.fullName AS fullName, p.bio AS bio, p.imageUrl AS imageUrl " +
+            "FROM User u LEFT JOIN Profile p ON p.userId = u.id WHERE u.normalizedUsername = ?1")
+    Optional<UserProfileView> findProfileByNormalizedUsername(String normalizedUsername);
+
+    default Optional<UserProfileView> findProfileByUsername(String username) {
+        return findProfileByNormalizedUsername(User.normalize(username));
+    }
+
+    // Derived exists query, stops at the first row instead of counting the table
+    boolean existsByIdNotNull();
+
+    boolean existsByNormalizedEmail(String normalizedEmail);
+
+    // Streams every user's unique keys in batches; must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT u.normalizedUsername AS normalizedUsername, u.normalizedEmail AS normalizedEmail FROM User u")
+    Stream<UserIdentifierView> streamIdentifiers();
+
+    @Query("SELECT u.id FROM User u WHERE u.normalizedUsername = ?1")
+    Optional<Long> findIdByNormalizedUsername(String normalizedUsername);
+
+    default Optional<Long> findIdByUsername(String username) {
+        return findIdByNormalizedUsername(User.normalize(username));
+    }
+
+    // Bumps the version for changes stored outside app_user; returns 0 if the version moved meanwhile
+    @Modifying
+    @Query("UPDATE User u SET u.version = u.version + 1 WHERE u.id = ?1 AND u.version = ?2")
+    int incrementVersion(Long id, Long expectedVersion);
+
+    // Oldest never-verified accounts without the given role; rows locked by another reaper or an in-flight verification are skipped
+    @Query(value = "SELECT id FROM app_user u WHERE email_verified = false AND created_at < ?1 " +
+            "AND NOT EXISTS (SELECT 1 FROM app_user_roles ur JOIN role r ON r.id = ur.roles_id " +
+            "WHERE ur.user_id = u.id AND r.name = ?2) " +
+            "ORDER BY created_at LIMIT ?3 FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockUnverifiedCreatedBefore(Instant cutoff, String excludedRole, int limit);
+
+    @Modifying
+    @Query(value = "INSERT INTO app_user_archive (user_id, username, email, created_at, archived_at) " +
+            "SELECT id, username, email, created_at, ?2 FROM app_user WHERE id IN (?1) " +
+            "ON CONFLICT (user_id) DO NOTHING", nativeQuery = true)
+    int archiveByIdIn(Collection<Long> ids, Instant archivedAt);
+
+    // The role join table has no entity of its own
+    @Modifying
+    @Query(value = "DELETE FROM app_user_roles WHERE user_id IN (?1)", nativeQuery = true)
+    int deleteRoleLinksByUserIdIn(Collection<Long> ids);
+
+    // Tokens and profiles are removed by their ON DELETE CASCADE foreign keys
+    @Modifying
+    @Query("DELETE FROM User u WHERE u.id IN ?1")
+    int deleteByIdIn(Collection<Long> ids);
 }
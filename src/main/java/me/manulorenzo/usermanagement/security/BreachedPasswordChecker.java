@@ -0,0 +1,132 @@
+package me.manulorenzo.usermanagement.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Tells whether a password appears in a corpus of breached passwords, without sending it anywhere.
+ * <p>
+ * The corpus is a file of the first 8 bytes of each password's SHA-1, sorted as unsigned
+ * big-endian longs and deduplicated (see {@link #FILE_MAGIC} for the header). It is memory
+ * mapped rather than read, so even a billion entries (8 GB) live in the page cache instead of
+ * the heap, and a lookup is a binary search of about 30 reads. With 64-bit prefixes a password
+ * is wrongly reported as breached with a probability of roughly entries / 2^64.
+ * <p>
+ * Build the file with {@code BreachedPasswordFileBuilder}. When no file is configured every
+ * password passes.
+ */
+@Component
+public class BreachedPasswordChecker {
+
+    private static final Logger logger = LoggerFactory.getLogger(BreachedPasswordChecker.class);
+
+    // 8 magic bytes followed by 8 reserved bytes, then the sorted prefixes
+    public static final byte[] FILE_MAGIC = "PWSHA1P8".getBytes(StandardCharsets.US_ASCII);
+    public static final int HEADER_BYTES = 16;
+    public static final int PREFIX_BYTES = Long.BYTES;
+
+    // A single mapping is limited to 2 GB; map the file in 1 GB windows of whole records
+    private static final int RECORDS_PER_WINDOW = 1 << 27;
+
+    private final MappedByteBuffer[] windows;
+    private final long entries;
+
+    public BreachedPasswordChecker(@Value("${app.passwords.breached-file:}") String breachedFile) {
+        if (breachedFile == null || breachedFile.isBlank()) {
+            this.windows = new MappedByteBuffer[0];
+            this.entries = 0;
+            logger.info("No breached password file configured, breached password screening disabled");
+            return;
+        }
+
+        Path path = Path.of(breachedFile);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            if (size < HEADER_BYTES || !Arrays.equals(Arrays.copyOf(header.array(), FILE_MAGIC.length), FILE_MAGIC)
+                    || (size - HEADER_BYTES) % PREFIX_BYTES != 0) {
+                throw new IllegalStateException("Not a breached password file: " + path);
+            }
+
+            this.entries = (size - HEADER_BYTES) / PREFIX_BYTES;
+            int windowCount = (int) ((entries + RECORDS_PER_WINDOW - 1) / RECORDS_PER_WINDOW);
+            this.windows = new MappedByteBuffer[windowCount];
+            for (int i = 0; i < windowCount; i++) {
+                long first = (long) i * RECORDS_PER_WINDOW;
+                long records = Math.min(RECORDS_PER_WINDOW, entries - first);
+                // The mapping stays valid after the channel is closed
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + first * PREFIX_BYTES,
+                        records * PREFIX_BYTES);
+                windows[i].order(ByteOrder.BIG_ENDIAN);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open breached password file: " + path, e);
+        }
+
+        logger.info("Breached password screening enabled with {} entries from {}", entries, path);
+    }
+
+    public boolean isEnabled() {
+        return entries > 0;
+    }
+
+    public long size() {
+        return entries;
+    }
+
+    public boolean isBreached(String password) {
+        if (password == null || entries == 0) {
+            return false;
+        }
+        return containsPrefix(sha1Prefix(password));
+    }
+
+    boolean containsPrefix(long prefix) {
+        long low = 0;
+        long high = entries - 1;
+        while (low <= high) {
+            long mid = (low + high) >>> 1;
+            int comparison = Long.compareUnsigned(prefixAt(mid), prefix);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long prefixAt(long index) {
+        return windows[(int) (index / RECORDS_PER_WINDOW)].getLong((int) (index % RECORDS_PER_WINDOW) * PREFIX_BYTES);
+    }
+
+    /**
+     * First 8 bytes of the SHA-1 of the UTF-8 password, as stored in the file.
+     */
+    public static long sha1Prefix(String password) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(password.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+}
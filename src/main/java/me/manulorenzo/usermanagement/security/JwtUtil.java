@@ -77,11 +77,11 @@ public class JwtUtil {
         logger.debug("Extracting username from JWT token");
 
         try {
-            String username = Jwts.parserBuilder()
-                    .setSigningKey(key)
+            String username = Jwts.parser()
+                    .verifyWith(key)
                     .build()
-                    .parseClaimsJws(token)
-                    .getBody()
+                    .parseSignedClaims(token)
+                    .getPayload()
                     .getSubject();
 
             logger.debug("Username extracted from token: {}", username);
@@ -95,11 +95,11 @@ public class JwtUtil {
 
     public boolean isTokenExpired(String token) {
         try {
-            Date expiration = Jwts.parserBuilder()
-                    .setSigningKey(key)
+            Date expiration = Jwts.parser()
+                    .verifyWith(key)
                     .build()
-                    .parseClaimsJws(token)
-                    .getBody()
+                    .parseSignedClaims(token)
+                    .getPayload()
                     .getExpiration();
 
             return expiration.before(new Date());
@@ -0,0 +1,26 @@
+package me.manulorenzo.usermanagement.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * The authenticated user, carrying the version of the {@code app_user} row it was loaded from.
+ * That version is also the profile's ETag, so a conditional profile GET can be answered from the
+ * row {@link JwtAuthFilter} already read for the request.
+ */
+public class UserPrincipal extends User {
+
+    private final Long version;
+
+    public UserPrincipal(String username, String password, boolean enabled,
+                         Collection<? extends GrantedAuthority> authorities, Long version) {
+        super(username, password, enabled, true, true, true, authorities);
+        this.version = version;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+}
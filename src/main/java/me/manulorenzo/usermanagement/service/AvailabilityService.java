@@ -0,0 +1,185 @@
+package me.manulorenzo.usermanagement.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import me.manulorenzo.usermanagement.entity.User;
+import me.manulorenzo.usermanagement.repository.UserIdentifierView;
+import me.manulorenzo.usermanagement.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Answers whether a username or email is still free, for the signup form.
+ * <p>
+ * Bloom filters of every normalized username and email are loaded at startup and kept up to
+ * date by {@link #record}, which {@code EntityChangeListenerConfig} calls for every saved user. A value the filter has never seen is reported available
+ * without a query; only possible hits are checked against the database. The answer is
+ * advisory: registration is still decided by the unique indexes, and a user registered on
+ * another node is only known here after the next rebuild.
+ */
+@Service
+public class AvailabilityService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvailabilityService.class);
+
+    private record Filters(BloomFilter usernames, BloomFilter emails) {
+
+        void put(String normalizedUsername, String normalizedEmail) {
+            if (normalizedUsername != null) {
+                usernames.put(normalizedUsername);
+            }
+            if (normalizedEmail != null) {
+                emails.put(normalizedEmail);
+            }
+        }
+    }
+
+    private final double falsePositiveRate;
+    private final long minCapacity;
+    private final UserRepository userRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Counter filterAnswers;
+    private final Counter databaseAnswers;
+
+    // Null until the first build; lookups go to the database meanwhile
+    private volatile Filters current;
+    // Filters being built; changes made during a rebuild are written to both
+    private volatile Filters next;
+    // Users seen by the last successful build, to size the next one
+    private volatile long lastUserCount;
+
+    public AvailabilityService(
+            @Value("${app.availability.false-positive-rate:0.01}") double falsePositiveRate,
+            @Value("${app.availability.min-capacity:100000}") long minCapacity,
+            UserRepository userRepository,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry) {
+        this.falsePositiveRate = falsePositiveRate;
+        this.minCapacity = Math.max(1, minCapacity);
+        this.userRepository = userRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.filterAnswers = Counter.builder("app.availability.checks")
+                .description("Availability checks by where they were answered")
+                .tag("answered-by", "filter")
+                .register(meterRegistry);
+        this.databaseAnswers = Counter.builder("app.availability.checks")
+                .description("Availability checks by where they were answered")
+                .tag("answered-by", "database")
+                .register(meterRegistry);
+
+        logger.info("AvailabilityService initialized with false positive rate: {}, min capacity: {}",
+                falsePositiveRate, this.minCapacity);
+    }
+
+    public boolean isUsernameAvailable(String username) {
+        String normalized = User.normalize(username);
+        Filters filters = current;
+        if (filters != null && !filters.usernames().mightContain(normalized)) {
+            filterAnswers.increment();
+            return true;
+        }
+        databaseAnswers.increment();
+        return userRepository.findIdByNormalizedUsername(normalized).isEmpty();
+    }
+
+    public boolean isEmailAvailable(String email) {
+        String normalized = User.normalize(email);
+        Filters filters = current;
+        if (filters != null && !filters.emails().mightContain(normalized)) {
+            filterAnswers.increment();
+            return true;
+        }
+        databaseAnswers.increment();
+        return !userRepository.existsByNormalizedEmail(normalized);
+    }
+
+    /**
+     * Adds a user's username and email; called for every saved user, before its transaction commits.
+     */
+    public void record(User user) {
+        String username = User.normalize(user.getUsername());
+        String email = User.normalize(user.getEmail());
+        Filters filters = current;
+        if (filters != null) {
+            filters.put(username, email);
+            if (filters.usernames().isSaturated() || filters.emails().isSaturated()) {
+                logger.debug("Availability filters exceed their capacity until the next rebuild");
+            }
+        }
+        Filters building = next;
+        if (building != null) {
+            building.put(username, email);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * Rebuilds both filters from the table; also drops usernames and emails of deleted users and
+     * resizes the filters for the current number of users.
+     * <p>
+     * The filters are sized from the number of users the previous build saw, without counting the
+     * table; a build that outgrows that size is repeated once, sized from the users it streamed.
+     */
+    @Scheduled(fixedDelayString = "${app.availability.rebuild-interval-ms:21600000}",
+            initialDelayString = "${app.availability.rebuild-interval-ms:21600000}")
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+        try {
+            long capacity = Math.max(minCapacity, lastUserCount * 2);
+            long users = load(capacity);
+            if (users > capacity) {
+                logger.info("Availability filters sized for {} users but {} were loaded, rebuilding them", capacity, users);
+                users = load(users * 2);
+            }
+            lastUserCount = users;
+            Filters built = current;
+            logger.info("Availability filters built from {} users in {} ms ({} bits, {} hashes each)",
+                    users, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    built.usernames().bitCount(), built.usernames().hashCount());
+        } catch (RuntimeException e) {
+            logger.error("Failed to build availability filters, keeping the previous ones", e);
+        } finally {
+            next = null;
+        }
+    }
+
+    /**
+     * Streams every user into new filters of the given capacity and makes them current; returns the number of users.
+     */
+    private long load(long capacity) {
+        Filters building = new Filters(BloomFilter.create(capacity, falsePositiveRate),
+                BloomFilter.create(capacity, falsePositiveRate));
+        next = building;
+        AtomicLong users = new AtomicLong();
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<UserIdentifierView> identifiers = userRepository.streamIdentifiers()) {
+                identifiers.forEach(user -> {
+                    building.put(user.getNormalizedUsername(), user.getNormalizedEmail());
+                    users.incrementAndGet();
+                });
+            }
+        });
+        current = building;
+        return users.get();
+    }
+
+    boolean isReady() {
+        return current != null;
+    }
+}
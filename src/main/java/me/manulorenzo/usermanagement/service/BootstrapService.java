@@ -0,0 +1,90 @@
+package me.manulorenzo.usermanagement.service;
+
+import me.manulorenzo.usermanagement.repository.BootstrapFlagRepository;
+import me.manulorenzo.usermanagement.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+
+/**
+ * Decides whether a registration creates the first admin, without counting users.
+ * <p>
+ * The decision is a row in {@code app_bootstrap} claimed with an atomic insert, so exactly one
+ * registration wins even across nodes. Once the flag is known to be taken it is answered from memory.
+ */
+@Service
+public class BootstrapService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BootstrapService.class);
+
+    static final String FIRST_ADMIN_FLAG = "first-admin";
+
+    private final boolean firstUserAdmin;
+    private final BootstrapFlagRepository bootstrapFlagRepository;
+    private final UserRepository userRepository;
+
+    private volatile boolean firstAdminClaimed;
+
+    public BootstrapService(
+            @Value("${app.security.first-user-admin}") boolean firstUserAdmin,
+            BootstrapFlagRepository bootstrapFlagRepository,
+            UserRepository userRepository) {
+        this.firstUserAdmin = firstUserAdmin;
+        this.bootstrapFlagRepository = bootstrapFlagRepository;
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Marks the flag as claimed when this database already has users, so upgrading an
+     * existing installation never promotes the next registration to admin.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void loadFirstAdminState() {
+        if (!firstUserAdmin) {
+            return;
+        }
+        if (bootstrapFlagRepository.existsById(FIRST_ADMIN_FLAG)) {
+            firstAdminClaimed = true;
+        } else if (userRepository.existsByIdNotNull()) {
+            bootstrapFlagRepository.claim(FIRST_ADMIN_FLAG, Instant.now());
+            firstAdminClaimed = true;
+            logger.info("Existing users found, first-admin bootstrap marked as claimed");
+        }
+        logger.info("First-admin bootstrap claimed: {}", firstAdminClaimed);
+    }
+
+    /**
+     * Claims the first-admin slot in the caller's transaction. Returns true for exactly one
+     * registration; the claim is undone if that registration rolls back.
+     */
+    public boolean claimFirstAdmin() {
+        if (!firstUserAdmin || firstAdminClaimed) {
+            return false;
+        }
+
+        boolean claimed = bootstrapFlagRepository.claim(FIRST_ADMIN_FLAG, Instant.now()) == 1;
+        if (!claimed) {
+            firstAdminClaimed = true;
+        } else if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    firstAdminClaimed = true;
+                }
+            });
+        } else {
+            firstAdminClaimed = true;
+        }
+        logger.debug("First-admin claim attempted, won: {}", claimed);
+        return claimed;
+    }
+}
@@ -2,9 +2,9 @@ package me.manulorenzo.usermanagement.service;
 
 import me.manulorenzo.usermanagement.entity.User;
 import me.manulorenzo.usermanagement.repository.UserRepository;
+import me.manulorenzo.usermanagement.security.UserPrincipal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -16,9 +16,11 @@ public class CustomUserDetailsService implements UserDetailsService {
     private static final Logger logger = LoggerFactory.getLogger(CustomUserDetailsService.class);
 
     private final UserRepository userRepo;
+    private final RoleRegistry roleRegistry;
 
-    public CustomUserDetailsService(UserRepository userRepo) {
+    public CustomUserDetailsService(UserRepository userRepo, RoleRegistry roleRegistry) {
         this.userRepo = userRepo;
+        this.roleRegistry = roleRegistry;
         logger.info("CustomUserDetailsService initialized");
     }
 
@@ -36,19 +38,17 @@ public class CustomUserDetailsService implements UserDetailsService {
             logger.debug("User {} found with {} roles", username, user.getRoles().size());
 
             var authorities = user.getRoles().stream()
-                    .map(role -> new SimpleGrantedAuthority("ROLE_" + role.getName()))
+                    .map(role -> roleRegistry.authorityOf(role.getName()))
                     .toList();
 
             logger.debug("User {} has authorities: {}", username, authorities);
 
-            UserDetails userDetails = new org.springframework.security.core.userdetails.User(
+            UserDetails userDetails = new UserPrincipal(
                     user.getUsername(),
                     user.getPassword(),
                     user.isEnabled(), // Account enabled (email verified)
-                    true, // Account not expired
-                    true, // Credentials not expired
-                    true, // Account not locked
-                    authorities
+                    authorities,
+                    user.getVersion() // Profile ETag as of this request
             );
 
             logger.info("Successfully loaded user details for: {} (enabled: {})", username, user.isEnabled());
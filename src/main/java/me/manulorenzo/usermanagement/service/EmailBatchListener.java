@@ -0,0 +1,136 @@
+package me.manulorenzo.usermanagement.service;
+
+import com.rabbitmq.client.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Consumes {@code emailQueue} and its critical lane in batches of up to {@code app.email.listener.batch-size} tasks,
+ * collected for at most {@code app.email.listener.receive-timeout-ms}, and sends each batch over
+ * one SMTP connection via {@link EmailService#sendBatch}.
+ * <p>
+ * Every delivery is acknowledged on its own: sent tasks are acked, and failed or unreadable ones
+ * are acked once {@link EmailRetryHandler} has moved them to a retry or dead-letter queue. A
+ * delivery that could not be moved is requeued, so one bad address does not redeliver the batch.
+ * Tasks superseded by a later task of the batch for the same recipient are acked without sending.
+ * Recipient domains over their {@link EmailSendShaper} limits get their excess tasks deferred, and
+ * the remaining tasks are sent round-robin across domains.
+ */
+@Component
+@ConditionalOnProperty(name = "app.email.dispatcher", havingValue = "rabbit", matchIfMissing = true)
+@ConditionalOnProperty(name = "app.email.listener.mode", havingValue = "batch")
+public class EmailBatchListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailBatchListener.class);
+
+    private final EmailService emailService;
+    private final EmailRetryHandler retryHandler;
+    private final MessageConverter messageConverter;
+    private final EmailCoalescer emailCoalescer;
+    private final EmailSendShaper sendShaper;
+
+    public EmailBatchListener(EmailService emailService, EmailRetryHandler retryHandler, MessageConverter messageConverter,
+                              EmailCoalescer emailCoalescer, EmailSendShaper sendShaper) {
+        this.emailService = emailService;
+        this.retryHandler = retryHandler;
+        this.messageConverter = messageConverter;
+        this.emailCoalescer = emailCoalescer;
+        this.sendShaper = sendShaper;
+    }
+
+    @RabbitListener(queues = EmailRetryHandler.EMAIL_QUEUE, containerFactory = "emailBatchContainerFactory",
+            concurrency = "${app.email.lanes.bulk-consumers:1}")
+    public void handleEmailTasks(List<Message> messages, Channel channel) throws IOException {
+        sendBatch(messages, channel);
+    }
+
+    // Own consumers, so verification and reset emails never wait behind a welcome backlog
+    @RabbitListener(queues = EmailRetryHandler.CRITICAL_QUEUE, containerFactory = "emailBatchContainerFactory",
+            concurrency = "${app.email.lanes.critical-consumers:3}")
+    public void handleCriticalEmailTasks(List<Message> messages, Channel channel) throws IOException {
+        sendBatch(messages, channel);
+    }
+
+    private void sendBatch(List<Message> messages, Channel channel) throws IOException {
+        Map<EmailTask, Long> deliveryTags = new IdentityHashMap<>();
+        List<EmailTask> tasks = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            long deliveryTag = message.getMessageProperties().getDeliveryTag();
+            try {
+                // Same typing as the single listener, which infers EmailTask from its parameter
+                message.getMessageProperties().setInferredArgumentType(EmailTask.class);
+                EmailTask task = (EmailTask) messageConverter.fromMessage(message);
+                deliveryTags.put(task, deliveryTag);
+                tasks.add(task);
+            } catch (RuntimeException e) {
+                settle(channel, deliveryTag, () -> retryHandler.deadLetter(message, e));
+            }
+        }
+
+        // An earlier task for the same recipient and type carries a token the later one replaced
+        Set<EmailTask> superseded = emailCoalescer.superseded(tasks);
+        for (EmailTask task : superseded) {
+            channel.basicAck(deliveryTags.get(task), false);
+        }
+        tasks.removeAll(superseded);
+
+        // Each domain gets as many tasks as its permit grants, the rest are deferred
+        List<EmailSendShaper.Permit> permits = new ArrayList<>();
+        List<List<EmailTask>> admittedPerDomain = new ArrayList<>();
+        int deferred = 0;
+        for (Map.Entry<String, List<EmailTask>> domain : EmailSendShaper.byDomain(tasks).entrySet()) {
+            List<EmailTask> domainTasks = domain.getValue();
+            EmailSendShaper.Permit permit = sendShaper.tryAcquire(domain.getKey(), domainTasks.size());
+            permits.add(permit);
+            admittedPerDomain.add(domainTasks.subList(0, permit.granted()));
+            for (EmailTask task : domainTasks.subList(permit.granted(), domainTasks.size())) {
+                settle(channel, deliveryTags.get(task), () -> sendShaper.defer(task));
+                deferred++;
+            }
+        }
+        // Interleaved so a large domain does not hold the others back on the shared connection
+        tasks = EmailSendShaper.roundRobin(admittedPerDomain);
+
+        Map<EmailTask, Exception> failed;
+        try {
+            failed = tasks.isEmpty() ? Map.of() : emailService.sendBatch(tasks);
+        } finally {
+            permits.forEach(EmailSendShaper.Permit::close);
+        }
+        retryHandler.recordSent(tasks.size() - failed.size());
+        for (EmailTask task : tasks) {
+            long deliveryTag = deliveryTags.get(task);
+            Exception failure = failed.get(task);
+            if (failure == null) {
+                channel.basicAck(deliveryTag, false);
+            } else {
+                settle(channel, deliveryTag, () -> retryHandler.handleFailure(task, failure));
+            }
+        }
+        logger.debug("Processed email batch of {} messages, {} superseded, {} deferred, {} failed", messages.size(),
+                superseded.size(), deferred, messages.size() - superseded.size() - deferred - tasks.size() + failed.size());
+    }
+
+    private void settle(Channel channel, long deliveryTag, Runnable handOver) throws IOException {
+        try {
+            handOver.run();
+        } catch (RuntimeException e) {
+            logger.error("Failed to hand over email task with delivery tag {}, requeueing it", deliveryTag, e);
+            channel.basicNack(deliveryTag, false, true);
+            return;
+        }
+        channel.basicAck(deliveryTag, false);
+    }
+}
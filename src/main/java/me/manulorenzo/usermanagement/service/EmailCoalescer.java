@@ -0,0 +1,132 @@
+package me.manulorenzo.usermanagement.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import me.manulorenzo.usermanagement.entity.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Collapses repeated email tasks for the same recipient and type, so a user clicking "resend" or
+ * "forgot password" several times gets one email with one valid token.
+ * <p>
+ * On the producer side {@link #tryAcquire} lets one task per (email, type) through per window;
+ * repeats issue no new token, so the email already on its way still carries the latest one. On the
+ * consumer side {@link #superseded} drops tasks of a batch that a later task for the same
+ * recipient and type replaces, which covers repeats queued by other nodes.
+ */
+@Component
+public class EmailCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailCoalescer.class);
+
+    private final Map<String, Long> lastAcquired = new ConcurrentHashMap<>();
+    private final long windowNanos;
+    private final int maxEntries;
+    private final LongSupplier nanoClock;
+    private final Counter coalescedCounter;
+
+    @Autowired
+    public EmailCoalescer(
+            @Value("${app.email.coalesce.window-ms:60000}") long windowMs,
+            @Value("${app.email.coalesce.max-entries:10000}") int maxEntries,
+            MeterRegistry meterRegistry) {
+        this(windowMs, maxEntries, meterRegistry, System::nanoTime);
+    }
+
+    EmailCoalescer(long windowMs, int maxEntries, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, windowMs));
+        this.maxEntries = Math.max(0, maxEntries);
+        this.nanoClock = nanoClock;
+        this.coalescedCounter = Counter.builder("app.email.coalesced")
+                .description("Email tasks collapsed into an earlier or later task for the same recipient and type")
+                .register(meterRegistry);
+
+        logger.info("EmailCoalescer initialized with window: {}ms, max entries: {}", windowMs, this.maxEntries);
+    }
+
+    /**
+     * Returns true if a task of the given type may be queued for the email, false if one was already
+     * queued within the window. Released again if the surrounding transaction rolls back.
+     */
+    public boolean tryAcquire(String email, String type) {
+        if (windowNanos == 0) {
+            return true;
+        }
+        String key = key(email, type);
+        long now = nanoClock.getAsLong();
+        Long previous = lastAcquired.get(key);
+        if (previous != null && now - previous < windowNanos) {
+            coalescedCounter.increment();
+            return false;
+        }
+        if (lastAcquired.size() >= maxEntries && previous == null) {
+            purgeExpired(now);
+            if (lastAcquired.size() >= maxEntries) {
+                // Full of live entries: let the task through rather than track it
+                return true;
+            }
+        }
+        boolean acquired = previous == null ? lastAcquired.putIfAbsent(key, now) == null : lastAcquired.replace(key, previous, now);
+        if (!acquired) {
+            // Another request for the same recipient won the race
+            coalescedCounter.increment();
+            return false;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        lastAcquired.remove(key, now);
+                    }
+                }
+            });
+        }
+        return true;
+    }
+
+    /**
+     * Returns the tasks of the batch, by identity, that a later task for the same email and type supersedes.
+     */
+    public Set<EmailTask> superseded(List<EmailTask> tasks) {
+        Set<EmailTask> superseded = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<String, EmailTask> latest = new HashMap<>();
+        for (EmailTask task : tasks) {
+            EmailTask previous = latest.put(key(task.getEmail(), task.getType()), task);
+            if (previous != null) {
+                superseded.add(previous);
+            }
+        }
+        coalescedCounter.increment(superseded.size());
+        return superseded;
+    }
+
+    int size() {
+        return lastAcquired.size();
+    }
+
+    private void purgeExpired(long now) {
+        lastAcquired.values().removeIf(acquiredAt -> now - acquiredAt >= windowNanos);
+    }
+
+    private static String key(String email, String type) {
+        return User.normalize(email) + '\n' + type;
+    }
+}
@@ -0,0 +1,11 @@
+package me.manulorenzo.usermanagement.service;
+
+/**
+ * Hands email tasks to whatever sends them, selected by {@code app.email.dispatcher}: RabbitMQ
+ * through the outbox ({@code rabbit}, the default) or a worker pool in this JVM ({@code in-process}).
+ * Either way a task queued inside a transaction is only sent if that transaction commits.
+ */
+public interface EmailDispatcher {
+
+    void dispatch(EmailTask task);
+}
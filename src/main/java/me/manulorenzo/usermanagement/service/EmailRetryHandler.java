@@ -0,0 +1,222 @@
+package me.manulorenzo.usermanagement.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.mail.MessagingException;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSenderFailedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides what happens to an email task whose delivery failed.
+ * <p>
+ * Transient failures (connection problems, 4xx SMTP replies) are republished to the retry queue
+ * for the attempt, whose TTL dead-letters the task back to {@code emailQueue} once the backoff has
+ * passed; the backoff doubles (by {@code multiplier}) with every attempt. Permanent failures
+ * (5xx replies, unrenderable messages) and tasks that used up {@code max-attempts} go to the
+ * dead-letter queue.
+ * <p>
+ * Verification and password reset emails travel in their own lane, {@code emailQueue.critical},
+ * with more consumers than the bulk lane, so a backlog of welcome emails never delays a reset link.
+ * Each lane has its own retry queues, so retried tasks come back to the lane they left.
+ */
+@Component
+@ConditionalOnProperty(name = "app.email.dispatcher", havingValue = "rabbit", matchIfMissing = true)
+public class EmailRetryHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailRetryHandler.class);
+
+    public static final String EMAIL_QUEUE = "emailQueue";
+    public static final String CRITICAL_QUEUE = "emailQueue.critical";
+    public static final List<String> LANES = List.of(EMAIL_QUEUE, CRITICAL_QUEUE);
+    public static final String DEAD_LETTER_QUEUE = "emailQueue.dlq";
+    static final String FAILURE_HEADER = "x-email-failure";
+    static final String REASON_HEADER = "x-email-dead-letter-reason";
+
+    // Time-limited links the user is waiting for
+    private static final Set<String> CRITICAL_TYPES = Set.of("verification", "reset");
+
+    /**
+     * A retry queue, how long tasks wait in it and the lane they return to. The TTL is part of the
+     * name, so changing the backoff declares new queues instead of conflicting with the arguments
+     * of existing ones.
+     */
+    public record RetryQueue(String name, long ttlMs, String lane) {
+    }
+
+    private final int maxAttempts;
+    private final List<RetryQueue> retryQueues;
+    private final Map<String, List<RetryQueue>> retryQueuesByLane;
+    private final RabbitTemplate rabbitTemplate;
+    private final Counter sentCounter;
+    private final Counter retriedCounter;
+    private final MeterRegistry meterRegistry;
+
+    public EmailRetryHandler(
+            @Value("${app.email.retry.max-attempts:5}") int maxAttempts,
+            @Value("${app.email.retry.initial-backoff-ms:10000}") long initialBackoffMs,
+            @Value("${app.email.retry.multiplier:2.0}") double multiplier,
+            RabbitTemplate rabbitTemplate,
+            MeterRegistry meterRegistry) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        List<RetryQueue> queues = new ArrayList<>();
+        Map<String, List<RetryQueue>> queuesByLane = new HashMap<>();
+        for (String lane : LANES) {
+            List<RetryQueue> laneQueues = new ArrayList<>();
+            for (int attempt = 1; attempt < this.maxAttempts; attempt++) {
+                long ttl = (long) Math.min(Integer.MAX_VALUE,
+                        Math.max(1, initialBackoffMs) * Math.pow(Math.max(1.0, multiplier), attempt - 1));
+                laneQueues.add(new RetryQueue(lane + ".retry." + ttl + "ms", ttl, lane));
+            }
+            queues.addAll(laneQueues);
+            queuesByLane.put(lane, List.copyOf(laneQueues));
+        }
+        this.retryQueues = Collections.unmodifiableList(queues);
+        this.retryQueuesByLane = Map.copyOf(queuesByLane);
+        this.rabbitTemplate = rabbitTemplate;
+        this.meterRegistry = meterRegistry;
+        this.sentCounter = Counter.builder("app.email.sent")
+                .description("Email tasks delivered to the SMTP server")
+                .register(meterRegistry);
+        this.retriedCounter = Counter.builder("app.email.retried")
+                .description("Email tasks scheduled for another delivery attempt")
+                .register(meterRegistry);
+
+        logger.info("EmailRetryHandler initialized with max attempts: {}, retry queues: {}", this.maxAttempts, retryQueues);
+    }
+
+    public List<RetryQueue> getRetryQueues() {
+        return retryQueues;
+    }
+
+    /**
+     * Returns the queue of the lane the task travels in.
+     */
+    public static String queueFor(EmailTask task) {
+        return CRITICAL_TYPES.contains(task.getType()) ? CRITICAL_QUEUE : EMAIL_QUEUE;
+    }
+
+    public void recordSent(int count) {
+        sentCounter.increment(count);
+    }
+
+    /**
+     * Schedules a retry or dead-letters the task. Throws if the task could not be republished,
+     * in which case the caller must not acknowledge the original delivery.
+     */
+    public void handleFailure(EmailTask task, Exception failure) {
+        int failedAttempts = task.getAttempt() + 1;
+        boolean transientFailure = isTransient(failure);
+        if (transientFailure && failedAttempts < maxAttempts) {
+            RetryQueue queue = retryQueuesByLane.get(queueFor(task)).get(failedAttempts - 1);
+            task.setAttempt(failedAttempts);
+            rabbitTemplate.convertAndSend("", queue.name(), task);
+            retriedCounter.increment();
+            logger.warn("Failed to send {} email to: {} (attempt {} of {}), retrying in {}ms: {}",
+                    task.getType(), task.getEmail(), failedAttempts, maxAttempts, queue.ttlMs(), failure.toString());
+            return;
+        }
+
+        String reason = transientFailure ? "exhausted" : "permanent";
+        task.setAttempt(failedAttempts);
+        rabbitTemplate.convertAndSend("", DEAD_LETTER_QUEUE, task, message -> {
+            message.getMessageProperties().setHeader(REASON_HEADER, reason);
+            message.getMessageProperties().setHeader(FAILURE_HEADER, describe(failure));
+            return message;
+        });
+        deadLetteredCounter(reason).increment();
+        logger.error("Dead-lettered {} email to: {} after {} attempts ({})", task.getType(), task.getEmail(),
+                failedAttempts, reason, failure);
+        if (task.getToken() != null) {
+            // In development, log the token so you can test manually
+            logger.warn("Development - {} token for {}: {}", task.getType(), task.getEmail(), task.getToken());
+        }
+    }
+
+    /**
+     * Moves a delivery that could not even be read as an email task to the dead-letter queue, unchanged.
+     */
+    public void deadLetter(Message message, Exception failure) {
+        message.getMessageProperties().setHeader(REASON_HEADER, "unreadable");
+        message.getMessageProperties().setHeader(FAILURE_HEADER, describe(failure));
+        rabbitTemplate.send("", DEAD_LETTER_QUEUE, message);
+        deadLetteredCounter("unreadable").increment();
+        logger.error("Dead-lettered unreadable email task", failure);
+    }
+
+    /**
+     * Transient failures may succeed later: connection problems and 4xx SMTP replies. Permanent
+     * ones will not: 5xx replies and messages that cannot be built. Anything unrecognized is
+     * treated as transient, the attempt limit still bounds it.
+     */
+    static boolean isTransient(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = next(cause)) {
+            if (cause instanceof MailParseException || cause instanceof MailPreparationException) {
+                return false;
+            }
+            int returnCode = returnCode(cause);
+            if (returnCode >= 500) {
+                return false;
+            }
+            if (returnCode >= 400 || cause instanceof IOException) {
+                return true;
+            }
+        }
+        return true;
+    }
+
+    private static Throwable next(Throwable failure) {
+        // MailSendException built from per-message failures carries them in the map, not as its cause
+        if (failure instanceof MailSendException mailSendException && failure.getCause() == null
+                && !mailSendException.getFailedMessages().isEmpty()) {
+            return mailSendException.getFailedMessages().values().iterator().next();
+        }
+        if (failure instanceof MessagingException messagingException && messagingException.getNextException() != null) {
+            return messagingException.getNextException();
+        }
+        return failure.getCause() == failure ? null : failure.getCause();
+    }
+
+    private static int returnCode(Throwable failure) {
+        if (failure instanceof SMTPAddressFailedException e) {
+            return e.getReturnCode();
+        }
+        if (failure instanceof SMTPSenderFailedException e) {
+            return e.getReturnCode();
+        }
+        if (failure instanceof SMTPSendFailedException e) {
+            return e.getReturnCode();
+        }
+        return -1;
+    }
+
+    private static String describe(Exception failure) {
+        String description = failure.toString();
+        return description.length() > 500 ? description.substring(0, 500) : description;
+    }
+
+    private Counter deadLetteredCounter(String reason) {
+        return Counter.builder("app.email.dead-lettered")
+                .description("Email tasks moved to the dead-letter queue")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
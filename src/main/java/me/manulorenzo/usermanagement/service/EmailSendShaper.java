@@ -0,0 +1,245 @@
+package me.manulorenzo.usermanagement.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import me.manulorenzo.usermanagement.entity.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Shapes outgoing email per recipient domain, so a burst to one domain neither gets us throttled
+ * by its MTA nor holds up mail to every other domain.
+ * <p>
+ * Each domain has a token bucket ({@code rate-per-second}, up to {@code burst} tokens) and a cap
+ * on the sends in flight at once. A task that gets no permit is not waited for: the consumer
+ * {@link #defer defers} it to a TTL queue that dead-letters it back to its lane after
+ * {@code defer-ms}, and moves on to the next task.
+ */
+@Component
+@ConditionalOnProperty(name = "app.email.dispatcher", havingValue = "rabbit", matchIfMissing = true)
+public class EmailSendShaper {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailSendShaper.class);
+
+    private static final Permit DENIED = new Permit(null, 0);
+
+    private final boolean enabled;
+    private final double tokensPerNano;
+    private final double burst;
+    private final int maxConcurrent;
+    private final int maxDomains;
+    private final long deferMs;
+    private final Map<String, DomainState> domains = new ConcurrentHashMap<>();
+    private final RabbitTemplate rabbitTemplate;
+    private final LongSupplier nanoClock;
+    private final Counter deferredCounter;
+
+    @Autowired
+    public EmailSendShaper(
+            @Value("${app.email.shaping.enabled:true}") boolean enabled,
+            @Value("${app.email.shaping.rate-per-second:5}") double ratePerSecond,
+            @Value("${app.email.shaping.burst:20}") int burst,
+            @Value("${app.email.shaping.max-concurrent-per-domain:2}") int maxConcurrent,
+            @Value("${app.email.shaping.defer-ms:2000}") long deferMs,
+            @Value("${app.email.shaping.max-domains:10000}") int maxDomains,
+            RabbitTemplate rabbitTemplate,
+            MeterRegistry meterRegistry) {
+        this(enabled, ratePerSecond, burst, maxConcurrent, deferMs, maxDomains, rabbitTemplate, meterRegistry, System::nanoTime);
+    }
+
+    EmailSendShaper(boolean enabled, double ratePerSecond, int burst, int maxConcurrent, long deferMs, int maxDomains,
+                    RabbitTemplate rabbitTemplate, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.enabled = enabled;
+        this.tokensPerNano = Math.max(0.001, ratePerSecond) / TimeUnit.SECONDS.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxDomains = Math.max(1, maxDomains);
+        this.deferMs = Math.max(1, deferMs);
+        this.rabbitTemplate = rabbitTemplate;
+        this.nanoClock = nanoClock;
+        this.deferredCounter = Counter.builder("app.email.deferred")
+                .description("Email tasks put back because their recipient domain was over its send rate or concurrency")
+                .register(meterRegistry);
+
+        logger.info("EmailSendShaper initialized with enabled: {}, per domain: {}/s, burst: {}, max concurrent: {}, defer: {}ms",
+                enabled, ratePerSecond, this.burst, this.maxConcurrent, this.deferMs);
+    }
+
+    /**
+     * Returns the defer queue of the lane, which dead-letters back to that lane.
+     */
+    public String getDeferQueue(String lane) {
+        // TTL in the name like the retry queues, so changing it declares a new queue
+        return lane + ".defer." + deferMs + "ms";
+    }
+
+    public long getDeferMs() {
+        return deferMs;
+    }
+
+    /**
+     * Asks to send up to {@code wanted} emails to the domain over one connection. The permit may
+     * grant fewer, or none when the domain is throttled; it must be closed once the sends are done.
+     */
+    public Permit tryAcquire(String domain, int wanted) {
+        if (!enabled || domain == null) {
+            return new Permit(null, wanted);
+        }
+        DomainState state = domains.get(domain);
+        if (state == null) {
+            if (domains.size() >= maxDomains) {
+                purgeIdle();
+                if (domains.size() >= maxDomains) {
+                    // Too many domains to track; sending unshaped beats stalling
+                    return new Permit(null, wanted);
+                }
+            }
+            state = domains.computeIfAbsent(domain, key -> new DomainState(burst, nanoClock.getAsLong()));
+        }
+        int granted = state.tryAcquire(wanted, nanoClock.getAsLong());
+        return granted == 0 ? DENIED : new Permit(state, granted);
+    }
+
+    /**
+     * Republishes the task to the defer queue of its lane, unchanged. Throws if it could not be
+     * republished, in which case the caller must not acknowledge the original delivery.
+     */
+    public void defer(EmailTask task) {
+        rabbitTemplate.convertAndSend("", getDeferQueue(EmailRetryHandler.queueFor(task)), task);
+        deferredCounter.increment();
+        logger.debug("Deferred {} email to: {} by {}ms", task.getType(), task.getEmail(), deferMs);
+    }
+
+    public static String domainOf(String email) {
+        String normalized = User.normalize(email);
+        if (normalized == null) {
+            return null;
+        }
+        int at = normalized.lastIndexOf('@');
+        return at < 0 ? normalized : normalized.substring(at + 1);
+    }
+
+    /**
+     * Groups the tasks by recipient domain, keeping their order within each domain.
+     */
+    public static Map<String, List<EmailTask>> byDomain(List<EmailTask> tasks) {
+        Map<String, List<EmailTask>> byDomain = new LinkedHashMap<>();
+        for (EmailTask task : tasks) {
+            byDomain.computeIfAbsent(String.valueOf(domainOf(task.getEmail())), key -> new ArrayList<>()).add(task);
+        }
+        return byDomain;
+    }
+
+    /**
+     * Interleaves the per-domain lists one task at a time, so no domain waits behind another's backlog.
+     */
+    public static List<EmailTask> roundRobin(Iterable<List<EmailTask>> perDomain) {
+        Queue<Iterator<EmailTask>> turns = new ArrayDeque<>();
+        int total = 0;
+        for (List<EmailTask> tasks : perDomain) {
+            turns.add(tasks.iterator());
+            total += tasks.size();
+        }
+        List<EmailTask> ordered = new ArrayList<>(total);
+        while (!turns.isEmpty()) {
+            Iterator<EmailTask> turn = turns.poll();
+            if (turn.hasNext()) {
+                ordered.add(turn.next());
+                turns.add(turn);
+            }
+        }
+        return ordered;
+    }
+
+    int trackedDomains() {
+        return domains.size();
+    }
+
+    private void purgeIdle() {
+        long now = nanoClock.getAsLong();
+        domains.values().removeIf(state -> state.isIdle(now));
+    }
+
+    /**
+     * Sends granted for one domain; closing it frees the domain's concurrency slot.
+     */
+    public static final class Permit implements AutoCloseable {
+
+        private final DomainState state;
+        private final int granted;
+        private boolean closed;
+
+        private Permit(DomainState state, int granted) {
+            this.state = state;
+            this.granted = granted;
+        }
+
+        public int granted() {
+            return granted;
+        }
+
+        @Override
+        public void close() {
+            if (state != null && !closed) {
+                closed = true;
+                state.release();
+            }
+        }
+    }
+
+    private final class DomainState {
+
+        private double tokens;
+        private long refilledAt;
+        private int inFlight;
+
+        DomainState(double tokens, long now) {
+            this.tokens = tokens;
+            this.refilledAt = now;
+        }
+
+        synchronized int tryAcquire(int wanted, long now) {
+            if (inFlight >= maxConcurrent) {
+                return 0;
+            }
+            refill(now);
+            int granted = (int) Math.min(wanted, Math.floor(tokens));
+            if (granted > 0) {
+                tokens -= granted;
+                inFlight++;
+            }
+            return granted;
+        }
+
+        synchronized void release() {
+            inFlight--;
+        }
+
+        // Nothing in flight and the bucket is full again: forgetting the domain changes nothing
+        synchronized boolean isIdle(long now) {
+            refill(now);
+            return inFlight == 0 && tokens >= burst;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+        }
+    }
+}
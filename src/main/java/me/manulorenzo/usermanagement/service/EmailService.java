@@ -1,14 +1,28 @@
 package me.manulorenzo.usermanagement.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
 import me.manulorenzo.usermanagement.entity.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.SimpleMailMessage;
+import org.springframework.context.i18n.LocaleContext;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
 @Service
 public class EmailService {
 
@@ -17,136 +31,195 @@ public class EmailService {
     private final JavaMailSender mailSender;
     private final String fromEmail;
     private final String baseUrl;
-    private final RabbitTemplate rabbitTemplate;
+    private final EmailDispatcher emailDispatcher;
+    private final EmailTemplateEngine templateEngine;
+    private final MeterRegistry meterRegistry;
 
     public EmailService(
             JavaMailSender mailSender,
             @Value("${app.email.from:noreply@usermanagement.com}") String fromEmail,
             @Value("${app.base-url:http://localhost:8082}") String baseUrl,
-            RabbitTemplate rabbitTemplate) {
+            EmailDispatcher emailDispatcher,
+            EmailTemplateEngine templateEngine,
+            MeterRegistry meterRegistry) {
         this.mailSender = mailSender;
         this.fromEmail = fromEmail;
         this.baseUrl = baseUrl;
-        this.rabbitTemplate = rabbitTemplate;
+        this.emailDispatcher = emailDispatcher;
+        this.templateEngine = templateEngine;
+        this.meterRegistry = meterRegistry;
         logger.info("EmailService initialized with from: '{}', baseUrl: '{}'", fromEmail, baseUrl);
     }
 
-    public void sendVerificationEmail(EmailTask task) {
-        try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setFrom(fromEmail);
-            message.setTo(task.getEmail());
-            message.setSubject("Verify Your Email - User Management");
-
-            String verificationUrl = baseUrl + "/verify-email?email=" + task.getEmail() + "&token=" + task.getToken();
-
-            message.setText(String.format(
-                    """
-                            Hi %s,
-                            
-                            Thank you for registering with User Management!
-                            
-                            Please click the following link to verify your email address:
-                            %s
-                            
-                            Or use this verification code: %s
-                            
-                            This link will expire in 24 hours.
-                            
-                            If you didn't register for an account, please ignore this email.
-                            
-                            Best regards,
-                            User Management Team""",
-                    task.getUsername(),
-                    verificationUrl,
-                    task.getToken()
-            ));
-
-            mailSender.send(message);
-            logger.info("Verification email sent to: {}", task.getEmail());
-        } catch (Exception e) {
-            logger.error("Failed to send verification email to: {}", task.getEmail(), e);
-            // In development, log the token so you can test manually
-            logger.warn("Development - Verification token for {}: {}", task.getEmail(), task.getToken());
+    /**
+     * Sends one task, letting failures propagate so the caller can retry or dead-letter it.
+     *
+     * @return false when the task type is unknown and nothing was sent
+     */
+    public boolean send(EmailTask task) throws MessagingException {
+        MimeMessage message = compose(task);
+        if (message == null) {
+            logger.warn("Skipping email task of unknown type: {}", task.getType());
+            return false;
         }
+        mailSender.send(message);
+        recordLatency(task);
+        logger.info("{} email sent to: {}", task.getType(), task.getEmail());
+        return true;
     }
 
-    public void sendPasswordResetEmail(EmailTask task) {
+    /**
+     * Sends the tasks over a single SMTP connection instead of one connection per message.
+     *
+     * @return the tasks that could not be sent with the failure of each, by identity; empty when all were delivered
+     */
+    public Map<EmailTask, Exception> sendBatch(List<EmailTask> tasks) {
+        Map<EmailTask, Exception> failed = new IdentityHashMap<>();
+        List<EmailTask> composedTasks = new ArrayList<>(tasks.size());
+        List<MimeMessage> messages = new ArrayList<>(tasks.size());
+        for (EmailTask task : tasks) {
+            MimeMessage message;
+            try {
+                message = compose(task);
+            } catch (Exception e) {
+                logger.error("Failed to compose {} email to: {}", task.getType(), task.getEmail(), e);
+                failed.put(task, e);
+                continue;
+            }
+            if (message == null) {
+                logger.warn("Skipping email task of unknown type: {}", task.getType());
+                continue;
+            }
+            composedTasks.add(task);
+            messages.add(message);
+        }
+        if (messages.isEmpty()) {
+            return failed;
+        }
+
+        int composeFailures = failed.size();
         try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setFrom(fromEmail);
-            message.setTo(task.getEmail());
-            message.setSubject("Password Reset - User Management");
-
-            String resetUrl = baseUrl + "/reset-password?email=" + task.getEmail() + "&token=" + task.getToken();
-
-            message.setText(String.format(
-                    "Hi %s,\n\n" +
-                            "You requested a password reset for your User Management account.\n\n" +
-                            "Please click the following link to reset your password:\n" +
-                            "%s\n\n" +
-                            "Or use this reset code: %s\n\n" +
-                            "This link will expire in 1 hour.\n\n" +
-                            "If you didn't request a password reset, please ignore this email.\n\n" +
-                            "Best regards,\n" +
-                            "User Management Team",
-                    task.getUsername(),
-                    resetUrl,
-                    task.getToken()
-            ));
-
-            mailSender.send(message);
-            logger.info("Password reset email sent to: {}", task.getEmail());
+            mailSender.send(messages.toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            // Only the messages listed as failed were rejected, the rest went out on the same connection
+            e.getFailedMessages().forEach((failedMessage, failure) -> {
+                for (int i = 0; i < messages.size(); i++) {
+                    if (messages.get(i) == failedMessage) {
+                        failed.put(composedTasks.get(i), failure);
+                    }
+                }
+            });
+            if (failed.size() == composeFailures) {
+                composedTasks.forEach(task -> failed.put(task, e));
+            }
+            logger.error("Failed to send {} emails of a batch", failed.size() - composeFailures, e);
         } catch (Exception e) {
-            logger.error("Failed to send password reset email to: {}", task.getEmail(), e);
-            // In development, log the token so you can test manually
-            logger.warn("Development - Password reset token for {}: {}", task.getEmail(), task.getToken());
+            composedTasks.forEach(task -> failed.put(task, e));
+            logger.error("Failed to send a batch of {} emails", composedTasks.size(), e);
+        }
+        for (EmailTask task : composedTasks) {
+            if (!failed.containsKey(task)) {
+                recordLatency(task);
+            }
         }
+        logger.info("Sent {} of {} emails in one batch", messages.size() - (failed.size() - composeFailures), tasks.size());
+        return failed;
     }
 
-    public void sendWelcomeEmail(EmailTask task) {
-        try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setFrom(fromEmail);
-            message.setTo(task.getEmail());
-            message.setSubject("Welcome to User Management!");
-
-            message.setText(String.format(
-                    "Hi %s,\n\n" +
-                            "Welcome to User Management! Your email has been successfully verified.\n\n" +
-                            "You can now log in and use all features of the application.\n\n" +
-                            "Login at: %s/swagger-ui.html\n\n" +
-                            "Your role: %s\n\n" +
-                            "Best regards,\n" +
-                            "User Management Team",
-                    task.getUsername(),
-                    baseUrl,
-                    task.getRoles()
-            ));
-
-            mailSender.send(message);
-            logger.info("Welcome email sent to: {}", task.getEmail());
-        } catch (Exception e) {
-            logger.error("Failed to send welcome email to: {}", task.getEmail(), e);
+    // Queue-to-send time per type, retries and deferrals included, to check critical mail goes out first
+    private void recordLatency(EmailTask task) {
+        if (task.getQueuedAt() == null) {
+            return;
+        }
+        Timer.builder("app.email.latency")
+                .description("Time from queueing an email task until it was handed to the SMTP server")
+                .tag("type", String.valueOf(task.getType()))
+                .register(meterRegistry)
+                .record(Duration.ofMillis(Math.max(0, System.currentTimeMillis() - task.getQueuedAt())));
+    }
+
+    MimeMessage compose(EmailTask task) throws MessagingException {
+        if (task.getType() == null) {
+            return null;
+        }
+        return switch (task.getType()) {
+            case "verification" -> composeVerificationEmail(task);
+            case "reset" -> composePasswordResetEmail(task);
+            case "welcome" -> composeWelcomeEmail(task);
+            default -> null;
+        };
+    }
+
+    private MimeMessage composeVerificationEmail(EmailTask task) throws MessagingException {
+        String verificationUrl = baseUrl + "/verify-email?email=" + task.getEmail() + "&token=" + task.getToken();
+        return composeEmail(task, "verification",
+                Map.of("username", nullToEmpty(task.getUsername()), "url", verificationUrl, "token", nullToEmpty(task.getToken())));
+    }
+
+    private MimeMessage composePasswordResetEmail(EmailTask task) throws MessagingException {
+        String resetUrl = baseUrl + "/reset-password?email=" + task.getEmail() + "&token=" + task.getToken();
+        return composeEmail(task, "reset",
+                Map.of("username", nullToEmpty(task.getUsername()), "url", resetUrl, "token", nullToEmpty(task.getToken())));
+    }
+
+    private MimeMessage composeWelcomeEmail(EmailTask task) throws MessagingException {
+        return composeEmail(task, "welcome",
+                Map.of("username", nullToEmpty(task.getUsername()), "loginUrl", baseUrl + "/swagger-ui.html",
+                        "role", nullToEmpty(task.getRoles())));
+    }
+
+    private MimeMessage composeEmail(EmailTask task, String template, Map<String, String> values) throws MessagingException {
+        Locale locale = task.getLocale() == null || task.getLocale().isBlank() ? null : Locale.forLanguageTag(task.getLocale());
+        EmailTemplateEngine.RenderedEmail rendered = templateEngine.render(template, locale, values);
+
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, rendered.html() != null, StandardCharsets.UTF_8.name());
+        helper.setFrom(fromEmail);
+        helper.setTo(task.getEmail());
+        helper.setSubject(rendered.subject());
+        if (rendered.html() != null) {
+            helper.setText(rendered.text(), rendered.html());
+        } else {
+            helper.setText(rendered.text());
         }
+        return message;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private void dispatch(EmailTask task) {
+        task.setQueuedAt(System.currentTimeMillis());
+        if (task.getLocale() == null) {
+            task.setLocale(requestLocale());
+        }
+        emailDispatcher.dispatch(task);
+    }
+
+    // Resolved from Accept-Language by Spring MVC; null outside a request, which renders the default locale
+    private static String requestLocale() {
+        LocaleContext context = LocaleContextHolder.getLocaleContext();
+        Locale locale = context != null ? context.getLocale() : null;
+        return locale != null ? locale.toLanguageTag() : null;
     }
 
-    public void queueVerificationEmail(User user) {
+    public void queueVerificationEmail(User user, String token) {
         logger.info("Queueing verification email for user: {}", user.getEmail());
-        EmailTask task = new EmailTask("verification", user.getEmail(), user.getUsername(), user.getVerificationToken());
-        rabbitTemplate.convertAndSend("emailQueue", task);
+        EmailTask task = new EmailTask("verification", user.getEmail(), user.getUsername(), token);
+        dispatch(task);
     }
 
-    public void queuePasswordResetEmail(User user) {
+    public void queuePasswordResetEmail(User user, String token) {
         logger.info("Queueing password reset email for user: {}", user.getEmail());
-        EmailTask task = new EmailTask("reset", user.getEmail(), user.getUsername(), user.getPasswordResetToken(), true);
-        rabbitTemplate.convertAndSend("emailQueue", task);
+        EmailTask task = new EmailTask("reset", user.getEmail(), user.getUsername(), token, true);
+        dispatch(task);
     }
 
     public void queueWelcomeEmail(User user) {
         logger.info("Queueing welcome email for user: {}", user.getEmail());
         String roles = user.getRoles() == null || user.getRoles().isEmpty() ? "USER" : user.getRoles().iterator().next().getName();
         EmailTask task = new EmailTask("welcome", user.getEmail(), user.getUsername(), roles);
-        rabbitTemplate.convertAndSend("emailQueue", task);
+        dispatch(task);
     }
 }
\ No newline at end of file
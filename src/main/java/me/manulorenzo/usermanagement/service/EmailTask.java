@@ -12,6 +12,9 @@ public class EmailTask {
     private String verificationToken;
     private String passwordResetToken;
     private String roles; // comma-separated if multiple
+    private String locale; // language tag of the recipient, the default locale when null
+    private int attempt; // failed deliveries so far, bumped on every retry
+    private Long queuedAt; // epoch millis when the task was queued, null for tasks queued before it was tracked
 
     public EmailTask() {
     }
@@ -2,28 +2,48 @@ package me.manulorenzo.usermanagement.service;
 
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 @Component
+@ConditionalOnProperty(name = "app.email.dispatcher", havingValue = "rabbit", matchIfMissing = true)
+@ConditionalOnProperty(name = "app.email.listener.mode", havingValue = "single", matchIfMissing = true)
 public class EmailTaskListener {
     @Autowired
     private EmailService emailService;
 
-    @RabbitListener(queues = "emailQueue")
+    @Autowired
+    private EmailRetryHandler retryHandler;
+
+    @Autowired
+    private EmailSendShaper sendShaper;
+
+    @RabbitListener(queues = EmailRetryHandler.EMAIL_QUEUE, concurrency = "${app.email.lanes.bulk-consumers:1}")
     public void handleEmailTask(EmailTask task) {
-        switch (task.getType()) {
-            case "verification":
-                emailService.sendVerificationEmail(task);
-                break;
-            case "reset":
-                emailService.sendPasswordResetEmail(task);
-                break;
-            case "welcome":
-                emailService.sendWelcomeEmail(task);
-                break;
-            default:
-                // Unknown type
-                break;
+        send(task);
+    }
+
+    // Own consumers, so verification and reset emails never wait behind a welcome backlog
+    @RabbitListener(queues = EmailRetryHandler.CRITICAL_QUEUE, concurrency = "${app.email.lanes.critical-consumers:3}")
+    public void handleCriticalEmailTask(EmailTask task) {
+        send(task);
+    }
+
+    private void send(EmailTask task) {
+        try (EmailSendShaper.Permit permit = sendShaper.tryAcquire(EmailSendShaper.domainOf(task.getEmail()), 1)) {
+            if (permit.granted() == 0) {
+                // Put back instead of waiting, so the tasks behind it for other domains keep flowing
+                sendShaper.defer(task);
+                return;
+            }
+            try {
+                if (emailService.send(task)) {
+                    retryHandler.recordSent(1);
+                }
+            } catch (Exception e) {
+                // Throws if the task could not be republished, so the delivery is requeued instead of lost
+                retryHandler.handleFailure(task, e);
+            }
         }
     }
 }
@@ -0,0 +1,98 @@
+package me.manulorenzo.usermanagement.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A template compiled once into alternating literal and variable segments, so rendering is a
+ * sequence of appends without parsing or format-string interpretation.
+ * <p>
+ * Variables are written as {@code {{name}}}. Values of unknown variables render as empty.
+ */
+final class EmailTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    // literals[i] precedes variables[i]; the last literal follows the last variable
+    private final String[] literals;
+    private final String[] variables;
+    private final boolean html;
+    private final int estimatedLength;
+
+    private EmailTemplate(String[] literals, String[] variables, boolean html) {
+        this.literals = literals;
+        this.variables = variables;
+        this.html = html;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.estimatedLength = length + variables.length * 32;
+    }
+
+    static EmailTemplate compile(String source, boolean html) {
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        int position = 0;
+        while (true) {
+            int open = source.indexOf(OPEN, position);
+            int close = open < 0 ? -1 : source.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                literals.add(source.substring(position));
+                break;
+            }
+            literals.add(source.substring(position, open));
+            String name = source.substring(open + OPEN.length(), close).trim();
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("Empty template variable at offset " + open);
+            }
+            variables.add(name);
+            position = close + CLOSE.length();
+        }
+        return new EmailTemplate(literals.toArray(String[]::new), variables.toArray(String[]::new), html);
+    }
+
+    /**
+     * Returns the template text itself when it has no variables, so it needs no rendering; otherwise null.
+     */
+    String constant() {
+        return variables.length == 0 ? literals[0] : null;
+    }
+
+    void renderTo(StringBuilder out, Map<String, String> values) {
+        out.ensureCapacity(out.length() + estimatedLength);
+        for (int i = 0; i < variables.length; i++) {
+            out.append(literals[i]);
+            String value = values.get(variables[i]);
+            if (value != null) {
+                if (html) {
+                    escapeHtml(value, out);
+                } else {
+                    out.append(value);
+                }
+            }
+        }
+        out.append(literals[variables.length]);
+    }
+
+    private static void escapeHtml(String value, StringBuilder out) {
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            String replacement = switch (value.charAt(i)) {
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '"' -> "&quot;";
+                case '\'' -> "&#39;";
+                default -> null;
+            };
+            if (replacement != null) {
+                out.append(value, start, i).append(replacement);
+                start = i + 1;
+            }
+        }
+        out.append(value, start, value.length());
+    }
+}
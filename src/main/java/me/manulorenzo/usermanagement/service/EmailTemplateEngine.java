@@ -0,0 +1,175 @@
+package me.manulorenzo.usermanagement.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Loads the email templates once at startup and renders them into per-thread reusable buffers.
+ * <p>
+ * Every email is a {@code <name>.txt} template, whose first line is {@code Subject: ...}, and an
+ * optional {@code <name>.html} alternative. Locale variants are named {@code <name>_<locale>}
+ * (e.g. {@code verification_es.txt}) and resolved from the most to the least specific locale,
+ * then the unsuffixed template. Requested locales are first narrowed to the ones that have a variant
+ * on disk, so the resolution cache is bounded by the template files, not by Accept-Language headers.
+ */
+@Component
+public class EmailTemplateEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailTemplateEngine.class);
+
+    private static final String SUBJECT_PREFIX = "Subject:";
+    // Buffers that grew past this are not kept for the next render
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    public record RenderedEmail(String subject, String text, String html) {
+    }
+
+    private record CompiledEmail(EmailTemplate subject, EmailTemplate text, EmailTemplate html) {
+    }
+
+    private final Map<String, CompiledEmail> templates = new HashMap<>();
+    // Locales that at least one template has a variant for
+    private final Set<Locale> templateLocales = new HashSet<>();
+    // Resolved per template locale and name, so a render does not build a lookup key
+    private final Map<Locale, Map<String, CompiledEmail>> resolved = new ConcurrentHashMap<>();
+    private final Locale defaultLocale;
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(1024));
+
+    public EmailTemplateEngine(
+            @Value("${app.email.templates.location:classpath:email-templates/}") String location,
+            @Value("${app.email.default-locale:en}") String defaultLocale) {
+        this.defaultLocale = Locale.forLanguageTag(defaultLocale.trim().replace('_', '-'));
+        String base = location.endsWith("/") ? location : location + "/";
+        try {
+            PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+            for (Resource resource : resolver.getResources(base + "*.txt")) {
+                String key = stripExtension(resource.getFilename());
+                Resource htmlResource = resource.createRelative(key + ".html");
+                templates.put(key, compile(read(resource), htmlResource.exists() ? read(htmlResource) : null, key));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load email templates from " + base, e);
+        }
+        for (String key : templates.keySet()) {
+            for (int i = key.indexOf('_'); i > 0; i = key.indexOf('_', i + 1)) {
+                if (templates.containsKey(key.substring(0, i))) {
+                    templateLocales.add(Locale.forLanguageTag(key.substring(i + 1).replace('_', '-')));
+                    break;
+                }
+            }
+        }
+
+        logger.info("EmailTemplateEngine initialized with {} templates in locales {} from: {}, default locale: {}",
+                templates.size(), templateLocales, base, this.defaultLocale);
+    }
+
+    /**
+     * Renders the named email in the closest available locale; a null locale means the default one.
+     */
+    public RenderedEmail render(String name, Locale locale, Map<String, String> values) {
+        CompiledEmail email = resolve(name, locale != null ? locale : defaultLocale);
+        return new RenderedEmail(
+                render(email.subject(), values),
+                render(email.text(), values),
+                email.html() != null ? render(email.html(), values) : null);
+    }
+
+    private String render(EmailTemplate template, Map<String, String> values) {
+        String constant = template.constant();
+        if (constant != null) {
+            return constant;
+        }
+        StringBuilder buffer = buffers.get();
+        buffer.setLength(0);
+        template.renderTo(buffer, values);
+        String rendered = buffer.toString();
+        if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+            buffers.remove();
+        }
+        return rendered;
+    }
+
+    private CompiledEmail resolve(String name, Locale requested) {
+        Locale locale = templateLocale(requested);
+        return resolved.computeIfAbsent(locale, key -> new ConcurrentHashMap<>()).computeIfAbsent(name, key -> {
+            for (String candidate : candidates(name, locale)) {
+                CompiledEmail email = templates.get(candidate);
+                if (email != null) {
+                    return email;
+                }
+            }
+            throw new IllegalArgumentException("Email template not found: " + name);
+        });
+    }
+
+    /**
+     * Narrows a requested locale to the closest one that has template variants, or the default locale.
+     */
+    private Locale templateLocale(Locale locale) {
+        if (templateLocales.contains(locale)) {
+            return locale;
+        }
+        Locale country = new Locale(locale.getLanguage(), locale.getCountry());
+        if (templateLocales.contains(country)) {
+            return country;
+        }
+        Locale language = new Locale(locale.getLanguage());
+        return templateLocales.contains(language) ? language : defaultLocale;
+    }
+
+    private String[] candidates(String name, Locale locale) {
+        String language = locale.getLanguage();
+        String country = locale.getCountry();
+        return new String[]{
+                name + "_" + language + "_" + country,
+                name + "_" + language,
+                name + "_" + defaultLocale.getLanguage(),
+                name
+        };
+    }
+
+    private static CompiledEmail compile(String text, String html, String key) {
+        int firstLineEnd = text.indexOf('\n');
+        String firstLine = firstLineEnd < 0 ? text : text.substring(0, firstLineEnd);
+        if (!firstLine.startsWith(SUBJECT_PREFIX)) {
+            throw new IllegalStateException("Email template " + key + ".txt must start with a Subject: line");
+        }
+        String body = firstLineEnd < 0 ? "" : text.substring(firstLineEnd + 1);
+        if (body.startsWith("\n")) {
+            body = body.substring(1);
+        }
+        return new CompiledEmail(
+                EmailTemplate.compile(firstLine.substring(SUBJECT_PREFIX.length()).trim(), false),
+                EmailTemplate.compile(stripTrailingNewline(body), false),
+                html != null ? EmailTemplate.compile(html, true) : null);
+    }
+
+    private static String read(Resource resource) throws IOException {
+        try (var in = resource.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+        }
+    }
+
+    private static String stripTrailingNewline(String value) {
+        return value.endsWith("\n") ? value.substring(0, value.length() - 1) : value;
+    }
+
+    private static String stripExtension(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot < 0 ? filename : filename.substring(0, dot);
+    }
+}
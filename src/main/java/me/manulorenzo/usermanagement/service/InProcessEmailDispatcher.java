@@ -0,0 +1,426 @@
+package me.manulorenzo.usermanagement.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends email tasks from a bounded queue in this JVM with a small worker pool, for single-node
+ * deployments without a RabbitMQ broker ({@code app.email.dispatcher=in-process}).
+ * <p>
+ * Tasks are queued once the surrounding transaction commits. Transient failures are retried with
+ * the same backoff settings as the RabbitMQ retry queues ({@code app.email.retry.*}); permanent
+ * failures and exhausted tasks are logged and dropped.
+ * <p>
+ * With {@code spool-dir} set, every queued task is also written to a file there and deleted once
+ * sent, so tasks still pending at shutdown or a crash are sent after the next start. Without it a
+ * full queue or a restart loses tasks. With it, a task that does not fit the queue stays spooled
+ * and is picked up by the next spool sweep.
+ * <p>
+ * Verification and password reset emails have their own queue, the critical lane, which workers
+ * take from first: only after {@code app.email.lanes.critical-weight} critical tasks in a row do
+ * they take one bulk task, so welcome emails are slowed down but never starved.
+ */
+@Component
+@ConditionalOnProperty(name = "app.email.dispatcher", havingValue = "in-process")
+public class InProcessEmailDispatcher implements EmailDispatcher, SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(InProcessEmailDispatcher.class);
+
+    static final String DEAD_DIRECTORY = "dead";
+    private static final String SPOOL_SUFFIX = ".json";
+
+    private record Entry(EmailTask task, Path spoolFile) {
+    }
+
+    private final BlockingQueue<Entry> criticalQueue;
+    private final BlockingQueue<Entry> bulkQueue;
+    // One permit per queued entry in either lane, so workers can wait on both at once
+    private final Semaphore queued = new Semaphore(0);
+    private final int criticalWeight;
+    private int criticalStreak;
+    private final int workers;
+    private final Path spoolDir;
+    private final long spoolSweepIntervalMs;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final double multiplier;
+    private final ObjectProvider<EmailService> emailService;
+    private final ObjectMapper objectMapper;
+    // Spool files queued or waiting for a retry, so a sweep does not queue them twice
+    private final Set<Path> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicLong spoolSequence = new AtomicLong();
+    private final Counter sentCounter;
+    private final Counter retriedCounter;
+    private final Counter overflowCounter;
+    private final MeterRegistry meterRegistry;
+
+    private volatile ExecutorService workerPool;
+    private volatile ScheduledExecutorService scheduler;
+
+    public InProcessEmailDispatcher(
+            @Value("${app.email.in-process.capacity:1000}") int capacity,
+            @Value("${app.email.in-process.workers:2}") int workers,
+            @Value("${app.email.in-process.spool-dir:}") String spoolDir,
+            @Value("${app.email.in-process.spool-sweep-interval-ms:30000}") long spoolSweepIntervalMs,
+            @Value("${app.email.retry.max-attempts:5}") int maxAttempts,
+            @Value("${app.email.retry.initial-backoff-ms:10000}") long initialBackoffMs,
+            @Value("${app.email.retry.multiplier:2.0}") double multiplier,
+            @Value("${app.email.lanes.critical-weight:4}") int criticalWeight,
+            ObjectProvider<EmailService> emailService,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry) {
+        this.criticalQueue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.bulkQueue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.criticalWeight = Math.max(1, criticalWeight);
+        this.workers = Math.max(1, workers);
+        this.spoolDir = spoolDir == null || spoolDir.isBlank() ? null : Path.of(spoolDir.trim());
+        this.spoolSweepIntervalMs = Math.max(1000, spoolSweepIntervalMs);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMs = Math.max(1, initialBackoffMs);
+        this.multiplier = Math.max(1.0, multiplier);
+        // EmailService sends the tasks and queues them through this dispatcher
+        this.emailService = emailService;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.sentCounter = Counter.builder("app.email.sent")
+                .description("Email tasks delivered to the SMTP server")
+                .register(meterRegistry);
+        this.retriedCounter = Counter.builder("app.email.retried")
+                .description("Email tasks scheduled for another delivery attempt")
+                .register(meterRegistry);
+        this.overflowCounter = Counter.builder("app.email.in-process.overflow")
+                .description("Email tasks that did not fit the in-process queue")
+                .register(meterRegistry);
+        Gauge.builder("app.email.in-process.depth", criticalQueue, BlockingQueue::size)
+                .description("Email tasks waiting for an in-process worker")
+                .tag("lane", "critical")
+                .register(meterRegistry);
+        Gauge.builder("app.email.in-process.depth", bulkQueue, BlockingQueue::size)
+                .description("Email tasks waiting for an in-process worker")
+                .tag("lane", "bulk")
+                .register(meterRegistry);
+
+        logger.info("InProcessEmailDispatcher initialized with capacity: {} per lane, workers: {}, critical weight: {}, spool: {}",
+                Math.max(1, capacity), this.workers, this.criticalWeight, this.spoolDir == null ? "disabled" : this.spoolDir);
+    }
+
+    @Override
+    public void dispatch(EmailTask task) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(task);
+                }
+            });
+        } else {
+            enqueue(task);
+        }
+    }
+
+    /**
+     * Spools and queues the task. Never blocks; returns false if the queue was full.
+     */
+    boolean enqueue(EmailTask task) {
+        Path spoolFile = null;
+        if (spoolDir != null) {
+            Path file = newSpoolFile();
+            // Pending before the file exists, so a concurrent sweep never queues it a second time
+            pending.add(file);
+            try {
+                spool(task, file);
+                spoolFile = file;
+            } catch (IOException e) {
+                pending.remove(file);
+                logger.error("Failed to spool {} email to: {}, queueing it in memory only", task.getType(), task.getEmail(), e);
+            }
+        }
+        return offer(new Entry(task, spoolFile));
+    }
+
+    /**
+     * Sends the next queued task, waiting up to the given time for one.
+     *
+     * @return false if no task arrived in time
+     */
+    boolean sendNext(long timeoutMs) throws InterruptedException {
+        if (!queued.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+            return false;
+        }
+        Entry entry = take();
+        EmailTask task = entry.task();
+        try {
+            if (emailService.getObject().send(task)) {
+                sentCounter.increment();
+            }
+            complete(entry);
+        } catch (Exception e) {
+            handleFailure(entry, e);
+        }
+        return true;
+    }
+
+    /**
+     * Queues spooled tasks that are not queued yet: those left by a previous run and those that did
+     * not fit the queue.
+     */
+    int sweepSpool() {
+        if (spoolDir == null) {
+            return 0;
+        }
+        int queued = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spoolDir, "*" + SPOOL_SUFFIX)) {
+            for (Path file : files) {
+                if (pending.contains(file)) {
+                    continue;
+                }
+                EmailTask task;
+                try (InputStream in = Files.newInputStream(file)) {
+                    task = objectMapper.readValue(in, EmailTask.class);
+                } catch (NoSuchFileException e) {
+                    // Sent and deleted since the directory was listed
+                    continue;
+                } catch (IOException e) {
+                    logger.error("Unreadable spooled email task {}, moving it aside", file, e);
+                    moveToDead(file);
+                    continue;
+                }
+                // A full lane does not stop the other one from being filled
+                if (offer(new Entry(task, file))) {
+                    queued++;
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Failed to read email spool directory {}", spoolDir, e);
+        }
+        if (queued > 0) {
+            logger.info("Queued {} spooled email tasks", queued);
+        }
+        return queued;
+    }
+
+    int depth() {
+        return criticalQueue.size() + bulkQueue.size();
+    }
+
+    // Called holding a permit, so one of the lanes has an entry for this worker
+    private synchronized Entry take() {
+        if (criticalStreak < criticalWeight || bulkQueue.isEmpty()) {
+            Entry entry = criticalQueue.poll();
+            if (entry != null) {
+                criticalStreak++;
+                return entry;
+            }
+        }
+        criticalStreak = 0;
+        Entry entry = bulkQueue.poll();
+        return entry != null ? entry : criticalQueue.poll();
+    }
+
+    private boolean offer(Entry entry) {
+        if (entry.spoolFile() != null) {
+            pending.add(entry.spoolFile());
+        }
+        BlockingQueue<Entry> lane = EmailRetryHandler.CRITICAL_QUEUE.equals(EmailRetryHandler.queueFor(entry.task()))
+                ? criticalQueue : bulkQueue;
+        if (lane.offer(entry)) {
+            queued.release();
+            return true;
+        }
+        if (entry.spoolFile() != null) {
+            // Still on disk, the next sweep queues it
+            pending.remove(entry.spoolFile());
+            overflowCounter.increment();
+            logger.warn("Email queue full, {} email to: {} stays spooled", entry.task().getType(), entry.task().getEmail());
+            return false;
+        }
+        overflowCounter.increment();
+        logger.error("Email queue full, dropping {} email to: {}", entry.task().getType(), entry.task().getEmail());
+        logToken(entry.task());
+        return false;
+    }
+
+    private void handleFailure(Entry entry, Exception failure) {
+        EmailTask task = entry.task();
+        int failedAttempts = task.getAttempt() + 1;
+        task.setAttempt(failedAttempts);
+        boolean transientFailure = EmailRetryHandler.isTransient(failure);
+        if (transientFailure && failedAttempts < maxAttempts) {
+            long backoffMs = (long) Math.min(Integer.MAX_VALUE, initialBackoffMs * Math.pow(multiplier, failedAttempts - 1));
+            if (entry.spoolFile() != null) {
+                try {
+                    // Keep the attempt count across restarts
+                    spool(task, entry.spoolFile());
+                } catch (IOException e) {
+                    logger.warn("Failed to update spooled email task {}", entry.spoolFile(), e);
+                }
+            }
+            retriedCounter.increment();
+            logger.warn("Failed to send {} email to: {} (attempt {} of {}), retrying in {}ms: {}",
+                    task.getType(), task.getEmail(), failedAttempts, maxAttempts, backoffMs, failure.toString());
+            ScheduledExecutorService retryScheduler = scheduler;
+            if (retryScheduler != null && !retryScheduler.isShutdown()) {
+                retryScheduler.schedule(() -> offer(entry), backoffMs, TimeUnit.MILLISECONDS);
+            } else if (entry.spoolFile() != null) {
+                pending.remove(entry.spoolFile());
+            }
+            return;
+        }
+
+        String reason = transientFailure ? "exhausted" : "permanent";
+        Counter.builder("app.email.dead-lettered")
+                .description("Email tasks moved to the dead-letter queue")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        logger.error("Gave up on {} email to: {} after {} attempts ({})", task.getType(), task.getEmail(),
+                failedAttempts, reason, failure);
+        logToken(task);
+        if (entry.spoolFile() != null) {
+            moveToDead(entry.spoolFile());
+            pending.remove(entry.spoolFile());
+        }
+    }
+
+    private void complete(Entry entry) {
+        if (entry.spoolFile() == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(entry.spoolFile());
+        } catch (IOException e) {
+            // Sent again after a restart; better than not at all
+            logger.warn("Failed to delete spooled email task {}", entry.spoolFile(), e);
+        }
+        pending.remove(entry.spoolFile());
+    }
+
+    // Ordered by name, so a sweep sends older tasks first
+    private Path newSpoolFile() {
+        return spoolDir.resolve(String.format("%019d-%06d%s", System.currentTimeMillis(),
+                spoolSequence.incrementAndGet() % 1_000_000, SPOOL_SUFFIX));
+    }
+
+    private void spool(EmailTask task, Path file) throws IOException {
+        Files.createDirectories(spoolDir);
+        Path temporary = Files.createTempFile(spoolDir, "email-", ".tmp");
+        try {
+            objectMapper.writeValue(temporary.toFile(), task);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void moveToDead(Path file) {
+        try {
+            Path dead = Files.createDirectories(spoolDir.resolve(DEAD_DIRECTORY));
+            Files.move(file, dead.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.error("Failed to move {} out of the email spool", file, e);
+        }
+    }
+
+    private static void logToken(EmailTask task) {
+        if (task.getToken() != null) {
+            // In development, log the token so you can test manually
+            logger.warn("Development - {} token for {}: {}", task.getType(), task.getEmail(), task.getToken());
+        }
+    }
+
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                sendNext(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                logger.error("Unexpected failure in email worker", e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (workerPool != null) {
+            return;
+        }
+        AtomicInteger threads = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "email-worker-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "email-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            workerPool.execute(this::work);
+        }
+        if (spoolDir != null) {
+            scheduler.scheduleWithFixedDelay(this::sweepSpool, 0, spoolSweepIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (workerPool == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        workerPool.shutdownNow();
+        try {
+            workerPool.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workerPool = null;
+        scheduler = null;
+        int unsent = depth();
+        criticalQueue.clear();
+        bulkQueue.clear();
+        queued.drainPermits();
+        pending.clear();
+        if (unsent > 0) {
+            logger.warn("Stopped with {} email tasks queued{}", unsent,
+                    spoolDir == null ? ", they are lost" : ", they stay spooled for the next start");
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return workerPool != null;
+    }
+}
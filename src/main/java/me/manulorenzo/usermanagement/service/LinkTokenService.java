@@ -0,0 +1,173 @@
+package me.manulorenzo.usermanagement.service;
+
+import me.manulorenzo.usermanagement.entity.OneTimeToken;
+import me.manulorenzo.usermanagement.entity.User;
+import me.manulorenzo.usermanagement.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Tokens for the links sent by email (verification, password reset).
+ * <p>
+ * {@link TokenMode#STORED} keeps a hashed row per token in {@link OneTimeTokenService}.
+ * {@link TokenMode#SIGNED} writes nothing when issuing: the token is an HMAC-signed user id,
+ * expiry and nonce, checked in memory. The nonce is the user's version, which every update of
+ * the user (including the one made when the token is used) increments, so a used link stops
+ * working. Signed tokens cannot be revoked individually and a newer link does not invalidate
+ * an older unused one before it expires.
+ */
+@Service
+public class LinkTokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LinkTokenService.class);
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    // user id, expiry (epoch seconds), nonce
+    private static final int PAYLOAD_BYTES = 3 * Long.BYTES;
+    // HMAC-SHA256 truncated to 128 bits keeps the link short and is still far beyond guessing
+    private static final int MAC_BYTES = 16;
+
+    public enum TokenMode {
+        STORED,
+        SIGNED
+    }
+
+    private final TokenMode mode;
+    private final SecretKeySpec signingKey;
+    private final OneTimeTokenService oneTimeTokenService;
+    private final UserRepository userRepository;
+    private final Clock clock;
+
+    @Autowired
+    public LinkTokenService(
+            @Value("${app.tokens.mode:stored}") String mode,
+            @Value("${app.tokens.signing-key:}") String signingKey,
+            OneTimeTokenService oneTimeTokenService,
+            UserRepository userRepository) {
+        this(TokenMode.valueOf(mode.trim().toUpperCase(Locale.ROOT)), signingKey, oneTimeTokenService, userRepository,
+                Clock.systemUTC());
+    }
+
+    LinkTokenService(TokenMode mode, String signingKey, OneTimeTokenService oneTimeTokenService,
+                     UserRepository userRepository, Clock clock) {
+        this.mode = mode;
+        this.signingKey = new SecretKeySpec(keyBytes(mode, signingKey), HMAC_ALGORITHM);
+        this.oneTimeTokenService = oneTimeTokenService;
+        this.userRepository = userRepository;
+        this.clock = clock;
+
+        logger.info("LinkTokenService initialized in {} mode", mode);
+    }
+
+    /**
+     * Returns a token for the user's link. The user must already be saved.
+     */
+    public String issue(User user, OneTimeToken.Purpose purpose, Duration ttl) {
+        if (mode == TokenMode.STORED) {
+            return oneTimeTokenService.issue(user, purpose, ttl);
+        }
+
+        long expiresAt = clock.instant().plus(ttl).getEpochSecond();
+        byte[] payload = ByteBuffer.allocate(PAYLOAD_BYTES)
+                .putLong(user.getId())
+                .putLong(expiresAt)
+                .putLong(nonceOf(user))
+                .array();
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payload) + "." + encoder.encodeToString(sign(purpose, payload));
+    }
+
+    /**
+     * Returns the user the token was issued to if it is valid for the purpose. In stored mode the
+     * token is consumed; in signed mode the caller consumes it by updating the user.
+     */
+    public Optional<User> consume(String token, OneTimeToken.Purpose purpose) {
+        if (mode == TokenMode.STORED) {
+            return oneTimeTokenService.consume(token, purpose).flatMap(userRepository::findById);
+        }
+        return verifySigned(token, purpose);
+    }
+
+    TokenMode getMode() {
+        return mode;
+    }
+
+    private Optional<User> verifySigned(String token, OneTimeToken.Purpose purpose) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        int dot = token.indexOf('.');
+        byte[] payload;
+        byte[] mac;
+        try {
+            payload = Base64.getUrlDecoder().decode(token.substring(0, Math.max(dot, 0)));
+            mac = Base64.getUrlDecoder().decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        if (dot < 0 || payload.length != PAYLOAD_BYTES || !MessageDigest.isEqual(mac, sign(purpose, payload))) {
+            return Optional.empty();
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        long userId = buffer.getLong();
+        long expiresAt = buffer.getLong();
+        long nonce = buffer.getLong();
+        if (clock.instant().getEpochSecond() >= expiresAt) {
+            return Optional.empty();
+        }
+        // The only read a signed token costs; a used or superseded link no longer matches the version
+        return userRepository.findById(userId).filter(user -> nonce == nonceOf(user));
+    }
+
+    private byte[] sign(OneTimeToken.Purpose purpose, byte[] payload) {
+        try {
+            Mac hmac = Mac.getInstance(HMAC_ALGORITHM);
+            hmac.init(signingKey);
+            // The purpose is signed but not sent, so a reset token is never accepted as a verification token
+            hmac.update(purpose.name().getBytes(StandardCharsets.UTF_8));
+            hmac.update((byte) 0);
+            return Arrays.copyOf(hmac.doFinal(payload), MAC_BYTES);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 not available", e);
+        }
+    }
+
+    private static long nonceOf(User user) {
+        return Objects.requireNonNullElse(user.getVersion(), 0L);
+    }
+
+    private static byte[] keyBytes(TokenMode mode, String signingKey) {
+        if (signingKey != null && !signingKey.isBlank()) {
+            byte[] key = signingKey.getBytes(StandardCharsets.UTF_8);
+            if (key.length < 32) {
+                throw new IllegalStateException("app.tokens.signing-key must be at least 32 bytes");
+            }
+            return key;
+        }
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        if (mode == TokenMode.SIGNED) {
+            logger.warn("Using generated link signing key; links break on restart and across nodes. Configure app.tokens.signing-key for production!");
+        }
+        return key;
+    }
+}
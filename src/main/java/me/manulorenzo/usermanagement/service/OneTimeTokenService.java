@@ -0,0 +1,86 @@
+package me.manulorenzo.usermanagement.service;
+
+import me.manulorenzo.usermanagement.entity.OneTimeToken;
+import me.manulorenzo.usermanagement.entity.User;
+import me.manulorenzo.usermanagement.repository.OneTimeTokenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Issues and consumes the single-use tokens of the email flows. Tokens are random 256-bit values;
+ * the database only keeps their SHA-256, so a leaked table does not expose usable links.
+ */
+@Service
+public class OneTimeTokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OneTimeTokenService.class);
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final OneTimeTokenRepository oneTimeTokenRepository;
+
+    public OneTimeTokenService(OneTimeTokenRepository oneTimeTokenRepository) {
+        this.oneTimeTokenRepository = oneTimeTokenRepository;
+    }
+
+    /**
+     * Creates a token for the user and returns its raw value; earlier tokens of the same purpose stop working.
+     */
+    @Transactional
+    public String issue(User user, OneTimeToken.Purpose purpose, Duration ttl) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        Instant now = Instant.now();
+        oneTimeTokenRepository.deleteByUserIdAndPurpose(user.getId(), purpose);
+        oneTimeTokenRepository.save(new OneTimeToken(hash(token), purpose, user, now, now.plus(ttl)));
+
+        logger.debug("Issued {} token for user: {}", purpose, user.getUsername());
+        return token;
+    }
+
+    /**
+     * Deletes the token if it exists, has the given purpose and is unexpired, and returns its user id.
+     */
+    @Transactional
+    public Optional<Long> consume(String token, OneTimeToken.Purpose purpose) {
+        if (token == null || token.isBlank()) {
+            return Optional.empty();
+        }
+        return oneTimeTokenRepository.consume(hash(token), purpose.name(), Instant.now());
+    }
+
+    @Scheduled(fixedDelayString = "${app.tokens.purge-interval-ms:3600000}",
+            initialDelayString = "${app.tokens.purge-interval-ms:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        int purged = oneTimeTokenRepository.deleteExpired(Instant.now());
+        if (purged > 0) {
+            logger.info("Purged {} expired one-time tokens", purged);
+        }
+    }
+
+    static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package me.manulorenzo.usermanagement.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes email tasks to the outbox, from where they are published to the queue of their lane.
+ */
+@Component
+@ConditionalOnProperty(name = "app.email.dispatcher", havingValue = "rabbit", matchIfMissing = true)
+public class OutboxEmailDispatcher implements EmailDispatcher {
+
+    private final OutboxService outboxService;
+
+    public OutboxEmailDispatcher(OutboxService outboxService) {
+        this.outboxService = outboxService;
+    }
+
+    @Override
+    public void dispatch(EmailTask task) {
+        outboxService.enqueue("", EmailRetryHandler.queueFor(task), task);
+    }
+}
@@ -0,0 +1,198 @@
+package me.manulorenzo.usermanagement.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import me.manulorenzo.usermanagement.entity.OutboxMessage;
+import me.manulorenzo.usermanagement.repository.OutboxMessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes outbox messages as soon as their transaction committed, without waiting for the next
+ * {@link OutboxRelay} poll and without blocking the request thread.
+ * <p>
+ * {@link OutboxService} offers each committed message to a bounded buffer; a single publisher
+ * thread drains it in batches, publishes them with publisher confirms over the template's cached
+ * channel and deletes the confirmed rows. The row is the source of truth: a message that overflows
+ * the buffer, is not confirmed or is still buffered on shutdown is published later by the relay.
+ */
+@Component
+@ConditionalOnProperty(name = "app.email.dispatcher", havingValue = "rabbit", matchIfMissing = true)
+@ConditionalOnProperty(name = "app.outbox.publisher.enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxPublisher implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxPublisher.class);
+
+    private static final long POLL_TIMEOUT_MS = 500;
+
+    public enum OverflowPolicy {
+        // Reject the new message, it is published by the relay once it is older than its min age
+        DEFER,
+        // Evict the oldest buffered message in favour of the new one; the evicted one goes through the relay
+        DROP_OLDEST
+    }
+
+    private final BlockingQueue<OutboxMessage> buffer;
+    private final int batchSize;
+    private final OverflowPolicy overflowPolicy;
+    private final OutboxRelay outboxRelay;
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final TransactionOperations transactionOperations;
+    private final Counter publishedCounter;
+    private final Counter unconfirmedCounter;
+    private final Counter overflowCounter;
+
+    private volatile Thread publisherThread;
+
+    @Autowired
+    public OutboxPublisher(
+            @Value("${app.outbox.publisher.capacity:1024}") int capacity,
+            @Value("${app.outbox.publisher.batch-size:100}") int batchSize,
+            @Value("${app.outbox.publisher.overflow:defer}") String overflowPolicy,
+            OutboxRelay outboxRelay,
+            OutboxMessageRepository outboxMessageRepository,
+            TransactionOperations transactionOperations,
+            MeterRegistry meterRegistry) {
+        this(capacity, batchSize, OverflowPolicy.valueOf(overflowPolicy.trim().toUpperCase(Locale.ROOT).replace('-', '_')),
+                outboxRelay, outboxMessageRepository, transactionOperations, meterRegistry);
+    }
+
+    OutboxPublisher(int capacity, int batchSize, OverflowPolicy overflowPolicy, OutboxRelay outboxRelay,
+                    OutboxMessageRepository outboxMessageRepository, TransactionOperations transactionOperations,
+                    MeterRegistry meterRegistry) {
+        this.buffer = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.overflowPolicy = overflowPolicy;
+        this.outboxRelay = outboxRelay;
+        this.outboxMessageRepository = outboxMessageRepository;
+        this.transactionOperations = transactionOperations;
+        // Same meters as the relay, so the totals cover both paths
+        this.publishedCounter = Counter.builder("app.outbox.published")
+                .description("Outbox messages confirmed by the broker and removed from the outbox")
+                .register(meterRegistry);
+        this.unconfirmedCounter = Counter.builder("app.outbox.unconfirmed")
+                .description("Outbox message publishes that were not confirmed and will be retried")
+                .register(meterRegistry);
+        this.overflowCounter = Counter.builder("app.outbox.publisher.overflow")
+                .description("Committed outbox messages left to the relay because the publisher buffer was full")
+                .register(meterRegistry);
+        Gauge.builder("app.outbox.publisher.depth", buffer, BlockingQueue::size)
+                .description("Committed outbox messages waiting for the publisher thread")
+                .register(meterRegistry);
+
+        logger.info("OutboxPublisher initialized with capacity: {}, batch size: {}, overflow: {}",
+                Math.max(1, capacity), this.batchSize, overflowPolicy);
+    }
+
+    /**
+     * Hands a committed message to the publisher thread. Never blocks.
+     *
+     * @return false when the message was not buffered and is left to the relay
+     */
+    public boolean offer(OutboxMessage message) {
+        if (buffer.offer(message)) {
+            return true;
+        }
+        if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+            do {
+                if (buffer.poll() != null) {
+                    overflowCounter.increment();
+                }
+            } while (!buffer.offer(message));
+            return true;
+        }
+        overflowCounter.increment();
+        return false;
+    }
+
+    /**
+     * Publishes one batch from the buffer, waiting up to the given time for the first message.
+     *
+     * @return the number of messages confirmed and deleted
+     */
+    int publishNextBatch(long timeoutMs) throws InterruptedException {
+        OutboxMessage first = buffer.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return 0;
+        }
+        List<OutboxMessage> batch = new ArrayList<>(batchSize);
+        batch.add(first);
+        buffer.drainTo(batch, batchSize - 1);
+
+        List<Long> confirmed = outboxRelay.publish(batch);
+        unconfirmedCounter.increment(batch.size() - confirmed.size());
+        if (confirmed.isEmpty()) {
+            return 0;
+        }
+        // A row the relay published concurrently may already be gone; deleting it again is a no-op
+        transactionOperations.executeWithoutResult(status -> outboxMessageRepository.deleteByIdIn(confirmed));
+        publishedCounter.increment(confirmed.size());
+        return confirmed.size();
+    }
+
+    int depth() {
+        return buffer.size();
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                publishNextBatch(POLL_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                // The rows are still in the outbox, the relay picks them up
+                logger.warn("Failed to publish a batch of outbox messages, leaving them to the relay", e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (publisherThread != null) {
+            return;
+        }
+        Thread thread = new Thread(this::run, "outbox-publisher");
+        thread.setDaemon(true);
+        thread.start();
+        publisherThread = thread;
+    }
+
+    @Override
+    public synchronized void stop() {
+        Thread thread = publisherThread;
+        if (thread == null) {
+            return;
+        }
+        publisherThread = null;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!buffer.isEmpty()) {
+            logger.info("Leaving {} buffered outbox messages to the relay", buffer.size());
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return publisherThread != null;
+    }
+}
@@ -0,0 +1,189 @@
+package me.manulorenzo.usermanagement.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import me.manulorenzo.usermanagement.entity.OutboxMessage;
+import me.manulorenzo.usermanagement.repository.OutboxMessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publishes outbox rows to RabbitMQ in batches and deletes each row once the broker confirmed it.
+ * <p>
+ * A batch is locked with {@code FOR UPDATE SKIP LOCKED}, published with publisher confirms and
+ * the confirmed rows deleted, all in one transaction. Rows that were not confirmed (nack, returned
+ * as unroutable, timeout, broker down) stay and are published again by a later run, so every
+ * message is delivered at least once.
+ * <p>
+ * Freshly committed rows are normally published right away by {@link OutboxPublisher}; the relay
+ * only takes rows older than {@code min-age-ms}, i.e. those the publisher dropped or failed on.
+ */
+@Service
+@ConditionalOnProperty(name = "app.email.dispatcher", havingValue = "rabbit", matchIfMissing = true)
+public class OutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final long confirmTimeoutMs;
+    private final long minAgeMs;
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final RabbitTemplate rabbitTemplate;
+    private final TransactionOperations transactionOperations;
+    private final Counter publishedCounter;
+    private final Counter unconfirmedCounter;
+
+    public OutboxRelay(
+            @Value("${app.outbox.relay.enabled:true}") boolean enabled,
+            @Value("${app.outbox.relay.batch-size:100}") int batchSize,
+            @Value("${app.outbox.relay.confirm-timeout-ms:5000}") long confirmTimeoutMs,
+            @Value("${app.outbox.relay.min-age-ms:1000}") long minAgeMs,
+            OutboxMessageRepository outboxMessageRepository,
+            RabbitTemplate rabbitTemplate,
+            TransactionOperations transactionOperations,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.confirmTimeoutMs = Math.max(1, confirmTimeoutMs);
+        this.minAgeMs = Math.max(0, minAgeMs);
+        this.outboxMessageRepository = outboxMessageRepository;
+        this.rabbitTemplate = rabbitTemplate;
+        this.transactionOperations = transactionOperations;
+        this.publishedCounter = Counter.builder("app.outbox.published")
+                .description("Outbox messages confirmed by the broker and removed from the outbox")
+                .register(meterRegistry);
+        this.unconfirmedCounter = Counter.builder("app.outbox.unconfirmed")
+                .description("Outbox message publishes that were not confirmed and will be retried")
+                .register(meterRegistry);
+
+        logger.info("OutboxRelay initialized with enabled: {}, batch size: {}, confirm timeout: {}ms, min age: {}ms",
+                enabled, this.batchSize, this.confirmTimeoutMs, this.minAgeMs);
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.relay.poll-interval-ms:1000}")
+    public void scheduledRelay() {
+        if (enabled) {
+            relay();
+        }
+    }
+
+    /**
+     * Publishes pending outbox messages until the outbox is empty or a batch was not fully
+     * confirmed, and returns how many were published.
+     */
+    public int relay() {
+        int published = 0;
+        while (true) {
+            int[] result = transactionOperations.execute(status -> relayBatch());
+            if (result == null) {
+                break;
+            }
+            published += result[1];
+            if (result[0] < batchSize || result[1] < result[0]) {
+                break;
+            }
+        }
+        if (published > 0) {
+            logger.debug("Relayed {} outbox messages", published);
+        }
+        return published;
+    }
+
+    // Returns {locked, confirmed}
+    private int[] relayBatch() {
+        List<OutboxMessage> batch = outboxMessageRepository.lockNextBatch(batchSize, Instant.now().minusMillis(minAgeMs));
+        if (batch.isEmpty()) {
+            return new int[]{0, 0};
+        }
+        List<Long> confirmed = publish(batch);
+        if (!confirmed.isEmpty()) {
+            outboxMessageRepository.deleteByIdIn(confirmed);
+        }
+        publishedCounter.increment(confirmed.size());
+        unconfirmedCounter.increment(batch.size() - confirmed.size());
+        return new int[]{batch.size(), confirmed.size()};
+    }
+
+    /**
+     * Publishes the messages and waits for their confirms, returning the ids the broker confirmed.
+     */
+    List<Long> publish(List<OutboxMessage> batch) {
+        List<CorrelationData> pending = new ArrayList<>(batch.size());
+        for (OutboxMessage outboxMessage : batch) {
+            CorrelationData correlationData = new CorrelationData(String.valueOf(outboxMessage.getId()));
+            try {
+                rabbitTemplate.send(outboxMessage.getExchange(), outboxMessage.getRoutingKey(), toMessage(outboxMessage), correlationData);
+            } catch (AmqpException e) {
+                logger.warn("Failed to publish outbox message {}, will retry: {}", outboxMessage.getId(), e.toString());
+                break;
+            }
+            pending.add(correlationData);
+        }
+
+        List<Long> confirmed = new ArrayList<>(pending.size());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(confirmTimeoutMs);
+        for (CorrelationData correlationData : pending) {
+            if (isConfirmed(correlationData, deadline)) {
+                confirmed.add(Long.valueOf(correlationData.getId()));
+            }
+        }
+        return confirmed;
+    }
+
+    private boolean isConfirmed(CorrelationData correlationData, long deadline) {
+        try {
+            CorrelationData.Confirm confirm = correlationData.getFuture()
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            if (!confirm.isAck()) {
+                logger.warn("Broker nacked outbox message {}: {}", correlationData.getId(), confirm.getReason());
+                return false;
+            }
+            if (correlationData.getReturned() != null) {
+                logger.warn("Outbox message {} was unroutable: {}", correlationData.getId(),
+                        correlationData.getReturned().getReplyText());
+                return false;
+            }
+            return true;
+        } catch (TimeoutException e) {
+            logger.warn("No publisher confirm for outbox message {} within {}ms", correlationData.getId(), confirmTimeoutMs);
+            return false;
+        } catch (ExecutionException e) {
+            logger.warn("Publisher confirm for outbox message {} failed", correlationData.getId(), e.getCause());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static Message toMessage(OutboxMessage outboxMessage) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        properties.setContentEncoding(StandardCharsets.UTF_8.name());
+        if (outboxMessage.getMessageType() != null) {
+            properties.setHeader(OutboxService.TYPE_ID_HEADER, outboxMessage.getMessageType());
+        }
+        // Lets consumers deduplicate redeliveries of the same outbox row
+        properties.setMessageId("outbox-" + outboxMessage.getId());
+        return new Message(outboxMessage.getPayload().getBytes(StandardCharsets.UTF_8), properties);
+    }
+}
@@ -0,0 +1,59 @@
+package me.manulorenzo.usermanagement.service;
+
+import me.manulorenzo.usermanagement.entity.OutboxMessage;
+import me.manulorenzo.usermanagement.repository.OutboxMessageRepository;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Writes messages to the outbox instead of publishing them, so they are sent if and only if the
+ * surrounding transaction commits. Once it has, {@link OutboxPublisher} publishes them right away
+ * and {@link OutboxRelay} catches up with any it could not.
+ */
+@Service
+@ConditionalOnProperty(name = "app.email.dispatcher", havingValue = "rabbit", matchIfMissing = true)
+public class OutboxService {
+
+    static final String TYPE_ID_HEADER = "__TypeId__";
+
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final MessageConverter messageConverter;
+    private final ObjectProvider<OutboxPublisher> outboxPublisher;
+
+    public OutboxService(OutboxMessageRepository outboxMessageRepository, MessageConverter messageConverter,
+                         ObjectProvider<OutboxPublisher> outboxPublisher) {
+        this.outboxMessageRepository = outboxMessageRepository;
+        this.messageConverter = messageConverter;
+        this.outboxPublisher = outboxPublisher;
+    }
+
+    // Without a transaction the row would be committed on its own, which defeats the outbox
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(String exchange, String routingKey, Object payload) {
+        Message message = messageConverter.toMessage(payload, new MessageProperties());
+        String messageType = message.getMessageProperties().getHeader(TYPE_ID_HEADER);
+        OutboxMessage outboxMessage = outboxMessageRepository.save(new OutboxMessage(exchange, routingKey, messageType,
+                new String(message.getBody(), StandardCharsets.UTF_8), Instant.now()));
+
+        OutboxPublisher publisher = outboxPublisher.getIfAvailable();
+        if (publisher != null) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publisher.offer(outboxMessage);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package me.manulorenzo.usermanagement.service;
+
+import jakarta.mail.Address;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JavaMailSenderImpl} that keeps up to {@code poolSize} connected, authenticated SMTP
+ * transports open and lends them to sending threads, instead of connecting for every send.
+ * <p>
+ * A transport that sat idle longer than the keepalive interval is checked with a NOOP before it
+ * is used; {@link #keepAlive()} does the same for idle transports in the background, so the
+ * server does not drop them. A transport is closed after {@code maxMessagesPerConnection}
+ * messages, and a send that fails on a dropped connection is retried once on a new one.
+ * A pool size of 0 falls back to one connection per send.
+ */
+public class PooledJavaMailSender extends JavaMailSenderImpl implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(PooledJavaMailSender.class);
+
+    private static final String HEADER_MESSAGE_ID = "Message-ID";
+
+    private static final class PooledTransport {
+        final Transport transport;
+        int messagesSent;
+        long lastUsedNanos = System.nanoTime();
+
+        PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+    }
+
+    private final int poolSize;
+    private final int maxMessagesPerConnection;
+    private final long keepAliveNanos;
+    private final long borrowTimeoutMs;
+    // One permit per transport that may be in use; idle transports hold none
+    private final Semaphore permits;
+    private final BlockingQueue<PooledTransport> idle = new LinkedBlockingQueue<>();
+
+    public PooledJavaMailSender(int poolSize, int maxMessagesPerConnection, long keepAliveIntervalMs, long borrowTimeoutMs) {
+        this.poolSize = Math.max(0, poolSize);
+        this.maxMessagesPerConnection = Math.max(1, maxMessagesPerConnection);
+        this.keepAliveNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, keepAliveIntervalMs));
+        this.borrowTimeoutMs = Math.max(0, borrowTimeoutMs);
+        this.permits = new Semaphore(this.poolSize, true);
+
+        logger.info("PooledJavaMailSender initialized with pool size: {}, max messages per connection: {}, keepalive: {}ms",
+                this.poolSize, this.maxMessagesPerConnection, keepAliveIntervalMs);
+    }
+
+    @Override
+    protected void doSend(MimeMessage[] mimeMessages, Object[] originalMessages) {
+        if (poolSize == 0) {
+            super.doSend(mimeMessages, originalMessages);
+            return;
+        }
+
+        Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+        PooledTransport pooled = borrow(mimeMessages, originalMessages, 0, failedMessages);
+        try {
+            for (int i = 0; i < mimeMessages.length; i++) {
+                MimeMessage mimeMessage = mimeMessages[i];
+                Object original = originalMessages != null ? originalMessages[i] : mimeMessage;
+                Address[] addresses;
+                try {
+                    addresses = prepare(mimeMessage);
+                } catch (Exception e) {
+                    failedMessages.put(original, e);
+                    continue;
+                }
+                try {
+                    pooled.transport.sendMessage(mimeMessage, addresses);
+                    pooled.messagesSent++;
+                } catch (Exception e) {
+                    if (pooled.transport.isConnected()) {
+                        // The server rejected this message, the connection is still usable
+                        failedMessages.put(original, e);
+                        continue;
+                    }
+                    logger.debug("SMTP connection dropped, reconnecting", e);
+                    close(pooled);
+                    pooled = null;
+                    pooled = connect(mimeMessages, originalMessages, i, failedMessages);
+                    try {
+                        pooled.transport.sendMessage(mimeMessage, addresses);
+                        pooled.messagesSent++;
+                    } catch (Exception retryFailure) {
+                        failedMessages.put(original, retryFailure);
+                    }
+                }
+            }
+        } finally {
+            if (pooled != null) {
+                release(pooled);
+            } else {
+                permits.release();
+            }
+        }
+
+        if (!failedMessages.isEmpty()) {
+            throw new MailSendException(failedMessages);
+        }
+    }
+
+    /**
+     * Sends a NOOP over every transport that has been idle for the keepalive interval and
+     * closes those that no longer answer.
+     */
+    @Scheduled(fixedDelayString = "${app.email.smtp-pool.keepalive-interval-ms:30000}")
+    public void keepAlive() {
+        for (int i = idle.size(); i > 0; i--) {
+            // Without a permit every transport is busy, and a polled one could be replaced meanwhile
+            if (!permits.tryAcquire()) {
+                return;
+            }
+            PooledTransport pooled = idle.poll();
+            if (pooled == null) {
+                permits.release();
+                return;
+            }
+            if (System.nanoTime() - pooled.lastUsedNanos < keepAliveNanos || isAlive(pooled)) {
+                idle.offer(pooled);
+            } else {
+                logger.debug("Closing idle SMTP connection that no longer answers");
+                close(pooled);
+            }
+            permits.release();
+        }
+    }
+
+    int idleConnections() {
+        return idle.size();
+    }
+
+    @Override
+    public void destroy() {
+        PooledTransport pooled;
+        while ((pooled = idle.poll()) != null) {
+            close(pooled);
+        }
+    }
+
+    private PooledTransport borrow(MimeMessage[] mimeMessages, Object[] originalMessages, int from,
+                                   Map<Object, Exception> failedMessages) {
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw failAll(new MessagingException("No SMTP connection available within " + borrowTimeoutMs + "ms"),
+                        mimeMessages, originalMessages, from, failedMessages);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw failAll(e, mimeMessages, originalMessages, from, failedMessages);
+        }
+
+        PooledTransport pooled;
+        while ((pooled = idle.poll()) != null) {
+            if (System.nanoTime() - pooled.lastUsedNanos < keepAliveNanos || isAlive(pooled)) {
+                return pooled;
+            }
+            close(pooled);
+        }
+        try {
+            return connect(mimeMessages, originalMessages, from, failedMessages);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledTransport connect(MimeMessage[] mimeMessages, Object[] originalMessages, int from,
+                                    Map<Object, Exception> failedMessages) {
+        try {
+            return new PooledTransport(connectTransport());
+        } catch (AuthenticationFailedException e) {
+            throw new MailAuthenticationException(e);
+        } catch (Exception e) {
+            throw failAll(e, mimeMessages, originalMessages, from, failedMessages);
+        }
+    }
+
+    private void release(PooledTransport pooled) {
+        if (pooled.messagesSent >= maxMessagesPerConnection) {
+            close(pooled);
+        } else {
+            pooled.lastUsedNanos = System.nanoTime();
+            idle.offer(pooled);
+        }
+        permits.release();
+    }
+
+    private static MailSendException failAll(Exception cause, MimeMessage[] mimeMessages, Object[] originalMessages,
+                                             int from, Map<Object, Exception> failedMessages) {
+        // Every message from here on fails, as JavaMailSenderImpl does when it cannot connect
+        for (int i = from; i < mimeMessages.length; i++) {
+            failedMessages.put(originalMessages != null ? originalMessages[i] : mimeMessages[i], cause);
+        }
+        return new MailSendException("Mail server connection failed", cause, failedMessages);
+    }
+
+    private static Address[] prepare(MimeMessage mimeMessage) throws MessagingException {
+        if (mimeMessage.getSentDate() == null) {
+            mimeMessage.setSentDate(new Date());
+        }
+        String messageId = mimeMessage.getMessageID();
+        mimeMessage.saveChanges();
+        if (messageId != null) {
+            // Preserve explicitly specified message id, saveChanges would replace it
+            mimeMessage.setHeader(HEADER_MESSAGE_ID, messageId);
+        }
+        Address[] addresses = mimeMessage.getAllRecipients();
+        return addresses != null ? addresses : new Address[0];
+    }
+
+    private static boolean isAlive(PooledTransport pooled) {
+        // SMTPTransport.isConnected() issues a NOOP and reports whether the server answered
+        boolean alive = pooled.transport.isConnected();
+        if (alive) {
+            pooled.lastUsedNanos = System.nanoTime();
+        }
+        return alive;
+    }
+
+    private static void close(PooledTransport pooled) {
+        try {
+            pooled.transport.close();
+        } catch (MessagingException e) {
+            logger.debug("Failed to close SMTP connection", e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package me.manulorenzo.usermanagement.service;
 
+import me.manulorenzo.usermanagement.dto.SessionInfo;
 import me.manulorenzo.usermanagement.entity.RefreshToken;
 import me.manulorenzo.usermanagement.entity.User;
 import me.manulorenzo.usermanagement.repository.RefreshTokenRepository;
@@ -7,10 +8,12 @@ import me.manulorenzo.usermanagement.repository.UserRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -20,41 +23,66 @@ public class RefreshTokenService {
     private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
 
     private final long refreshTokenExpirationMs;
+    private final int maxSessionsPerUser;
     private final RefreshTokenRepository refreshTokenRepository;
     private final UserRepository userRepository;
+    private final UserLockService userLockService;
 
     public RefreshTokenService(
             @Value("${jwt.refresh-token.expiration-ms}") long refreshTokenExpirationMs,
+            @Value("${app.sessions.max-per-user:5}") int maxSessionsPerUser,
             RefreshTokenRepository refreshTokenRepository,
-            UserRepository userRepository) {
+            UserRepository userRepository,
+            UserLockService userLockService) {
         this.refreshTokenExpirationMs = refreshTokenExpirationMs;
+        this.maxSessionsPerUser = Math.max(1, maxSessionsPerUser);
         this.refreshTokenRepository = refreshTokenRepository;
         this.userRepository = userRepository;
+        this.userLockService = userLockService;
 
-        logger.info("RefreshTokenService initialized with expiration: {}ms", refreshTokenExpirationMs);
+        logger.info("RefreshTokenService initialized with expiration: {}ms, max sessions per user: {}",
+                refreshTokenExpirationMs, this.maxSessionsPerUser);
     }
 
     public RefreshToken createRefreshToken(String username) {
-        logger.debug("Creating refresh token for user: {}", username);
+        return createRefreshToken(username, RefreshToken.DEFAULT_DEVICE);
+    }
+
+    public RefreshToken createRefreshToken(String username, String deviceId) {
+        String device = normalizeDeviceId(deviceId);
+        logger.debug("Creating refresh token for user: {} on device: {}", username, device);
 
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("User not found: " + username));
 
-        // Delete existing refresh token for this user
-        refreshTokenRepository.findByUser(user).ifPresent(existingToken -> {
-            logger.debug("Deleting existing refresh token for user: {}", username);
-            refreshTokenRepository.delete(existingToken);
-        });
+        // Concurrent logins of the same user would otherwise race on the (user, device) row
+        RefreshToken refreshToken = userLockService.withUserLock(user.getId(), () -> saveSession(user, device));
 
-        RefreshToken refreshToken = new RefreshToken();
-        refreshToken.setUser(user);
-        refreshToken.setToken(UUID.randomUUID().toString());
-        refreshToken.setExpiryDate(Instant.now().plusMillis(refreshTokenExpirationMs));
+        logger.info("Refresh token created successfully for user: {} on device: {}", username, device);
+        return refreshToken;
+    }
 
-        refreshToken = refreshTokenRepository.save(refreshToken);
+    private RefreshToken saveSession(User user, String device) {
+        Instant now = Instant.now();
+        RefreshToken refreshToken = refreshTokenRepository.findByUserAndDeviceId(user, device)
+                .orElse(null);
+
+        if (refreshToken == null) {
+            evictLeastRecentlyUsedSessions(user);
+            refreshToken = new RefreshToken();
+            refreshToken.setUser(user);
+            refreshToken.setDeviceId(device);
+            refreshToken.setCreatedAt(now);
+        } else {
+            // Re-login from a known device: rotate the token in place instead of delete + insert
+            logger.debug("Rotating existing refresh token for user: {} on device: {}", user.getUsername(), device);
+        }
 
-        logger.info("Refresh token created successfully for user: {}", username);
-        return refreshToken;
+        refreshToken.setToken(UUID.randomUUID().toString());
+        refreshToken.setExpiryDate(now.plusMillis(refreshTokenExpirationMs));
+        refreshToken.setLastUsedAt(now);
+
+        return refreshTokenRepository.save(refreshToken);
     }
 
     public Optional<RefreshToken> findByToken(String token) {
@@ -64,21 +92,70 @@ public class RefreshTokenService {
     public RefreshToken verifyExpiration(RefreshToken token) {
         if (token.getExpiryDate().compareTo(Instant.now()) < 0) {
             logger.warn("Refresh token expired for user: {}", token.getUser().getUsername());
-            refreshTokenRepository.delete(token);
+            userLockService.withUserLock(token.getUser().getId(),
+                    () -> refreshTokenRepository.deleteByToken(token.getToken()));
             throw new RuntimeException("Refresh token was expired. Please make a new signin request");
         }
         return token;
     }
 
+    @Transactional
+    public void markUsed(RefreshToken token) {
+        Instant now = Instant.now();
+        refreshTokenRepository.updateLastUsedAt(token.getId(), now);
+        token.setLastUsedAt(now);
+    }
+
+    @Transactional(readOnly = true)
+    public List<SessionInfo> findSessions(String username) {
+        return refreshTokenRepository.findSessionsByUsername(username, Limit.of(maxSessionsPerUser));
+    }
+
+    public boolean revokeSession(String username, String deviceId) {
+        String device = normalizeDeviceId(deviceId);
+        logger.debug("Revoking session of user: {} on device: {}", username, device);
+        return userRepository.findIdByUsername(username)
+                .map(userId -> userLockService.withUserLock(userId,
+                        () -> refreshTokenRepository.deleteByUsernameAndDeviceId(username, device) > 0))
+                .orElse(false);
+    }
+
+    public int revokeAllSessions(String username) {
+        logger.debug("Revoking all sessions of user: {}", username);
+        return userRepository.findIdByUsername(username)
+                .map(userId -> userLockService.withUserLock(userId,
+                        () -> refreshTokenRepository.deleteAllByUsername(username)))
+                .orElse(0);
+    }
+
     @Transactional
     public void deleteByUser(User user) {
-        logger.debug("Deleting refresh token for user: {}", user.getUsername());
+        logger.debug("Deleting refresh tokens for user: {}", user.getUsername());
         refreshTokenRepository.deleteByUser(user);
     }
 
-    @Transactional
     public void deleteByToken(String token) {
         logger.debug("Deleting refresh token: {}", token);
-        refreshTokenRepository.findByToken(token).ifPresent(refreshTokenRepository::delete);
+        refreshTokenRepository.findUserIdByToken(token).ifPresent(userId ->
+                userLockService.withUserLock(userId, () -> refreshTokenRepository.deleteByToken(token)));
+    }
+
+    private void evictLeastRecentlyUsedSessions(User user) {
+        long sessions = refreshTokenRepository.countByUser(user);
+        if (sessions < maxSessionsPerUser) {
+            return;
+        }
+
+        int excess = (int) (sessions - maxSessionsPerUser + 1);
+        List<RefreshToken> evicted = refreshTokenRepository.findByUserOrderByLastUsedAtAsc(user, Limit.of(excess));
+        logger.info("User {} reached {} sessions, evicting {} least recently used", user.getUsername(), sessions, evicted.size());
+        refreshTokenRepository.deleteAll(evicted);
+    }
+
+    private String normalizeDeviceId(String deviceId) {
+        if (deviceId == null || deviceId.isBlank()) {
+            return RefreshToken.DEFAULT_DEVICE;
+        }
+        return deviceId.trim();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,99 @@
+package me.manulorenzo.usermanagement.service;
+
+import me.manulorenzo.usermanagement.entity.Role;
+import me.manulorenzo.usermanagement.repository.RoleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Immutable in-memory snapshot of the role table, so roles are never queried on the request path.
+ * <p>
+ * Each role name maps to its id and to one shared {@link GrantedAuthority}. {@link #refresh()} swaps in
+ * a new snapshot; it runs after role seeding and on a lookup miss, which picks up roles created by
+ * another node or directly in the database. Misses reload at most once per
+ * {@code app.roles.reload-interval-ms} and never wait for a reload in progress, so requests naming
+ * unknown roles neither query the role table each time nor queue up on the registry.
+ */
+@Service
+public class RoleRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoleRegistry.class);
+
+    public record RoleEntry(Long id, String name, GrantedAuthority authority) {
+    }
+
+    private final RoleRepository roleRepository;
+    private final long reloadIntervalNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicLong lastReload;
+
+    private volatile Map<String, RoleEntry> roles = Map.of();
+
+    @Autowired
+    public RoleRegistry(RoleRepository roleRepository,
+                        @Value("${app.roles.reload-interval-ms:30000}") long reloadIntervalMs) {
+        this(roleRepository, reloadIntervalMs, System::nanoTime);
+    }
+
+    RoleRegistry(RoleRepository roleRepository, long reloadIntervalMs, LongSupplier nanoClock) {
+        this.roleRepository = roleRepository;
+        this.reloadIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, reloadIntervalMs));
+        this.nanoClock = nanoClock;
+        this.lastReload = new AtomicLong(nanoClock.getAsLong() - reloadIntervalNanos);
+    }
+
+    public synchronized void refresh() {
+        lastReload.set(nanoClock.getAsLong());
+        Map<String, RoleEntry> snapshot = new HashMap<>();
+        for (Role role : roleRepository.findAll()) {
+            snapshot.put(role.getName(),
+                    new RoleEntry(role.getId(), role.getName(), new SimpleGrantedAuthority("ROLE_" + role.getName())));
+        }
+        roles = Map.copyOf(snapshot);
+        logger.info("Role registry loaded with roles: {}", roles.keySet());
+    }
+
+    public Optional<RoleEntry> find(String name) {
+        RoleEntry entry = roles.get(name);
+        if (entry == null && claimReload()) {
+            logger.debug("Role {} not in registry, reloading roles", name);
+            refresh();
+            entry = roles.get(name);
+        }
+        return Optional.ofNullable(entry);
+    }
+
+    // Only one caller per interval wins the reload, the others answer from the current snapshot
+    private boolean claimReload() {
+        long now = nanoClock.getAsLong();
+        long last = lastReload.get();
+        return now - last >= reloadIntervalNanos && lastReload.compareAndSet(last, now);
+    }
+
+    /**
+     * Returns a lazy reference to the role for use in associations; no select is issued.
+     */
+    public Optional<Role> findRole(String name) {
+        return find(name).map(entry -> roleRepository.getReferenceById(entry.id()));
+    }
+
+    /**
+     * Returns the shared authority of a role, without touching the database.
+     */
+    public GrantedAuthority authorityOf(String name) {
+        RoleEntry entry = roles.get(name);
+        return entry != null ? entry.authority() : new SimpleGrantedAuthority("ROLE_" + name);
+    }
+}
@@ -0,0 +1,129 @@
+package me.manulorenzo.usermanagement.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import me.manulorenzo.usermanagement.repository.RefreshTokenRepository;
+import me.manulorenzo.usermanagement.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Removes accounts whose email was never verified within the retention period, together with
+ * their role links, sessions, tokens and profile.
+ * <p>
+ * Each chunk is its own transaction that locks the accounts it removes with
+ * {@code FOR UPDATE SKIP LOCKED}, so reapers on several nodes work on disjoint chunks and a
+ * verification in flight is never waited on or deleted under it.
+ * <p>
+ * Admins are never reaped: the first registered user is made admin through a one-shot
+ * {@link BootstrapService} claim, and removing that account would leave no way to get an admin.
+ */
+@Service
+public class UnverifiedAccountReaper {
+
+    private static final Logger logger = LoggerFactory.getLogger(UnverifiedAccountReaper.class);
+
+    private final int retentionDays;
+    private final int chunkSize;
+    private final int maxChunksPerRun;
+    private final boolean archive;
+    private final String adminRole;
+    private final UserRepository userRepository;
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final TransactionOperations transactionOperations;
+    private final Counter reapedCounter;
+    private final Timer runTimer;
+
+    public UnverifiedAccountReaper(
+            @Value("${app.accounts.unverified.retention-days:7}") int retentionDays,
+            @Value("${app.accounts.unverified.chunk-size:500}") int chunkSize,
+            @Value("${app.accounts.unverified.max-chunks-per-run:100}") int maxChunksPerRun,
+            @Value("${app.accounts.unverified.archive:false}") boolean archive,
+            @Value("${app.roles.admin:ADMIN}") String adminRole,
+            UserRepository userRepository,
+            RefreshTokenRepository refreshTokenRepository,
+            TransactionOperations transactionOperations,
+            MeterRegistry meterRegistry) {
+        this.retentionDays = retentionDays;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.maxChunksPerRun = Math.max(1, maxChunksPerRun);
+        this.archive = archive;
+        this.adminRole = adminRole;
+        this.userRepository = userRepository;
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.transactionOperations = transactionOperations;
+        this.reapedCounter = Counter.builder("app.accounts.unverified.reaped")
+                .description("Never-verified accounts removed by the reaper")
+                .tag("action", archive ? "archived" : "deleted")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("app.accounts.unverified.reap")
+                .description("Duration of unverified account reaper runs")
+                .register(meterRegistry);
+
+        logger.info("UnverifiedAccountReaper initialized with retention: {} days, chunk size: {}, max chunks per run: {}, archive: {}",
+                retentionDays, this.chunkSize, this.maxChunksPerRun, archive);
+    }
+
+    @Scheduled(fixedDelayString = "${app.accounts.unverified.reap-interval-ms:3600000}",
+            initialDelayString = "${app.accounts.unverified.reap-interval-ms:3600000}")
+    public void scheduledReap() {
+        reap();
+    }
+
+    /**
+     * Removes unverified accounts older than the retention period, at most
+     * {@code chunkSize * maxChunksPerRun} per call, and returns how many were removed.
+     */
+    public int reap() {
+        if (retentionDays <= 0) {
+            return 0;
+        }
+
+        Instant cutoff = Instant.now().minus(Duration.ofDays(retentionDays));
+        long start = System.nanoTime();
+        int reaped = 0;
+        int chunks = 0;
+        while (chunks < maxChunksPerRun) {
+            Integer removed = transactionOperations.execute(status -> reapChunk(cutoff));
+            chunks++;
+            reaped += removed == null ? 0 : removed;
+            if (removed == null || removed < chunkSize) {
+                break;
+            }
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        runTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        reapedCounter.increment(reaped);
+        if (reaped > 0) {
+            logger.info("Reaped {} unverified accounts registered before {} in {} chunks ({} ms)",
+                    reaped, cutoff, chunks, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        } else {
+            logger.debug("No unverified accounts registered before {} to reap", cutoff);
+        }
+        return reaped;
+    }
+
+    private int reapChunk(Instant cutoff) {
+        List<Long> ids = userRepository.lockUnverifiedCreatedBefore(cutoff, adminRole, chunkSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        if (archive) {
+            userRepository.archiveByIdIn(ids, Instant.now());
+        }
+        userRepository.deleteRoleLinksByUserIdIn(ids);
+        refreshTokenRepository.deleteByUserIdIn(ids);
+        return userRepository.deleteByIdIn(ids);
+    }
+}
@@ -0,0 +1,108 @@
+package me.manulorenzo.usermanagement.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Serializes per-user mutations (login, refresh, logout) without a global lock.
+ * <p>
+ * {@link LockMode#LOCAL} keeps a fixed array of striped locks in this JVM; the stripe is
+ * chosen from the user id and held across the whole transaction, including its commit.
+ * {@link LockMode#ADVISORY} takes a Postgres transaction-scoped advisory lock instead, so the
+ * same user is serialized across every node sharing the database.
+ */
+@Service
+public class UserLockService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserLockService.class);
+
+    // First key of pg_advisory_xact_lock(int, int), keeps these locks apart from other advisory lock users
+    static final int ADVISORY_LOCK_NAMESPACE = 0x55534552; // "USER"
+
+    public enum LockMode {
+        LOCAL,
+        ADVISORY
+    }
+
+    private final LockMode mode;
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    private final TransactionOperations transactionOperations;
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserLockService(
+            @Value("${app.sessions.lock-mode:local}") String mode,
+            @Value("${app.sessions.lock-stripes:64}") int stripes,
+            TransactionOperations transactionOperations,
+            JdbcTemplate jdbcTemplate) {
+        this.mode = LockMode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        int size = stripeCount(stripes);
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+        this.transactionOperations = transactionOperations;
+        this.jdbcTemplate = jdbcTemplate;
+
+        logger.info("UserLockService initialized in {} mode with {} stripes", this.mode, size);
+    }
+
+    /**
+     * Runs the action in a new transaction while holding the lock of the given user.
+     */
+    public <T> T withUserLock(Long userId, Supplier<T> action) {
+        if (mode == LockMode.ADVISORY) {
+            return transactionOperations.execute(status -> {
+                jdbcTemplate.query("SELECT pg_advisory_xact_lock(?, ?)", rs -> null,
+                        ADVISORY_LOCK_NAMESPACE, Long.hashCode(userId));
+                return action.get();
+            });
+        }
+
+        ReentrantLock lock = stripeFor(userId);
+        lock.lock();
+        try {
+            return transactionOperations.execute(status -> action.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void withUserLock(Long userId, Runnable action) {
+        withUserLock(userId, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    LockMode getMode() {
+        return mode;
+    }
+
+    int getStripeCount() {
+        return stripes.length;
+    }
+
+    private ReentrantLock stripeFor(Long userId) {
+        // Spread the high bits so sequential ids do not share low-order stripes
+        int hash = Long.hashCode(userId);
+        hash ^= (hash >>> 16);
+        return stripes[hash & mask];
+    }
+
+    private static int stripeCount(int requested) {
+        if (requested <= 1) {
+            return 1;
+        }
+        return Integer.highestOneBit(requested - 1) << 1;
+    }
+}
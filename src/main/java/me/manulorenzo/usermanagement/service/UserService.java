@@ -5,68 +5,75 @@ import me.manulorenzo.usermanagement.dto.RegisterRequest;
 import me.manulorenzo.usermanagement.dto.ResetPasswordRequest;
 import me.manulorenzo.usermanagement.dto.UserProfile;
 import me.manulorenzo.usermanagement.dto.VerifyEmailRequest;
+import me.manulorenzo.usermanagement.entity.OneTimeToken;
+import me.manulorenzo.usermanagement.entity.Profile;
 import me.manulorenzo.usermanagement.entity.Role;
 import me.manulorenzo.usermanagement.entity.User;
-import me.manulorenzo.usermanagement.repository.RoleRepository;
+import me.manulorenzo.usermanagement.repository.ProfileRepository;
+import me.manulorenzo.usermanagement.repository.UserProfileView;
 import me.manulorenzo.usermanagement.repository.UserRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.time.Instant;
-import java.util.UUID;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
 
 @Service
 public class UserService {
 
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
 
+    private static final Duration VERIFICATION_TOKEN_TTL = Duration.ofHours(24);
+    private static final Duration PASSWORD_RESET_TOKEN_TTL = Duration.ofHours(1);
+
     private final String adminRoleName;
     private final String userRoleName;
-    private final boolean firstUserAdmin;
+    private final BootstrapService bootstrapService;
     private final UserRepository userRepository;
-    private final RoleRepository roleRepository;
+    private final RoleRegistry roleRegistry;
     private final PasswordEncoder passwordEncoder;
     private final EmailService emailService;
+    private final ProfileRepository profileRepository;
+    private final LinkTokenService linkTokenService;
+    private final EmailCoalescer emailCoalescer;
 
     public UserService(
             @Value("${app.roles.admin}") String adminRoleName,
             @Value("${app.roles.user}") String userRoleName,
-            @Value("${app.security.first-user-admin}") boolean firstUserAdmin,
+            BootstrapService bootstrapService,
             UserRepository userRepository,
-            RoleRepository roleRepository,
+            RoleRegistry roleRegistry,
             PasswordEncoder passwordEncoder,
-            EmailService emailService) {
+            EmailService emailService,
+            ProfileRepository profileRepository,
+            LinkTokenService linkTokenService,
+            EmailCoalescer emailCoalescer) {
         this.adminRoleName = adminRoleName;
         this.userRoleName = userRoleName;
-        this.firstUserAdmin = firstUserAdmin;
+        this.bootstrapService = bootstrapService;
         this.userRepository = userRepository;
-        this.roleRepository = roleRepository;
+        this.roleRegistry = roleRegistry;
         this.passwordEncoder = passwordEncoder;
         this.emailService = emailService;
+        this.profileRepository = profileRepository;
+        this.linkTokenService = linkTokenService;
+        this.emailCoalescer = emailCoalescer;
 
-        logger.info("UserService initialized with admin role: '{}', user role: '{}', first-user-admin: {}",
-                adminRoleName, userRoleName, firstUserAdmin);
+        logger.info("UserService initialized with admin role: '{}', user role: '{}'", adminRoleName, userRoleName);
     }
 
+    @Transactional
     public void register(RegisterRequest request) {
         logger.debug("Starting registration process for username: {}", request.getUsername());
 
-        // Check if username already exists
-        if (userRepository.findByUsername(request.getUsername()).isPresent()) {
-            logger.warn("Registration attempt with existing username: {}", request.getUsername());
-            throw new RuntimeException("Username already exists");
-        }
-
-        // Check if email already exists
-        if (userRepository.findByEmail(request.getEmail()).isPresent()) {
-            logger.warn("Registration attempt with existing email: {}", request.getEmail());
-            throw new RuntimeException("Email already exists");
-        }
-
         try {
             // Create new user (disabled until email verification)
             User user = new User();
@@ -76,19 +83,11 @@ public class UserService {
             user.setEnabled(false); // Disabled until email verified
             user.setEmailVerified(false);
 
-            // Generate verification token
-            user.setVerificationToken(UUID.randomUUID().toString());
-            user.setVerificationTokenExpiry(Instant.now().plusSeconds(24 * 60 * 60)); // 24 hours
-
-            // Assign role
-            long userCount = userRepository.count();
-            logger.debug("Current user count: {}", userCount);
-
-            // Determine role based on configuration
-            String roleName = (userCount == 0 && firstUserAdmin) ? adminRoleName : userRoleName;
+            // Assign role: only the registration that claims the bootstrap flag becomes admin
+            String roleName = bootstrapService.claimFirstAdmin() ? adminRoleName : userRoleName;
             logger.info("Assigning {} role to new user: {}", roleName, request.getUsername());
 
-            Role role = roleRepository.findByName(roleName)
+            Role role = roleRegistry.findRole(roleName)
                     .orElseThrow(() -> {
                         logger.error("Role {} not found during registration for user: {}", roleName, request.getUsername());
                         return new RuntimeException("Role not found");
@@ -96,19 +95,26 @@ public class UserService {
 
             user.getRoles().add(role);
 
-            // Save user
-            user = userRepository.save(user);
+            // Save user; duplicate usernames/emails are rejected by the unique indexes and mapped to 409
+            user = userRepository.saveAndFlush(user);
             logger.info("User '{}' registered successfully (disabled, pending email verification)", user.getUsername());
 
-            // Send verification email
-            emailService.queueVerificationEmail(user);
+            // Generate verification token and send verification email. The new account always gets it,
+            // but it holds the coalescing permit, so a resend right after registering does not replace its token
+            emailCoalescer.tryAcquire(user.getEmail(), "verification");
+            String token = linkTokenService.issue(user, OneTimeToken.Purpose.EMAIL_VERIFICATION, VERIFICATION_TOKEN_TTL);
+            emailService.queueVerificationEmail(user, token);
 
+        } catch (DataIntegrityViolationException e) {
+            logger.warn("Registration rejected for username {}: username or email already exists", request.getUsername());
+            throw e;
         } catch (Exception e) {
             logger.error("Error during registration for user {}: {}", request.getUsername(), e.getMessage(), e);
             throw e;
         }
     }
 
+    @Transactional
     public void addRoleToUser(String username, String roleName) {
         logger.info("Starting role addition: adding {} role to user {}", roleName, username);
 
@@ -121,13 +127,14 @@ public class UserService {
 
             logger.debug("User {} found, current roles: {}", username, user.getRoles());
 
-            Role role = roleRepository.findByName(roleName)
+            Role role = roleRegistry.findRole(roleName)
                     .orElseThrow(() -> {
                         logger.error("Role {} not found when trying to add to user {}", roleName, username);
                         return new RuntimeException("Role not found");
                     });
 
-            if (user.getRoles().contains(role)) {
+            // Compare by name: the registry hands out lazy references, not the user's loaded role instances
+            if (user.getRoles().stream().anyMatch(existing -> roleName.equals(existing.getName()))) {
                 logger.info("User {} already has role {}", username, roleName);
             } else {
                 user.getRoles().add(role);
@@ -141,74 +148,102 @@ public class UserService {
         }
     }
 
+    @Transactional(readOnly = true)
     public UserProfile getUserProfile(String username) {
-        User user = userRepository.findByUsername(username)
+        UserProfileView profile = userRepository.findProfileByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
-        return mapToDto(user);
+        return mapToDto(profile);
     }
 
+    @Transactional
     public UserProfile updateUserProfile(String username, UserProfile dto) {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
-
-        // Validate username changes
-        if (dto.getUsername() != null && !dto.getUsername().equals(user.getUsername())) {
-            if (userRepository.findByUsername(dto.getUsername()).isPresent()) {
-                logger.warn("Attempt to change username to existing username: {} by user: {}", dto.getUsername(), username);
-                throw new RuntimeException("Username already exists");
-            }
-            logger.info("Username change requested from {} to {}", username, dto.getUsername());
-            user.setUsername(dto.getUsername());
+        checkVersion(user, dto.getVersion());
+
+        boolean accountChanged = applyAccountChanges(user, dto);
+
+        // Full replacement: absent profile fields are cleared
+        Profile profile = loadProfile(user);
+        boolean profileChanged = !Objects.equals(profile.getFullName(), dto.getFullName())
+                || !Objects.equals(profile.getBio(), dto.getBio())
+                || !Objects.equals(profile.getImageUrl(), dto.getImageUrl());
+        if (profileChanged) {
+            profile.setFullName(dto.getFullName());
+            profile.setBio(dto.getBio());
+            profile.setImageUrl(dto.getImageUrl());
         }
 
-        // Validate email changes
-        if (dto.getEmail() != null && !dto.getEmail().equals(user.getEmail())) {
-            if (userRepository.findByEmail(dto.getEmail()).isPresent()) {
-                logger.warn("Attempt to change email to existing email: {} by user: {}", dto.getEmail(), username);
-                throw new RuntimeException("Email already exists");
-            }
-            logger.info("Email change requested for user: {} to: {}", username, dto.getEmail());
-            user.setEmail(dto.getEmail());
-        }
+        UserProfile updated = saveProfile(user, profile, accountChanged, profileChanged);
+        logger.info("Profile updated for user: {}", user.getUsername());
+        return updated;
+    }
 
-        user.setFullName(dto.getFullName());
-        user.setBio(dto.getBio());
-        user.setImageUrl(dto.getImageUrl());
+    /**
+     * Applies only the non-null fields of the patch. Unchanged fields are not written, and a patch
+     * carrying a version older than the stored one is rejected instead of overwriting newer data.
+     */
+    @Transactional
+    public UserProfile patchUserProfile(String username, UserProfile patch) {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
 
-        userRepository.save(user);
-        logger.info("Profile updated for user: {}", user.getUsername());
-        return mapToDto(user);
+        checkVersion(user, patch.getVersion());
+
+        boolean accountChanged = applyAccountChanges(user, patch);
+
+        Profile profile = loadProfile(user);
+        boolean profileChanged = false;
+        if (isChange(profile.getFullName(), patch.getFullName())) {
+            profile.setFullName(patch.getFullName());
+            profileChanged = true;
+        }
+        if (isChange(profile.getBio(), patch.getBio())) {
+            profile.setBio(patch.getBio());
+            profileChanged = true;
+        }
+        if (isChange(profile.getImageUrl(), patch.getImageUrl())) {
+            profile.setImageUrl(patch.getImageUrl());
+            profileChanged = true;
+        }
+
+        UserProfile patched = saveProfile(user, profile, accountChanged, profileChanged);
+        logger.info("Profile patched for user: {}", user.getUsername());
+        return patched;
     }
 
+    @Transactional
     public String verifyEmail(VerifyEmailRequest request) {
         logger.info("Attempting to verify email for: {}", request.getEmail());
 
-        User user = userRepository.findByEmail(request.getEmail())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        // Unknown, expired and already used tokens look the same
+        Optional<User> tokenOwner = linkTokenService.consume(request.getToken(), OneTimeToken.Purpose.EMAIL_VERIFICATION);
 
-        // Check if already verified
-        if (user.isEmailVerified()) {
-            logger.info("Email already verified for user: {}", user.getUsername());
-            return "Email already verified";
+        if (tokenOwner.isEmpty()) {
+            // A repeated click on the link after it was used
+            if (userRepository.findByEmail(request.getEmail()).map(User::isEmailVerified).orElse(false)) {
+                logger.info("Email already verified for: {}", request.getEmail());
+                return "Email already verified";
+            }
+            logger.warn("Invalid or expired verification token for: {}", request.getEmail());
+            throw new RuntimeException("Invalid or expired verification token");
         }
 
-        // Check token
-        if (!request.getToken().equals(user.getVerificationToken())) {
-            logger.warn("Invalid verification token for user: {}", user.getUsername());
+        User user = tokenOwner.get();
+        // The token was issued to a different account; throwing rolls back a stored token's consumption
+        if (!user.getEmail().equalsIgnoreCase(request.getEmail().trim())) {
+            logger.warn("Verification token does not belong to: {}", request.getEmail());
             throw new RuntimeException("Invalid verification token");
         }
 
-        // Check token expiry
-        if (user.getVerificationTokenExpiry() == null || Instant.now().isAfter(user.getVerificationTokenExpiry())) {
-            logger.warn("Verification token expired for user: {}", user.getUsername());
-            throw new RuntimeException("Verification token has expired");
+        if (user.isEmailVerified()) {
+            logger.info("Email already verified for user: {}", user.getUsername());
+            return "Email already verified";
         }
 
         // Verify email and enable account
         user.setEmailVerified(true);
         user.setEnabled(true);
-        user.setVerificationToken(null);
-        user.setVerificationTokenExpiry(null);
 
         userRepository.save(user);
         logger.info("Email successfully verified for user: {}", user.getUsername());
@@ -219,47 +254,48 @@ public class UserService {
         return "Email verification successful";
     }
 
+    @Transactional
     public String forgotPassword(ForgotPasswordRequest request) {
         logger.info("Password reset requested for email: {}", request.getEmail());
 
         User user = userRepository.findByEmail(request.getEmail())
                 .orElseThrow(() -> new RuntimeException("Email not found"));
 
-        // Generate reset token
-        user.setPasswordResetToken(UUID.randomUUID().toString());
-        user.setPasswordResetTokenExpiry(Instant.now().plusSeconds(60 * 60)); // 1 hour
+        // A reset email sent moments ago still carries the latest token; a new one would only invalidate it
+        if (!emailCoalescer.tryAcquire(user.getEmail(), "reset")) {
+            logger.info("Password reset email for {} already sent within the coalescing window", request.getEmail());
+            return "Password reset email sent";
+        }
 
-        userRepository.save(user);
+        // Generate reset token; the user row itself is not written
+        String token = linkTokenService.issue(user, OneTimeToken.Purpose.PASSWORD_RESET, PASSWORD_RESET_TOKEN_TTL);
 
         // Send reset email
-        emailService.queuePasswordResetEmail(user);
+        emailService.queuePasswordResetEmail(user, token);
 
         logger.info("Password reset email sent to: {}", request.getEmail());
         return "Password reset email sent";
     }
 
+    @Transactional
     public String resetPassword(ResetPasswordRequest request) {
         logger.info("Attempting password reset for email: {}", request.getEmail());
 
-        User user = userRepository.findByEmail(request.getEmail())
-                .orElseThrow(() -> new RuntimeException("Email not found"));
-
-        // Check token
-        if (!request.getToken().equals(user.getPasswordResetToken())) {
-            logger.warn("Invalid password reset token for user: {}", user.getUsername());
-            throw new RuntimeException("Invalid or expired reset token");
-        }
+        // Consuming the token (or, for signed tokens, the versioned update below) makes it single use
+        User user = linkTokenService.consume(request.getToken(), OneTimeToken.Purpose.PASSWORD_RESET)
+                .orElseThrow(() -> {
+                    logger.warn("Invalid or expired password reset token for: {}", request.getEmail());
+                    return new RuntimeException("Invalid or expired reset token");
+                });
 
-        // Check token expiry
-        if (user.getPasswordResetTokenExpiry() == null || Instant.now().isAfter(user.getPasswordResetTokenExpiry())) {
-            logger.warn("Password reset token expired for user: {}", user.getUsername());
+        // The token was issued to a different account; throwing rolls back a stored token's consumption
+        if (!user.getEmail().equalsIgnoreCase(request.getEmail().trim())) {
+            logger.warn("Password reset token does not belong to: {}", request.getEmail());
             throw new RuntimeException("Invalid or expired reset token");
         }
 
         // Reset password
         user.setPassword(passwordEncoder.encode(request.getNewPassword()));
-        user.setPasswordResetToken(null);
-        user.setPasswordResetTokenExpiry(null);
 
         userRepository.save(user);
         logger.info("Password successfully reset for user: {}", user.getUsername());
@@ -267,6 +303,7 @@ public class UserService {
         return "Password reset successful";
     }
 
+    @Transactional
     public String resendVerificationEmail(String email) {
         logger.info("Resending verification email for: {}", email);
 
@@ -277,26 +314,84 @@ public class UserService {
             return "Email already verified";
         }
 
-        // Generate new verification token
-        user.setVerificationToken(UUID.randomUUID().toString());
-        user.setVerificationTokenExpiry(Instant.now().plusSeconds(24 * 60 * 60)); // 24 hours
+        if (!emailCoalescer.tryAcquire(user.getEmail(), "verification")) {
+            logger.info("Verification email for {} already sent within the coalescing window", email);
+            return "Verification email sent";
+        }
 
-        userRepository.save(user);
+        // Generate new verification token; it replaces the previous one
+        String token = linkTokenService.issue(user, OneTimeToken.Purpose.EMAIL_VERIFICATION, VERIFICATION_TOKEN_TTL);
 
         // Send verification email
-        emailService.queueVerificationEmail(user);
+        emailService.queueVerificationEmail(user, token);
 
         logger.info("Verification email resent to: {}", email);
         return "Verification email sent";
     }
 
-    private UserProfile mapToDto(User user) {
+    private void checkVersion(User user, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(user.getVersion())) {
+            logger.warn("Stale profile update for user: {} (version {} but stored {})",
+                    user.getUsername(), expectedVersion, user.getVersion());
+            throw new ObjectOptimisticLockingFailureException(User.class, user.getId());
+        }
+    }
+
+    // Username and email uniqueness is enforced by the unique indexes on save
+    private boolean applyAccountChanges(User user, UserProfile dto) {
+        boolean changed = false;
+        if (isChange(user.getUsername(), dto.getUsername())) {
+            logger.info("Username change requested from {} to {}", user.getUsername(), dto.getUsername());
+            user.setUsername(dto.getUsername());
+            changed = true;
+        }
+        if (isChange(user.getEmail(), dto.getEmail())) {
+            logger.info("Email change requested for user: {} to: {}", user.getUsername(), dto.getEmail());
+            user.setEmail(dto.getEmail());
+            changed = true;
+        }
+        return changed;
+    }
+
+    private static boolean isChange(String current, String requested) {
+        return requested != null && !requested.equals(current);
+    }
+
+    private Profile loadProfile(User user) {
+        return profileRepository.findById(user.getId()).orElseGet(() -> new Profile(user));
+    }
+
+    private UserProfile saveProfile(User user, Profile profile, boolean accountChanged, boolean profileChanged) {
+        if (profileChanged) {
+            profileRepository.save(profile);
+        }
+        // Dirty checking writes only the changed app_user columns, or nothing when they are unchanged
+        userRepository.saveAndFlush(user);
+        UserProfile dto = mapToDto(user, profile);
+
+        if (profileChanged && !accountChanged) {
+            // The user version is the profile's ETag, so it must move even when app_user itself is unchanged
+            if (userRepository.incrementVersion(user.getId(), user.getVersion()) == 0) {
+                throw new ObjectOptimisticLockingFailureException(User.class, user.getId());
+            }
+            dto.setVersion(user.getVersion() + 1);
+        }
+        return dto;
+    }
+
+    private UserProfile mapToDto(User user, Profile profile) {
         UserProfile dto = new UserProfile();
         dto.setUsername(user.getUsername());
         dto.setEmail(user.getEmail());
-        dto.setFullName(user.getFullName());
-        dto.setBio(user.getBio());
-        dto.setImageUrl(user.getImageUrl());
+        dto.setFullName(profile.getFullName());
+        dto.setBio(profile.getBio());
+        dto.setImageUrl(profile.getImageUrl());
+        dto.setVersion(user.getVersion());
         return dto;
     }
+
+    private UserProfile mapToDto(UserProfileView profile) {
+        return new UserProfile(profile.getUsername(), profile.getEmail(), profile.getFullName(),
+                profile.getBio(), profile.getImageUrl(), profile.getVersion());
+    }
 }
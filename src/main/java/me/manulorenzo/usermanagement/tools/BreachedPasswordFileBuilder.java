@@ -0,0 +1,195 @@
+package me.manulorenzo.usermanagement.tools;
+
+import me.manulorenzo.usermanagement.security.BreachedPasswordChecker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Builds the file read by {@link BreachedPasswordChecker} from a plain list of SHA-1 hashes,
+ * one per line in hex, optionally followed by {@code :count} (the format of the Pwned Passwords
+ * downloads). Input of any size is handled with an external merge sort: runs of
+ * {@code run-size} prefixes are sorted in memory, spilled to temporary files and merged.
+ * <p>
+ * Usage: {@code java -cp usermanagement-<version>.jar -Dloader.main=me.manulorenzo.usermanagement.tools.BreachedPasswordFileBuilder
+ * org.springframework.boot.loader.launch.PropertiesLauncher <hash-list> <output-file> [run-size]}
+ */
+public final class BreachedPasswordFileBuilder {
+
+    // 64M prefixes, 512 MB of heap per run
+    static final int DEFAULT_RUN_SIZE = 1 << 26;
+
+    private static final int SHA1_HEX_LENGTH = 40;
+    private static final int PREFIX_HEX_LENGTH = 16;
+
+    private BreachedPasswordFileBuilder() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BreachedPasswordFileBuilder <hash-list> <output-file> [run-size]");
+            System.exit(2);
+        }
+        int runSize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_RUN_SIZE;
+
+        long start = System.nanoTime();
+        Result result = build(Path.of(args[0]), Path.of(args[1]), runSize);
+        System.out.printf("Wrote %d distinct prefixes (%d lines skipped) to %s in %d s%n",
+                result.entries(), result.skippedLines(), args[1], (System.nanoTime() - start) / 1_000_000_000L);
+    }
+
+    public record Result(long entries, long skippedLines) {
+    }
+
+    public static Result build(Path hashList, Path output, int runSize) throws IOException {
+        long[] buffer = new long[Math.max(1, runSize)];
+        int buffered = 0;
+        long skipped = 0;
+        List<Path> runs = new ArrayList<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(hashList, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int end = line.indexOf(':');
+                String hash = (end < 0 ? line : line.substring(0, end)).trim();
+                if (hash.length() != SHA1_HEX_LENGTH) {
+                    skipped++;
+                    continue;
+                }
+                long prefix;
+                try {
+                    prefix = Long.parseUnsignedLong(hash.substring(0, PREFIX_HEX_LENGTH), 16);
+                } catch (NumberFormatException e) {
+                    skipped++;
+                    continue;
+                }
+                buffer[buffered++] = prefix;
+                if (buffered == buffer.length) {
+                    runs.add(spill(buffer, buffered));
+                    buffered = 0;
+                }
+            }
+        }
+
+        Path temporary = Files.createTempFile(output.toAbsolutePath().getParent(), "breached-", ".tmp");
+        try {
+            long entries;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+                out.write(BreachedPasswordChecker.FILE_MAGIC);
+                out.write(new byte[BreachedPasswordChecker.HEADER_BYTES - BreachedPasswordChecker.FILE_MAGIC.length]);
+                if (runs.isEmpty()) {
+                    sortUnsigned(buffer, buffered);
+                    entries = writeDistinct(buffer, buffered, out);
+                } else {
+                    if (buffered > 0) {
+                        runs.add(spill(buffer, buffered));
+                    }
+                    buffer = null;
+                    entries = merge(runs, out);
+                }
+            }
+            Files.move(temporary, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return new Result(entries, skipped);
+        } finally {
+            Files.deleteIfExists(temporary);
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    // Signed sort of sign-flipped values orders them as unsigned
+    static void sortUnsigned(long[] values, int length) {
+        for (int i = 0; i < length; i++) {
+            values[i] ^= Long.MIN_VALUE;
+        }
+        Arrays.sort(values, 0, length);
+        for (int i = 0; i < length; i++) {
+            values[i] ^= Long.MIN_VALUE;
+        }
+    }
+
+    private static Path spill(long[] buffer, int length) throws IOException {
+        sortUnsigned(buffer, length);
+        Path run = Files.createTempFile("breached-run-", ".bin");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+            writeDistinct(buffer, length, out);
+        }
+        return run;
+    }
+
+    private static long writeDistinct(long[] sorted, int length, DataOutputStream out) throws IOException {
+        long written = 0;
+        for (int i = 0; i < length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                out.writeLong(sorted[i]);
+                written++;
+            }
+        }
+        return written;
+    }
+
+    private static long merge(List<Path> runs, DataOutputStream out) throws IOException {
+        PriorityQueue<RunReader> heads = new PriorityQueue<>((a, b) -> Long.compareUnsigned(a.current, b.current));
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            for (Path run : runs) {
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if (reader.advance()) {
+                    heads.add(reader);
+                }
+            }
+
+            long written = 0;
+            long previous = 0;
+            while (!heads.isEmpty()) {
+                RunReader head = heads.poll();
+                if (written == 0 || head.current != previous) {
+                    out.writeLong(head.current);
+                    previous = head.current;
+                    written++;
+                }
+                if (head.advance()) {
+                    heads.add(head);
+                }
+            }
+            return written;
+        } finally {
+            for (RunReader reader : readers) {
+                reader.in.close();
+            }
+        }
+    }
+
+    private static final class RunReader {
+        private final DataInputStream in;
+        private long current;
+
+        RunReader(Path run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16));
+        }
+
+        boolean advance() throws IOException {
+            try {
+                current = in.readLong();
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package me.manulorenzo.usermanagement.validation;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Rejects passwords found in the breached password corpus; null values are left to {@code @NotBlank}.
+ */
+@Documented
+@Constraint(validatedBy = NotBreachedPasswordValidator.class)
+@Target({ElementType.FIELD, ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface NotBreachedPassword {
+
+    String message() default "This password has appeared in a data breach, please choose a different one";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+}
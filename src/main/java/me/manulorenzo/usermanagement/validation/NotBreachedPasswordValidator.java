@@ -0,0 +1,26 @@
+package me.manulorenzo.usermanagement.validation;
+
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+import me.manulorenzo.usermanagement.security.BreachedPasswordChecker;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class NotBreachedPasswordValidator implements ConstraintValidator<NotBreachedPassword, String> {
+
+    private final BreachedPasswordChecker breachedPasswordChecker;
+
+    // Used by validators created outside Spring (e.g. standalone MockMvc), which have no corpus to check
+    public NotBreachedPasswordValidator() {
+        this(null);
+    }
+
+    @Autowired
+    public NotBreachedPasswordValidator(BreachedPasswordChecker breachedPasswordChecker) {
+        this.breachedPasswordChecker = breachedPasswordChecker;
+    }
+
+    @Override
+    public boolean isValid(String password, ConstraintValidatorContext context) {
+        return password == null || breachedPasswordChecker == null || !breachedPasswordChecker.isBreached(password);
+    }
+}
@@ -0,0 +1,94 @@
+-- Baseline schema, previously created by hibernate.ddl-auto=update.
+-- Every statement is idempotent so this also upgrades databases that Hibernate created;
+-- Flyway baselines those at version 0 and then runs this script on top.
+
+CREATE SEQUENCE IF NOT EXISTS app_user_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS role_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS role (
+    id   BIGINT NOT NULL PRIMARY KEY,
+    name VARCHAR(255) UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS app_user (
+    id                          BIGINT  NOT NULL PRIMARY KEY,
+    username                    VARCHAR(255),
+    normalized_username         VARCHAR(255),
+    password                    VARCHAR(255),
+    email                       VARCHAR(255),
+    normalized_email            VARCHAR(255),
+    full_name                   VARCHAR(255),
+    bio                         VARCHAR(255),
+    image_url                   VARCHAR(255),
+    enabled                     BOOLEAN NOT NULL,
+    email_verified              BOOLEAN NOT NULL,
+    verification_token          VARCHAR(255),
+    verification_token_expiry   TIMESTAMP(6) WITH TIME ZONE,
+    password_reset_token        VARCHAR(255),
+    password_reset_token_expiry TIMESTAMP(6) WITH TIME ZONE
+);
+
+CREATE TABLE IF NOT EXISTS app_user_roles (
+    user_id  BIGINT NOT NULL REFERENCES app_user (id),
+    roles_id BIGINT NOT NULL REFERENCES role (id),
+    PRIMARY KEY (roles_id, user_id)
+);
+
+CREATE TABLE IF NOT EXISTS refresh_token (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    token        VARCHAR(255)                NOT NULL UNIQUE,
+    expiry_date  TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    device_id    VARCHAR(100)                NOT NULL DEFAULT 'default',
+    created_at   TIMESTAMP(6) WITH TIME ZONE,
+    last_used_at TIMESTAMP(6) WITH TIME ZONE,
+    user_id      BIGINT REFERENCES app_user (id)
+);
+
+CREATE TABLE IF NOT EXISTS app_bootstrap (
+    name       VARCHAR(50)                 NOT NULL PRIMARY KEY,
+    claimed_at TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+-- Columns added after the first Hibernate-managed releases
+ALTER TABLE app_user ADD COLUMN IF NOT EXISTS normalized_username VARCHAR(255);
+ALTER TABLE app_user ADD COLUMN IF NOT EXISTS normalized_email VARCHAR(255);
+ALTER TABLE refresh_token ADD COLUMN IF NOT EXISTS device_id VARCHAR(100) NOT NULL DEFAULT 'default';
+ALTER TABLE refresh_token ADD COLUMN IF NOT EXISTS created_at TIMESTAMP(6) WITH TIME ZONE;
+ALTER TABLE refresh_token ADD COLUMN IF NOT EXISTS last_used_at TIMESTAMP(6) WITH TIME ZONE;
+
+UPDATE app_user SET normalized_username = lower(trim(username))
+WHERE normalized_username IS NULL AND username IS NOT NULL;
+UPDATE app_user SET normalized_email = lower(trim(email))
+WHERE normalized_email IS NULL AND email IS NOT NULL;
+
+-- Refresh tokens used to be one per user; drop that unique constraint so each device keeps its own session
+DO $$
+DECLARE
+    constraint_name TEXT;
+BEGIN
+    FOR constraint_name IN
+        SELECT c.conname
+        FROM pg_constraint c
+        WHERE c.conrelid = 'refresh_token'::regclass
+          AND c.contype = 'u'
+          AND c.conkey = ARRAY[(SELECT a.attnum FROM pg_attribute a
+                                WHERE a.attrelid = 'refresh_token'::regclass AND a.attname = 'user_id')]
+    LOOP
+        EXECUTE format('ALTER TABLE refresh_token DROP CONSTRAINT %I', constraint_name);
+    END LOOP;
+END
+$$;
+
+-- Uniqueness; the index names are the constraint names GlobalExceptionHandler maps to 409s
+CREATE UNIQUE INDEX IF NOT EXISTS uk_app_user_username ON app_user (normalized_username);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_app_user_email ON app_user (normalized_email);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_refresh_token_user_device ON refresh_token (user_id, device_id);
+
+-- Lookup indexes. refresh_token.user_id is served by the leading column of the two indexes on it,
+-- and app_user email/username lookups by the unique indexes above.
+CREATE INDEX IF NOT EXISTS idx_refresh_token_user_last_used ON refresh_token (user_id, last_used_at);
+CREATE INDEX IF NOT EXISTS idx_app_user_roles_user_id ON app_user_roles (user_id);
+CREATE INDEX IF NOT EXISTS idx_app_user_verification_token ON app_user (verification_token)
+    WHERE verification_token IS NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_app_user_password_reset_token ON app_user (password_reset_token)
+    WHERE password_reset_token IS NOT NULL;
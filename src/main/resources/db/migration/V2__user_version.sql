@@ -0,0 +1,2 @@
+-- Optimistic locking column for app_user; existing rows start at version 0
+ALTER TABLE app_user ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,17 @@
+-- Move the free-form profile fields out of app_user, so credential lookups read a narrow row.
+-- Users without any profile data get no row; it is created on their first profile edit.
+CREATE TABLE app_user_profile (
+    user_id   BIGINT       NOT NULL PRIMARY KEY REFERENCES app_user (id) ON DELETE CASCADE,
+    full_name VARCHAR(255),
+    bio       VARCHAR(500),
+    image_url VARCHAR(500)
+);
+
+INSERT INTO app_user_profile (user_id, full_name, bio, image_url)
+SELECT id, full_name, bio, image_url
+FROM app_user
+WHERE full_name IS NOT NULL OR bio IS NOT NULL OR image_url IS NOT NULL;
+
+ALTER TABLE app_user DROP COLUMN full_name;
+ALTER TABLE app_user DROP COLUMN bio;
+ALTER TABLE app_user DROP COLUMN image_url;
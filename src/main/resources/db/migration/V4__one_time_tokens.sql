@@ -0,0 +1,32 @@
+-- Verification and password reset tokens move out of app_user into their own table, keyed by the
+-- SHA-256 of the token. Unexpired tokens already sent by email keep working.
+CREATE TABLE one_time_token (
+    token_hash VARCHAR(64)                 NOT NULL PRIMARY KEY,
+    purpose    VARCHAR(32)                 NOT NULL,
+    user_id    BIGINT                      NOT NULL REFERENCES app_user (id) ON DELETE CASCADE,
+    expires_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    created_at TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX idx_one_time_token_user_purpose ON one_time_token (user_id, purpose);
+CREATE INDEX idx_one_time_token_expires_at ON one_time_token (expires_at);
+
+INSERT INTO one_time_token (token_hash, purpose, user_id, expires_at, created_at)
+SELECT encode(sha256(convert_to(verification_token, 'UTF8')), 'hex'), 'EMAIL_VERIFICATION', id,
+       verification_token_expiry, now()
+FROM app_user
+WHERE verification_token IS NOT NULL AND verification_token_expiry > now()
+ON CONFLICT (token_hash) DO NOTHING;
+
+INSERT INTO one_time_token (token_hash, purpose, user_id, expires_at, created_at)
+SELECT encode(sha256(convert_to(password_reset_token, 'UTF8')), 'hex'), 'PASSWORD_RESET', id,
+       password_reset_token_expiry, now()
+FROM app_user
+WHERE password_reset_token IS NOT NULL AND password_reset_token_expiry > now()
+ON CONFLICT (token_hash) DO NOTHING;
+
+-- Dropping the columns also drops their partial indexes
+ALTER TABLE app_user DROP COLUMN verification_token;
+ALTER TABLE app_user DROP COLUMN verification_token_expiry;
+ALTER TABLE app_user DROP COLUMN password_reset_token;
+ALTER TABLE app_user DROP COLUMN password_reset_token_expiry;
@@ -0,0 +1,15 @@
+-- Registration time, so never-verified accounts can be removed after a retention period.
+-- Existing rows get the migration time and are only reaped once the period has passed from now.
+ALTER TABLE app_user ADD COLUMN created_at TIMESTAMP(6) WITH TIME ZONE NOT NULL DEFAULT now();
+
+-- Only unverified accounts are scanned by the reaper, which keeps this index small
+CREATE INDEX idx_app_user_unverified_created_at ON app_user (created_at) WHERE email_verified = false;
+
+-- Reaped accounts, kept when app.accounts.unverified.archive is enabled
+CREATE TABLE app_user_archive (
+    user_id     BIGINT                      NOT NULL PRIMARY KEY,
+    username    VARCHAR(255),
+    email       VARCHAR(255),
+    created_at  TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    archived_at TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
@@ -0,0 +1,11 @@
+-- Transactional outbox: messages are written in the transaction of the change that caused them
+-- and published to RabbitMQ afterwards by OutboxRelay, which deletes each row once the broker
+-- has confirmed it.
+CREATE TABLE outbox_message (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    exchange     VARCHAR(255)                NOT NULL,
+    routing_key  VARCHAR(255)                NOT NULL,
+    message_type VARCHAR(255),
+    payload      TEXT                        NOT NULL,
+    created_at   TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
@@ -0,0 +1,108 @@
+package me.manulorenzo.usermanagement;
+
+import org.junit.jupiter.api.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.StreamSupport;
+
+/**
+ * Compares the schema phase of startup (Hibernate boot including schema handling and Flyway) for
+ * the old ddl-auto=update setup and the migration + validate setup, on a schema with thousands of tables.
+ * <p>
+ * Slow and dependent on machine load, so it is tagged {@code perf} and only runs with {@code mvn test -Pperf}.
+ */
+@Tag("perf")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class SchemaStartupIntegrationTest {
+    private static final Logger logger = LoggerFactory.getLogger(SchemaStartupIntegrationTest.class);
+
+    private static final int EXTRA_TABLES = 5000;
+    private static final int ROUNDS = 3;
+
+    private static final PostgreSQLContainer<?> postgres;
+
+    static {
+        postgres = new PostgreSQLContainer<>("postgres:16");
+        postgres.start();
+    }
+
+    @BeforeAll
+    void createLargeSchema() throws Exception {
+        try (Connection connection = DriverManager.getConnection(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+             Statement statement = connection.createStatement()) {
+            for (int i = 0; i < EXTRA_TABLES; i++) {
+                statement.addBatch("CREATE TABLE unrelated_" + i + " (id BIGINT PRIMARY KEY, name VARCHAR(255), " +
+                        "owner_id BIGINT, created_at TIMESTAMPTZ, active BOOLEAN)");
+                statement.addBatch("CREATE INDEX idx_unrelated_" + i + "_owner ON unrelated_" + i + " (owner_id)");
+            }
+            statement.executeBatch();
+        }
+        // First boot applies the migrations and warms up the JVM
+        schemaStartupMillis();
+    }
+
+    @Test
+    void migrationsWithValidate_ShouldStartFasterThanDdlAutoUpdate_OnLargeSchema() {
+        long[] update = new long[ROUNDS];
+        long[] validate = new long[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            update[round] = schemaStartupMillis("--spring.flyway.enabled=false", "--spring.jpa.hibernate.ddl-auto=update");
+            validate[round] = schemaStartupMillis();
+        }
+
+        long updateMedian = median(update);
+        long validateMedian = median(validate);
+        logger.info("Schema startup on {} extra tables: ddl-auto=update {} ms, migrations + validate {} ms",
+                EXTRA_TABLES, updateMedian, validateMedian);
+
+        Assertions.assertTrue(validateMedian < updateMedian,
+                "validate (" + validateMedian + " ms) should be faster than update (" + updateMedian + " ms)");
+    }
+
+    private long schemaStartupMillis(String... overrides) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + postgres.getJdbcUrl(),
+                "--spring.datasource.username=" + postgres.getUsername(),
+                "--spring.datasource.password=" + postgres.getPassword(),
+                "--spring.rabbitmq.listener.simple.auto-startup=false",
+                "--server.port=0",
+                "--logging.file.name="));
+        args.addAll(Arrays.asList(overrides));
+
+        BufferingApplicationStartup startup = new BufferingApplicationStartup(20_000);
+        new SpringApplicationBuilder(UserManagementApplication.class)
+                .applicationStartup(startup)
+                .run(args.toArray(String[]::new))
+                .close();
+
+        // The entityManagerFactory step includes Flyway, which it depends on, and the Hibernate schema tool
+        return startup.getBufferedTimeline().getEvents().stream()
+                .filter(event -> event.getStartupStep().getName().equals("spring.beans.instantiate"))
+                .filter(event -> StreamSupport.stream(event.getStartupStep().getTags().spliterator(), false)
+                        .anyMatch(SchemaStartupIntegrationTest::isEntityManagerFactory))
+                .mapToLong(event -> event.getDuration().toMillis())
+                .sum();
+    }
+
+    private static boolean isEntityManagerFactory(StartupStep.Tag tag) {
+        return tag.getKey().equals("beanName") && tag.getValue().equals("entityManagerFactory");
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,108 @@
+package me.manulorenzo.usermanagement.benchmark;
+
+import me.manulorenzo.usermanagement.service.EmailTemplateEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares rendering the verification email with the precompiled templates against the previous
+ * {@code String.format} plain text body: {@code templateTextOnly} renders an email that has no HTML
+ * alternative (subject and text, the same work as the old path), {@code templateTextAndHtml} everything
+ * a send now renders (subject, text and HTML alternative).
+ * <p>
+ * Run with: {@code mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt} and
+ * {@code java -cp target/test-classes:target/classes:$(cat target/cp.txt) me.manulorenzo.usermanagement.benchmark.EmailRenderingBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EmailRenderingBenchmark {
+
+    private static final String BASE_URL = "http://localhost:8082";
+
+    private EmailTemplateEngine engine;
+    private EmailTemplateEngine textOnlyEngine;
+    private String username;
+    private String email;
+    private String token;
+
+    @Setup
+    public void setUp() throws IOException {
+        engine = new EmailTemplateEngine("classpath:email-templates/", "en");
+        // The same verification template without its .html alternative
+        Path textOnly = Files.createTempDirectory("email-templates");
+        try (InputStream in = EmailRenderingBenchmark.class.getResourceAsStream("/email-templates/verification.txt")) {
+            Files.copy(in, textOnly.resolve("verification.txt"));
+        }
+        textOnlyEngine = new EmailTemplateEngine(textOnly.toUri().toString(), "en");
+        username = "john_doe";
+        email = "john@example.com";
+        token = "Q2hhbmdlIG1lIHRvIGEgcmVhbCB0b2tlbiBwbGVhc2U";
+    }
+
+    @Benchmark
+    public String stringFormat() {
+        String verificationUrl = BASE_URL + "/verify-email?email=" + email + "&token=" + token;
+        return String.format(
+                """
+                        Hi %s,
+                        
+                        Thank you for registering with User Management!
+                        
+                        Please click the following link to verify your email address:
+                        %s
+                        
+                        Or use this verification code: %s
+                        
+                        This link will expire in 24 hours.
+                        
+                        If you didn't register for an account, please ignore this email.
+                        
+                        Best regards,
+                        User Management Team""",
+                username,
+                verificationUrl,
+                token
+        );
+    }
+
+    @Benchmark
+    public EmailTemplateEngine.RenderedEmail templateTextOnly() {
+        String verificationUrl = BASE_URL + "/verify-email?email=" + email + "&token=" + token;
+        return textOnlyEngine.render("verification", null,
+                Map.of("username", username, "url", verificationUrl, "token", token));
+    }
+
+    @Benchmark
+    public void templateTextAndHtml(Blackhole blackhole) {
+        String verificationUrl = BASE_URL + "/verify-email?email=" + email + "&token=" + token;
+        blackhole.consume(engine.render("verification", null,
+                Map.of("username", username, "url", verificationUrl, "token", token)));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EmailRenderingBenchmark.class.getName()).build()).run();
+    }
+}
@@ -110,7 +110,7 @@ class AuthControllerRefreshTokenTest {
         when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
                 .thenReturn(authentication);
         when(jwtUtil.generateToken(userDetails)).thenReturn("access-token");
-        when(refreshTokenService.createRefreshToken("testuser")).thenReturn(testRefreshToken);
+        when(refreshTokenService.createRefreshToken("testuser", null)).thenReturn(testRefreshToken);
 
         // When & Then
         mockMvc.perform(post("/api/auth/login")
@@ -122,7 +122,7 @@ class AuthControllerRefreshTokenTest {
 
         verify(authenticationManager).authenticate(any(UsernamePasswordAuthenticationToken.class));
         verify(jwtUtil).generateToken(userDetails);
-        verify(refreshTokenService).createRefreshToken("testuser");
+        verify(refreshTokenService).createRefreshToken("testuser", null);
     }
 
     @Test
@@ -149,6 +149,7 @@ class AuthControllerRefreshTokenTest {
 
         verify(refreshTokenService).findByToken("test-refresh-token-uuid");
         verify(refreshTokenService).verifyExpiration(testRefreshToken);
+        verify(refreshTokenService).markUsed(testRefreshToken);
         verify(userDetailsService).loadUserByUsername("testuser");
         verify(jwtUtil).generateToken(userDetails);
     }
@@ -261,6 +262,6 @@ class AuthControllerRefreshTokenTest {
 
         verify(authenticationManager).authenticate(any(UsernamePasswordAuthenticationToken.class));
         verify(jwtUtil, never()).generateToken(any());
-        verify(refreshTokenService, never()).createRefreshToken(anyString());
+        verify(refreshTokenService, never()).createRefreshToken(anyString(), any());
     }
 }
\ No newline at end of file
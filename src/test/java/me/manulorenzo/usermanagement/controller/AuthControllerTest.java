@@ -6,8 +6,10 @@ import me.manulorenzo.usermanagement.entity.RefreshToken;
 import me.manulorenzo.usermanagement.entity.User;
 import me.manulorenzo.usermanagement.exception.GlobalExceptionHandler;
 import me.manulorenzo.usermanagement.security.JwtUtil;
+import me.manulorenzo.usermanagement.service.AvailabilityService;
 import me.manulorenzo.usermanagement.service.RefreshTokenService;
 import me.manulorenzo.usermanagement.service.UserService;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -16,6 +18,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.MediaType;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -28,6 +31,7 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.sql.SQLException;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
@@ -56,6 +60,9 @@ class AuthControllerTest {
     @Mock
     private UserDetailsService userDetailsService;
 
+    @Mock
+    private AvailabilityService availabilityService;
+
     @InjectMocks
     private AuthController authController;
 
@@ -83,6 +90,39 @@ class AuthControllerTest {
         verify(userService).register(request);
     }
 
+    @Test
+    void checkAvailability_ShouldReportUsernameAndEmail() throws Exception {
+        when(availabilityService.isUsernameAvailable("john")).thenReturn(true);
+        when(availabilityService.isEmailAvailable("taken@example.com")).thenReturn(false);
+
+        mockMvc.perform(get("/api/auth/availability")
+                        .param("username", "john")
+                        .param("email", "taken@example.com"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.usernameAvailable").value(true))
+                .andExpect(jsonPath("$.emailAvailable").value(false));
+    }
+
+    @Test
+    void checkAvailability_ShouldOnlyCheckRequestedField() throws Exception {
+        when(availabilityService.isUsernameAvailable("john")).thenReturn(false);
+
+        mockMvc.perform(get("/api/auth/availability").param("username", "john"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.usernameAvailable").value(false))
+                .andExpect(jsonPath("$.emailAvailable").doesNotExist());
+
+        verify(availabilityService, never()).isEmailAvailable(anyString());
+    }
+
+    @Test
+    void checkAvailability_ShouldReturnBadRequest_WhenNothingRequested() throws Exception {
+        mockMvc.perform(get("/api/auth/availability"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(availabilityService);
+    }
+
     @Test
     void register_ShouldReturnBadRequest_WhenUserServiceThrowsUsernameExists() throws Exception {
         RegisterRequest request = new RegisterRequest("existing", "existing@example.com", "password123");
@@ -111,6 +151,21 @@ class AuthControllerTest {
                 .andExpect(jsonPath("$.message").value("Email already exists"));
     }
 
+    @Test
+    void register_ShouldReturnConflict_WhenEmailUniqueIndexViolated() throws Exception {
+        RegisterRequest request = new RegisterRequest("john", "John@Example.com", "password123");
+        doThrow(new DataIntegrityViolationException("could not execute statement [insert into app_user (email, username) ...]",
+                new ConstraintViolationException("duplicate key", new SQLException("duplicate key"), "PUBLIC.UK_APP_USER_EMAIL_INDEX_8")))
+                .when(userService).register(request);
+
+        mockMvc.perform(post("/api/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value("DATA_CONFLICT"))
+                .andExpect(jsonPath("$.message").value("Email already exists"));
+    }
+
     @Test
     void login_ShouldReturnJwt_WhenValidCredentials() throws Exception {
         LoginRequest request = new LoginRequest();
@@ -133,7 +188,7 @@ class AuthControllerTest {
 
         when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class))).thenReturn(auth);
         when(jwtUtil.generateToken(userDetails)).thenReturn("jwt-token");
-        when(refreshTokenService.createRefreshToken("alice")).thenReturn(refreshToken);
+        when(refreshTokenService.createRefreshToken("alice", null)).thenReturn(refreshToken);
 
         mockMvc.perform(post("/api/auth/login")
                         .contentType(MediaType.APPLICATION_JSON)
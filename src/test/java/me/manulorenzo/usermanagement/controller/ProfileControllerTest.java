@@ -2,26 +2,40 @@ package me.manulorenzo.usermanagement.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import me.manulorenzo.usermanagement.dto.UserProfile;
+import me.manulorenzo.usermanagement.entity.User;
 import me.manulorenzo.usermanagement.exception.GlobalExceptionHandler;
+import me.manulorenzo.usermanagement.security.UserPrincipal;
 import me.manulorenzo.usermanagement.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -257,4 +271,157 @@ public class ProfileControllerTest {
                 .andExpect(jsonPath("$.error").value("USER_NOT_FOUND"))
                 .andExpect(jsonPath("$.message").value("User not found"));
     }
+
+    @Test
+    void patchProfile_ShouldReturnPatchedProfile_WhenValidData() throws Exception {
+        UserProfile patch = new UserProfile();
+        patch.setBio("Patched bio");
+        patch.setVersion(2L);
+
+        UserProfile patchedProfile = new UserProfile();
+        patchedProfile.setUsername("john");
+        patchedProfile.setBio("Patched bio");
+        patchedProfile.setVersion(3L);
+
+        when(authentication.getName()).thenReturn("john");
+        when(userService.patchUserProfile("john", patch)).thenReturn(patchedProfile);
+
+        mockMvc.perform(patch("/api/profile")
+                        .principal(authentication)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(patch)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bio").value("Patched bio"))
+                .andExpect(jsonPath("$.version").value(3));
+
+        verify(userService).patchUserProfile("john", patch);
+    }
+
+    @Test
+    void patchProfile_ShouldReturnConflict_WhenProfileModifiedConcurrently() throws Exception {
+        UserProfile patch = new UserProfile();
+        patch.setBio("Patched bio");
+        patch.setVersion(1L);
+
+        when(authentication.getName()).thenReturn("john");
+        when(userService.patchUserProfile("john", patch))
+                .thenThrow(new ObjectOptimisticLockingFailureException(User.class, 1L));
+
+        mockMvc.perform(patch("/api/profile")
+                        .principal(authentication)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(patch)))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value("CONCURRENT_MODIFICATION"));
+    }
+
+    @Test
+    void getProfile_ShouldReturnETag_WhenProfileHasVersion() throws Exception {
+        UserProfile userProfile = new UserProfile();
+        userProfile.setUsername("john");
+        userProfile.setVersion(4L);
+
+        when(authentication.getName()).thenReturn("john");
+        when(userService.getUserProfile("john")).thenReturn(userProfile);
+
+        mockMvc.perform(get("/api/profile")
+                        .principal(authentication))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""));
+    }
+
+    @Test
+    void getProfile_ShouldReturnNotModified_WithoutLoadingProfile_WhenPrincipalVersionMatches() throws Exception {
+        when(authentication.getName()).thenReturn("john");
+        when(authentication.getPrincipal()).thenReturn(principal(4L));
+
+        mockMvc.perform(get("/api/profile")
+                        .principal(authentication)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"4\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""));
+
+        verify(userService, never()).getUserProfile(anyString());
+    }
+
+    @Test
+    void getProfile_ShouldReturnNotModified_WhenLoadedVersionMatchesWeakTag() throws Exception {
+        UserProfile userProfile = new UserProfile();
+        userProfile.setUsername("john");
+        userProfile.setVersion(4L);
+
+        // Not authenticated through the JWT filter, so no version comes with the principal
+        when(authentication.getName()).thenReturn("john");
+        when(userService.getUserProfile("john")).thenReturn(userProfile);
+
+        mockMvc.perform(get("/api/profile")
+                        .principal(authentication)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"3\", W/\"4\""))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void getProfile_ShouldReturnProfile_WhenETagIsOutdated() throws Exception {
+        UserProfile userProfile = new UserProfile();
+        userProfile.setUsername("john");
+        userProfile.setVersion(5L);
+
+        when(authentication.getName()).thenReturn("john");
+        when(authentication.getPrincipal()).thenReturn(principal(5L));
+        when(userService.getUserProfile("john")).thenReturn(userProfile);
+
+        mockMvc.perform(get("/api/profile")
+                        .principal(authentication)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"4\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"5\""))
+                .andExpect(jsonPath("$.username").value("john"));
+    }
+
+    @Test
+    void patchProfile_ShouldUseIfMatchVersion_WhenHeaderPresent() throws Exception {
+        UserProfile patch = new UserProfile();
+        patch.setBio("Patched bio");
+
+        UserProfile patchedProfile = new UserProfile();
+        patchedProfile.setBio("Patched bio");
+        patchedProfile.setVersion(8L);
+
+        when(authentication.getName()).thenReturn("john");
+        when(userService.patchUserProfile(eq("john"), any(UserProfile.class))).thenReturn(patchedProfile);
+
+        mockMvc.perform(patch("/api/profile")
+                        .principal(authentication)
+                        .header(HttpHeaders.IF_MATCH, "\"7\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(patch)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"8\""));
+
+        ArgumentCaptor<UserProfile> captor = ArgumentCaptor.forClass(UserProfile.class);
+        verify(userService).patchUserProfile(eq("john"), captor.capture());
+        assertEquals(7L, captor.getValue().getVersion());
+    }
+
+    @Test
+    void updateProfile_ShouldReturnPreconditionFailed_WhenIfMatchIsStale() throws Exception {
+        UserProfile updateRequest = new UserProfile();
+        updateRequest.setFullName("Updated Name");
+
+        when(authentication.getName()).thenReturn("john");
+        when(userService.updateUserProfile(eq("john"), any(UserProfile.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(User.class, 1L));
+
+        mockMvc.perform(put("/api/profile")
+                        .principal(authentication)
+                        .header(HttpHeaders.IF_MATCH, "\"2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updateRequest)))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.error").value("PRECONDITION_FAILED"));
+    }
+
+    private static UserPrincipal principal(long version) {
+        return new UserPrincipal("john", "encoded", true, List.of(), version);
+    }
 }
@@ -0,0 +1,94 @@
+package me.manulorenzo.usermanagement.controller;
+
+import me.manulorenzo.usermanagement.dto.SessionInfo;
+import me.manulorenzo.usermanagement.exception.GlobalExceptionHandler;
+import me.manulorenzo.usermanagement.service.RefreshTokenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class SessionControllerTest {
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @Mock
+    private Authentication authentication;
+
+    @InjectMocks
+    private SessionController sessionController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(sessionController)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+        when(authentication.getName()).thenReturn("john");
+    }
+
+    @Test
+    void listSessions_ShouldReturnSessionsOfCurrentUser() throws Exception {
+        Instant now = Instant.now();
+        when(refreshTokenService.findSessions("john")).thenReturn(List.of(
+                new SessionInfo("phone", now, now, now.plusSeconds(3600)),
+                new SessionInfo("web", now, now, now.plusSeconds(3600))));
+
+        mockMvc.perform(get("/api/sessions").principal(authentication))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].deviceId").value("phone"))
+                .andExpect(jsonPath("$[1].deviceId").value("web"));
+    }
+
+    @Test
+    void revokeSession_ShouldReturnOk_WhenSessionExists() throws Exception {
+        when(refreshTokenService.revokeSession("john", "phone")).thenReturn(true);
+
+        mockMvc.perform(delete("/api/sessions/phone").principal(authentication))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Session revoked"));
+
+        verify(refreshTokenService).revokeSession("john", "phone");
+    }
+
+    @Test
+    void revokeSession_ShouldReturnNotFound_WhenSessionMissing() throws Exception {
+        when(refreshTokenService.revokeSession("john", "tablet")).thenReturn(false);
+
+        mockMvc.perform(delete("/api/sessions/tablet").principal(authentication))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message").value("Session not found"));
+    }
+
+    @Test
+    void revokeAllSessions_ShouldReturnRevokedCount() throws Exception {
+        when(refreshTokenService.revokeAllSessions("john")).thenReturn(3);
+
+        mockMvc.perform(delete("/api/sessions").principal(authentication))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.revoked").value(3));
+    }
+}
@@ -0,0 +1,336 @@
+package me.manulorenzo.usermanagement.controller;
+
+import me.manulorenzo.usermanagement.entity.User;
+import me.manulorenzo.usermanagement.repository.OneTimeTokenRepository;
+import me.manulorenzo.usermanagement.repository.UserRepository;
+import me.manulorenzo.usermanagement.security.JwtUtil;
+import me.manulorenzo.usermanagement.service.CustomUserDetailsService;
+import me.manulorenzo.usermanagement.service.EmailService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs endpoints against a real (H2) database and asserts one transaction per use case, read-only
+ * transactions for reads, and that JDBC connections are only held inside those transactions.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:tx-boundary;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.rabbitmq.listener.simple.auto-startup=false",
+        "app.security.first-user-admin=false",
+        // The relay polls in its own transactions, which would be counted against the requests
+        "app.outbox.relay.enabled=false",
+        "logging.file.name="
+})
+@AutoConfigureMockMvc
+class TransactionBoundaryTest {
+
+    // A request that holds its connection longer than this is holding it across more than its transaction
+    private static final long MAX_CONNECTION_HOLD_MS = 500;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionRecorder transactions;
+
+    @Autowired
+    private ConnectionRecorder connections;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    // Token consumption is a Postgres DELETE ... RETURNING, which H2 does not support
+    @MockitoBean
+    private OneTimeTokenRepository oneTimeTokenRepository;
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void openInView_ShouldBeDisabled() {
+        assertThat(applicationContext.getBeansOfType(OpenEntityManagerInViewInterceptor.class)).isEmpty();
+    }
+
+    @Test
+    void register_ShouldCommitOnce() throws Exception {
+        reset();
+
+        mockMvc.perform(post("/api/auth/register").with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"john_doe\",\"email\":\"john@example.com\",\"password\":\"password123\"}"))
+                .andExpect(status().isOk());
+
+        assertSingleTransaction(false);
+    }
+
+    @Test
+    void verifyEmail_ShouldCommitOnce() throws Exception {
+        User user = saveUser("anna", "anna@example.com");
+        when(oneTimeTokenRepository.consume(anyString(), eq("EMAIL_VERIFICATION"), any())).thenReturn(Optional.of(user.getId()));
+        reset();
+
+        mockMvc.perform(post("/api/auth/verify-email").with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"anna@example.com\",\"token\":\"verify-token\"}"))
+                .andExpect(status().isOk());
+
+        assertSingleTransaction(false);
+        assertThat(userRepository.findByUsername("anna")).get().extracting(User::isEmailVerified).isEqualTo(true);
+    }
+
+    @Test
+    void forgotPassword_ShouldCommitOnce() throws Exception {
+        saveUser("bert", "bert@example.com");
+        reset();
+
+        mockMvc.perform(post("/api/auth/forgot-password").with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"bert@example.com\"}"))
+                .andExpect(status().isOk());
+
+        assertSingleTransaction(false);
+    }
+
+    @Test
+    void resetPassword_ShouldCommitOnce() throws Exception {
+        User user = saveUser("cara", "cara@example.com");
+        when(oneTimeTokenRepository.consume(anyString(), eq("PASSWORD_RESET"), any())).thenReturn(Optional.of(user.getId()));
+        reset();
+
+        mockMvc.perform(post("/api/auth/reset-password").with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"cara@example.com\",\"token\":\"reset-token\",\"newPassword\":\"newPassword1\"}"))
+                .andExpect(status().isOk());
+
+        assertSingleTransaction(false);
+    }
+
+    @Test
+    void getProfile_ShouldUseSingleReadOnlyTransaction() throws Exception {
+        saveUser("dave", "dave@example.com");
+        reset();
+
+        mockMvc.perform(get("/api/profile").with(user("dave")))
+                .andExpect(status().isOk());
+
+        assertSingleTransaction(true);
+    }
+
+    @Test
+    void getProfile_ShouldOnlyAuthenticate_WhenETagMatches() throws Exception {
+        saveUser("fred", "fred@example.com");
+        String bearer = "Bearer " + jwtUtil.generateToken(userDetailsService.loadUserByUsername("fred"));
+        String eTag = mockMvc.perform(get("/api/profile").header(HttpHeaders.AUTHORIZATION, bearer))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        reset();
+
+        mockMvc.perform(get("/api/profile").header(HttpHeaders.AUTHORIZATION, bearer)
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+
+        // The only read is the authentication filter loading the user, whose version is the ETag
+        assertThat(connections.checkouts.get()).isEqualTo(1);
+        assertThat(transactions.readOnlyFlags).isEmpty();
+    }
+
+    @Test
+    void getProfile_ShouldReturnProfile_WhenUpdateCommittedSinceETag() throws Exception {
+        saveUser("gina", "gina@example.com");
+        String eTag = mockMvc.perform(get("/api/profile").with(user("gina")))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(patch("/api/profile").with(user("gina")).with(csrf())
+                        .header(HttpHeaders.IF_MATCH, eTag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bio\":\"Gardener\"}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/profile").with(user("gina")).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bio").value("Gardener"));
+        mockMvc.perform(patch("/api/profile").with(user("gina")).with(csrf())
+                        .header(HttpHeaders.IF_MATCH, eTag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bio\":\"Beekeeper\"}"))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void updateProfile_ShouldCommitOnce() throws Exception {
+        saveUser("erin", "erin@example.com");
+        reset();
+
+        mockMvc.perform(put("/api/profile").with(user("erin")).with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"erin\",\"email\":\"erin@example.com\",\"fullName\":\"Erin\"}"))
+                .andExpect(status().isOk());
+
+        assertSingleTransaction(false);
+    }
+
+    private User saveUser(String username, String email) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(email);
+        user.setPassword("encoded");
+        return userRepository.save(user);
+    }
+
+    private void reset() {
+        transactions.reset();
+        connections.reset();
+    }
+
+    private void assertSingleTransaction(boolean readOnly) {
+        assertThat(transactions.commits.get()).isEqualTo(1);
+        assertThat(transactions.readOnlyFlags).containsExactly(readOnly);
+        // Every connection checkout belongs to that one transaction and is returned when it ends
+        assertThat(connections.checkouts.get()).isEqualTo(1);
+        assertThat(connections.open.get()).isZero();
+        assertThat(connections.maxHoldNanos.get() / 1_000_000).isLessThan(MAX_CONNECTION_HOLD_MS);
+    }
+
+    @TestConfiguration
+    static class RecordingConfig {
+
+        @Bean
+        TransactionRecorder transactionRecorder() {
+            return new TransactionRecorder();
+        }
+
+        @Bean
+        static ConnectionRecorder connectionRecorder() {
+            return new ConnectionRecorder();
+        }
+    }
+
+    static class TransactionRecorder implements TransactionExecutionListener {
+        final AtomicInteger commits = new AtomicInteger();
+        final List<Boolean> readOnlyFlags = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void afterBegin(TransactionExecution transaction, Throwable beginFailure) {
+            readOnlyFlags.add(transaction.isReadOnly());
+        }
+
+        @Override
+        public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+            commits.incrementAndGet();
+        }
+
+        void reset() {
+            commits.set(0);
+            readOnlyFlags.clear();
+        }
+    }
+
+    static class ConnectionRecorder implements BeanPostProcessor {
+        final AtomicInteger checkouts = new AtomicInteger();
+        final AtomicInteger open = new AtomicInteger();
+        final AtomicLong maxHoldNanos = new AtomicLong();
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource dataSource)) {
+                return bean;
+            }
+            return new DelegatingDataSource(dataSource) {
+                @Override
+                public Connection getConnection() throws SQLException {
+                    return track(super.getConnection());
+                }
+
+                @Override
+                public Connection getConnection(String username, String password) throws SQLException {
+                    return track(super.getConnection(username, password));
+                }
+            };
+        }
+
+        private Connection track(Connection connection) {
+            long checkedOutAt = System.nanoTime();
+            checkouts.incrementAndGet();
+            open.incrementAndGet();
+            AtomicInteger closed = new AtomicInteger();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("close") && closed.getAndIncrement() == 0) {
+                            open.decrementAndGet();
+                            maxHoldNanos.accumulateAndGet(System.nanoTime() - checkedOutAt, Math::max);
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+
+        void reset() {
+            checkouts.set(0);
+            open.set(0);
+            maxHoldNanos.set(0);
+        }
+    }
+}
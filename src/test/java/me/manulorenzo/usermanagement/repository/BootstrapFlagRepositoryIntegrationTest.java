@@ -0,0 +1,67 @@
+package me.manulorenzo.usermanagement.repository;
+
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class BootstrapFlagRepositoryIntegrationTest {
+    private static final PostgreSQLContainer<?> postgres;
+
+    static {
+        postgres = new PostgreSQLContainer<>("postgres:16");
+        postgres.start();
+    }
+
+    @Autowired
+    private BootstrapFlagRepository bootstrapFlagRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Test
+    void claim_ShouldSucceedForExactlyOneCaller_WhenClaimedConcurrently() throws Exception {
+        String flag = "test-flag-" + System.currentTimeMillis();
+        int callers = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return transactionTemplate.execute(status -> bootstrapFlagRepository.claim(flag, Instant.now()));
+            }));
+        }
+        start.countDown();
+
+        int winners = 0;
+        for (Future<Integer> result : results) {
+            winners += result.get();
+        }
+        executor.shutdown();
+
+        Assertions.assertEquals(1, winners);
+        Assertions.assertTrue(bootstrapFlagRepository.existsById(flag));
+    }
+}
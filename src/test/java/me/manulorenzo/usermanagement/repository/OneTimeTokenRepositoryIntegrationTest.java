@@ -0,0 +1,118 @@
+package me.manulorenzo.usermanagement.repository;
+
+import me.manulorenzo.usermanagement.entity.OneTimeToken;
+import me.manulorenzo.usermanagement.entity.User;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+@SpringBootTest(properties = "spring.rabbitmq.listener.simple.auto-startup=false")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class OneTimeTokenRepositoryIntegrationTest {
+    private static final PostgreSQLContainer<?> postgres;
+
+    static {
+        postgres = new PostgreSQLContainer<>("postgres:16");
+        postgres.start();
+    }
+
+    @Autowired
+    private OneTimeTokenRepository oneTimeTokenRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private User user;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @BeforeAll
+    void createUser() {
+        user = new User();
+        user.setUsername("token-owner-" + System.currentTimeMillis());
+        user.setEmail(user.getUsername() + "@example.com");
+        user.setPassword("encoded");
+        user = userRepository.save(user);
+    }
+
+    @Test
+    void consume_ShouldSucceedForExactlyOneCaller_WhenConsumedConcurrently() throws Exception {
+        String hash = saveToken("concurrent", OneTimeToken.Purpose.PASSWORD_RESET, Instant.now().plusSeconds(3600));
+        int callers = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+
+        List<Future<Optional<Long>>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return transactionTemplate.execute(status ->
+                        oneTimeTokenRepository.consume(hash, "PASSWORD_RESET", Instant.now()));
+            }));
+        }
+        start.countDown();
+
+        int winners = 0;
+        for (Future<Optional<Long>> result : results) {
+            Optional<Long> userId = result.get();
+            if (userId.isPresent()) {
+                Assertions.assertEquals(user.getId(), userId.get());
+                winners++;
+            }
+        }
+        executor.shutdown();
+
+        Assertions.assertEquals(1, winners);
+        Assertions.assertFalse(oneTimeTokenRepository.existsById(hash));
+    }
+
+    @Test
+    void consume_ShouldIgnoreExpiredTokenAndOtherPurpose() {
+        String expired = saveToken("expired", OneTimeToken.Purpose.EMAIL_VERIFICATION, Instant.now().minusSeconds(60));
+        String reset = saveToken("reset", OneTimeToken.Purpose.PASSWORD_RESET, Instant.now().plusSeconds(3600));
+
+        Assertions.assertTrue(transactionTemplate.execute(status ->
+                oneTimeTokenRepository.consume(expired, "EMAIL_VERIFICATION", Instant.now())).isEmpty());
+        Assertions.assertTrue(transactionTemplate.execute(status ->
+                oneTimeTokenRepository.consume(reset, "EMAIL_VERIFICATION", Instant.now())).isEmpty());
+        Assertions.assertTrue(oneTimeTokenRepository.existsById(reset));
+    }
+
+    @Test
+    void deleteExpired_ShouldKeepUnexpiredTokens() {
+        String expired = saveToken("purge-expired", OneTimeToken.Purpose.EMAIL_VERIFICATION, Instant.now().minusSeconds(60));
+        String valid = saveToken("purge-valid", OneTimeToken.Purpose.EMAIL_VERIFICATION, Instant.now().plusSeconds(3600));
+
+        transactionTemplate.executeWithoutResult(status -> oneTimeTokenRepository.deleteExpired(Instant.now()));
+
+        Assertions.assertFalse(oneTimeTokenRepository.existsById(expired));
+        Assertions.assertTrue(oneTimeTokenRepository.existsById(valid));
+    }
+
+    private String saveToken(String name, OneTimeToken.Purpose purpose, Instant expiresAt) {
+        String hash = String.format("%-64s", name + "-" + System.nanoTime()).replace(' ', '0');
+        oneTimeTokenRepository.save(new OneTimeToken(hash, purpose, user, Instant.now(), expiresAt));
+        return hash;
+    }
+}
@@ -0,0 +1,73 @@
+package me.manulorenzo.usermanagement.repository;
+
+import me.manulorenzo.usermanagement.entity.Profile;
+import me.manulorenzo.usermanagement.entity.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = {"spring.flyway.enabled=false", "spring.jpa.hibernate.ddl-auto=create-drop"})
+class ProfileRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProfileRepository profileRepository;
+
+    @Test
+    void findProfileByUsername_ShouldReturnEmptyProfileFields_WhenNoProfileRow() {
+        User user = saveUser("anna");
+
+        UserProfileView view = userRepository.findProfileByUsername("Anna").orElseThrow();
+
+        assertEquals(user.getId(), view.getId());
+        assertEquals("anna", view.getUsername());
+        assertEquals(0L, view.getVersion());
+        assertNull(view.getFullName());
+        assertNull(view.getBio());
+    }
+
+    @Test
+    void findProfileByUsername_ShouldJoinProfileFields_WhenProfileSaved() {
+        User user = saveUser("bert");
+        Profile profile = new Profile(user);
+        profile.setFullName("Bert Jones");
+        profile.setBio("Gardener");
+        profileRepository.saveAndFlush(profile);
+        entityManager.clear();
+
+        UserProfileView view = userRepository.findProfileByUsername("bert").orElseThrow();
+
+        assertEquals(user.getId(), profile.getUserId());
+        assertEquals("Bert Jones", view.getFullName());
+        assertEquals("Gardener", view.getBio());
+        assertTrue(profileRepository.findById(user.getId()).isPresent());
+    }
+
+    @Test
+    void incrementVersion_ShouldBumpVersion_WhenExpectedVersionMatches() {
+        User user = saveUser("cara");
+
+        assertEquals(1, userRepository.incrementVersion(user.getId(), 0L));
+        assertEquals(0, userRepository.incrementVersion(user.getId(), 0L));
+
+        entityManager.clear();
+        assertEquals(1L, userRepository.findByUsername("cara").orElseThrow().getVersion());
+    }
+
+    private User saveUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        return userRepository.saveAndFlush(user);
+    }
+}
@@ -1,5 +1,6 @@
 package me.manulorenzo.usermanagement.repository;
 
+import me.manulorenzo.usermanagement.dto.SessionInfo;
 import me.manulorenzo.usermanagement.entity.RefreshToken;
 import me.manulorenzo.usermanagement.entity.Role;
 import me.manulorenzo.usermanagement.entity.User;
@@ -8,15 +9,17 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
 
 import java.time.Instant;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
-@DataJpaTest
+@DataJpaTest(properties = {"spring.flyway.enabled=false", "spring.jpa.hibernate.ddl-auto=create-drop"})
 class RefreshTokenRepositoryTest {
 
     @Autowired
@@ -76,33 +79,73 @@ class RefreshTokenRepositoryTest {
     }
 
     @Test
-    void findByUser_ShouldReturnToken_WhenUserHasToken() {
+    void findByUserAndDeviceId_ShouldReturnToken_WhenDeviceHasSession() {
         // Given
+        testRefreshToken.setDeviceId("phone");
         testRefreshToken = entityManager.persistAndFlush(testRefreshToken);
 
         // When
-        Optional<RefreshToken> result = refreshTokenRepository.findByUser(testUser);
+        Optional<RefreshToken> result = refreshTokenRepository.findByUserAndDeviceId(testUser, "phone");
 
         // Then
         assertThat(result).isPresent();
         assertThat(result.get().getUser().getUsername()).isEqualTo("testuser");
         assertThat(result.get().getToken()).isEqualTo("test-refresh-token");
+        assertThat(refreshTokenRepository.findByUserAndDeviceId(testUser, "tablet")).isEmpty();
     }
 
     @Test
-    void findByUser_ShouldReturnEmpty_WhenUserHasNoToken() {
+    void save_ShouldAllowOneSessionPerDevice() {
         // Given
-        User anotherUser = new User();
-        anotherUser.setUsername("anotheruser");
-        anotherUser.setEmail("another@example.com");
-        anotherUser.setPassword("password");
-        anotherUser = entityManager.persistAndFlush(anotherUser);
+        testRefreshToken.setDeviceId("phone");
+        entityManager.persistAndFlush(testRefreshToken);
+
+        RefreshToken tabletToken = new RefreshToken("tablet-token", Instant.now().plusSeconds(86400), testUser);
+        tabletToken.setDeviceId("tablet");
+        entityManager.persistAndFlush(tabletToken);
+
+        // Then
+        assertThat(refreshTokenRepository.countByUser(testUser)).isEqualTo(2);
+    }
+
+    @Test
+    void findSessionsByUsername_ShouldReturnMostRecentlyUsedFirst() {
+        // Given
+        testRefreshToken.setDeviceId("phone");
+        testRefreshToken.setLastUsedAt(Instant.now().minusSeconds(60));
+        entityManager.persistAndFlush(testRefreshToken);
+
+        RefreshToken webToken = new RefreshToken("web-token", Instant.now().plusSeconds(86400), testUser);
+        webToken.setDeviceId("web");
+        webToken.setLastUsedAt(Instant.now());
+        entityManager.persistAndFlush(webToken);
 
         // When
-        Optional<RefreshToken> result = refreshTokenRepository.findByUser(anotherUser);
+        List<SessionInfo> sessions = refreshTokenRepository.findSessionsByUsername("testuser", Limit.of(5));
 
         // Then
-        assertThat(result).isEmpty();
+        assertThat(sessions).extracting(SessionInfo::getDeviceId).containsExactly("web", "phone");
+        assertThat(refreshTokenRepository.findSessionsByUsername("testuser", Limit.of(1))).hasSize(1);
+    }
+
+    @Test
+    void deleteByUsernameAndDeviceId_ShouldOnlyDeleteThatDevice() {
+        // Given
+        testRefreshToken.setDeviceId("phone");
+        entityManager.persistAndFlush(testRefreshToken);
+
+        RefreshToken webToken = new RefreshToken("web-token", Instant.now().plusSeconds(86400), testUser);
+        webToken.setDeviceId("web");
+        entityManager.persistAndFlush(webToken);
+
+        // When
+        int deleted = refreshTokenRepository.deleteByUsernameAndDeviceId("testuser", "phone");
+        entityManager.clear();
+
+        // Then
+        assertThat(deleted).isEqualTo(1);
+        assertThat(refreshTokenRepository.findByToken("test-refresh-token")).isEmpty();
+        assertThat(refreshTokenRepository.findByToken("web-token")).isPresent();
     }
 
     @Test
@@ -111,14 +154,14 @@ class RefreshTokenRepositoryTest {
         testRefreshToken = entityManager.persistAndFlush(testRefreshToken);
 
         // Verify token exists
-        assertThat(refreshTokenRepository.findByUser(testUser)).isPresent();
+        assertThat(refreshTokenRepository.countByUser(testUser)).isEqualTo(1);
 
         // When
         refreshTokenRepository.deleteByUser(testUser);
         entityManager.flush();
 
         // Then
-        assertThat(refreshTokenRepository.findByUser(testUser)).isEmpty();
+        assertThat(refreshTokenRepository.countByUser(testUser)).isZero();
     }
 
     @Test
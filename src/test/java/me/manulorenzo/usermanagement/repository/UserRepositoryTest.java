@@ -7,13 +7,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
 import java.util.Optional;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
-@DataJpaTest
+@DataJpaTest(properties = {"spring.flyway.enabled=false", "spring.jpa.hibernate.ddl-auto=create-drop"})
 class UserRepositoryTest {
 
     @Autowired
@@ -70,4 +74,80 @@ class UserRepositoryTest {
 
         assertEquals(2, count);
     }
-}
\ No newline at end of file
+
+    @Test
+    void findByUsername_ShouldIgnoreCase() {
+        User user = new User();
+        user.setUsername("TestUser");
+        user.setEmail("Test@Example.com");
+        user.setPassword("password");
+        entityManager.persistAndFlush(user);
+
+        assertTrue(userRepository.findByUsername("testuser").isPresent());
+        assertTrue(userRepository.findByEmail("test@example.COM").isPresent());
+        assertEquals("TestUser", userRepository.findByUsername("TESTUSER").get().getUsername());
+    }
+
+    @Test
+    void saveAndFlush_ShouldRejectDuplicateUsername_IgnoringCase() {
+        User user = new User();
+        user.setUsername("alice");
+        user.setEmail("alice@example.com");
+        userRepository.saveAndFlush(user);
+
+        User duplicate = new User();
+        duplicate.setUsername("Alice");
+        duplicate.setEmail("other@example.com");
+
+        DataIntegrityViolationException ex = assertThrows(DataIntegrityViolationException.class,
+                () -> userRepository.saveAndFlush(duplicate));
+        assertTrue(ex.getMessage().toLowerCase().contains(User.UK_USERNAME));
+    }
+
+    @Test
+    void saveAndFlush_ShouldRejectDuplicateEmail_IgnoringCase() {
+        User user = new User();
+        user.setUsername("bob");
+        user.setEmail("bob@example.com");
+        userRepository.saveAndFlush(user);
+
+        User duplicate = new User();
+        duplicate.setUsername("robert");
+        duplicate.setEmail("BOB@example.com");
+
+        DataIntegrityViolationException ex = assertThrows(DataIntegrityViolationException.class,
+                () -> userRepository.saveAndFlush(duplicate));
+        assertTrue(ex.getMessage().toLowerCase().contains(User.UK_EMAIL));
+    }
+
+    @Test
+    void saveAndFlush_ShouldIncrementVersion_WhenUserChanges() {
+        User user = new User();
+        user.setUsername("carol");
+        user.setEmail("carol@example.com");
+        userRepository.saveAndFlush(user);
+        assertEquals(0L, user.getVersion());
+
+        user.setPassword("changed");
+        userRepository.saveAndFlush(user);
+
+        assertEquals(1L, user.getVersion());
+    }
+
+    @Test
+    void saveAndFlush_ShouldRejectStaleUpdate_WhenRowChangedConcurrently() {
+        User user = new User();
+        user.setUsername("dave");
+        user.setEmail("dave@example.com");
+        userRepository.saveAndFlush(user);
+
+        // Another transaction commits an update after this one read the row
+        entityManager.getEntityManager()
+                .createNativeQuery("UPDATE app_user SET version = version + 1 WHERE id = :id")
+                .setParameter("id", user.getId())
+                .executeUpdate();
+
+        user.setPassword("lost update");
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> userRepository.saveAndFlush(user));
+    }
+}
@@ -0,0 +1,93 @@
+package me.manulorenzo.usermanagement.security;
+
+import me.manulorenzo.usermanagement.tools.BreachedPasswordFileBuilder;
+import me.manulorenzo.usermanagement.validation.NotBreachedPasswordValidator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BreachedPasswordCheckerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void isBreached_ShouldFindListedPasswords_AndPassOthers() throws Exception {
+        BreachedPasswordChecker checker = checkerFor(List.of("password123", "qwerty123", "letmein1"));
+
+        assertThat(checker.isEnabled()).isTrue();
+        assertThat(checker.size()).isEqualTo(3);
+        assertThat(checker.isBreached("password123")).isTrue();
+        assertThat(checker.isBreached("letmein1")).isTrue();
+        assertThat(checker.isBreached("correct-horse-battery-staple-42")).isFalse();
+        assertThat(checker.isBreached("Password123")).isFalse();
+    }
+
+    @Test
+    void containsPrefix_ShouldOrderPrefixesAsUnsigned() throws Exception {
+        Path list = tempDir.resolve("hashes.txt");
+        Files.writeString(list, "FFFFFFFFFFFFFFFF000000000000000000000000\n" +
+                "0000000000000001000000000000000000000000\n" +
+                "8000000000000000000000000000000000000000\n");
+        Path file = tempDir.resolve("breached.bin");
+        BreachedPasswordFileBuilder.build(list, file, 16);
+
+        BreachedPasswordChecker checker = new BreachedPasswordChecker(file.toString());
+
+        assertThat(checker.containsPrefix(-1L)).isTrue();
+        assertThat(checker.containsPrefix(1L)).isTrue();
+        assertThat(checker.containsPrefix(Long.MIN_VALUE)).isTrue();
+        assertThat(checker.containsPrefix(2L)).isFalse();
+        assertThat(checker.containsPrefix(Long.MAX_VALUE)).isFalse();
+    }
+
+    @Test
+    void isBreached_ShouldPassEverything_WhenNoFileConfigured() {
+        BreachedPasswordChecker checker = new BreachedPasswordChecker("");
+
+        assertThat(checker.isEnabled()).isFalse();
+        assertThat(checker.isBreached("password123")).isFalse();
+    }
+
+    @Test
+    void constructor_ShouldReject_WhenFileIsNotACorpus() throws IOException {
+        Path file = tempDir.resolve("not-a-corpus.bin");
+        Files.writeString(file, "this is not a breached password file");
+
+        assertThatThrownBy(() -> new BreachedPasswordChecker(file.toString()))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void validator_ShouldRejectBreachedPasswords() throws Exception {
+        NotBreachedPasswordValidator validator = new NotBreachedPasswordValidator(checkerFor(List.of("password123")));
+
+        assertThat(validator.isValid("password123", null)).isFalse();
+        assertThat(validator.isValid("unlisted-password-9", null)).isTrue();
+        assertThat(validator.isValid(null, null)).isTrue();
+        assertThat(new NotBreachedPasswordValidator().isValid("password123", null)).isTrue();
+    }
+
+    private BreachedPasswordChecker checkerFor(List<String> passwords) throws Exception {
+        StringBuilder lines = new StringBuilder();
+        for (String password : passwords) {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(password.getBytes(StandardCharsets.UTF_8));
+            lines.append(HexFormat.of().withUpperCase().formatHex(digest)).append(":42\n");
+        }
+        Path list = tempDir.resolve("hashes.txt");
+        Files.writeString(list, lines);
+        Path file = tempDir.resolve("breached.bin");
+        BreachedPasswordFileBuilder.build(list, file, 1024);
+        return new BreachedPasswordChecker(file.toString());
+    }
+}
@@ -0,0 +1,144 @@
+package me.manulorenzo.usermanagement.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.manulorenzo.usermanagement.entity.User;
+import me.manulorenzo.usermanagement.repository.UserIdentifierView;
+import me.manulorenzo.usermanagement.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AvailabilityServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AvailabilityService availabilityService;
+
+    @BeforeEach
+    void setUp() {
+        availabilityService = new AvailabilityService(0.01, 1000, userRepository, transactionManager, meterRegistry);
+    }
+
+    @Test
+    void isUsernameAvailable_ShouldNotQueryDatabase_WhenFilterHasNeverSeenIt() {
+        build(identifiers("john", "john@example.com"));
+
+        assertThat(availabilityService.isUsernameAvailable("jane")).isTrue();
+        assertThat(availabilityService.isEmailAvailable("jane@example.com")).isTrue();
+
+        verify(userRepository, never()).findIdByNormalizedUsername(anyString());
+        verify(userRepository, never()).existsByNormalizedEmail(anyString());
+        assertThat(meterRegistry.get("app.availability.checks").tag("answered-by", "filter").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void isUsernameAvailable_ShouldConfirmWithDatabase_WhenFilterMightContainIt() {
+        build(identifiers("john", "john@example.com"));
+        when(userRepository.findIdByNormalizedUsername("john")).thenReturn(Optional.of(1L));
+        when(userRepository.existsByNormalizedEmail("john@example.com")).thenReturn(true);
+
+        // Lookups are normalized like the unique indexes
+        assertThat(availabilityService.isUsernameAvailable(" John ")).isFalse();
+        assertThat(availabilityService.isEmailAvailable("JOHN@example.com")).isFalse();
+    }
+
+    @Test
+    void isUsernameAvailable_ShouldReportAvailable_WhenFilterHitWasFalsePositive() {
+        build(identifiers("john", "john@example.com"));
+        when(userRepository.findIdByNormalizedUsername("john")).thenReturn(Optional.empty());
+
+        assertThat(availabilityService.isUsernameAvailable("john")).isTrue();
+    }
+
+    @Test
+    void isUsernameAvailable_ShouldQueryDatabase_BeforeFiltersAreBuilt() {
+        when(userRepository.findIdByNormalizedUsername("jane")).thenReturn(Optional.empty());
+
+        assertThat(availabilityService.isReady()).isFalse();
+        assertThat(availabilityService.isUsernameAvailable("jane")).isTrue();
+        verify(userRepository).findIdByNormalizedUsername("jane");
+    }
+
+    @Test
+    void record_ShouldAddRegisteredOrRenamedUser() {
+        build(identifiers("john", "john@example.com"));
+        User user = new User();
+        user.setUsername("Jane");
+        user.setEmail("jane@example.com");
+        when(userRepository.findIdByNormalizedUsername("jane")).thenReturn(Optional.of(2L));
+
+        availabilityService.record(user);
+
+        assertThat(availabilityService.isUsernameAvailable("jane")).isFalse();
+    }
+
+    @Test
+    void rebuild_ShouldKeepPreviousFilters_WhenLoadingFails() {
+        build(identifiers("john", "john@example.com"));
+        when(userRepository.streamIdentifiers()).thenThrow(new RuntimeException("connection refused"));
+
+        availabilityService.rebuild();
+
+        assertThat(availabilityService.isReady()).isTrue();
+        assertThat(availabilityService.isUsernameAvailable("jane")).isTrue();
+    }
+
+    @Test
+    void rebuild_ShouldGrowFilters_WithoutCountingUsers_WhenTableOutgrowsThem() {
+        // Given more users than the configured minimum capacity of 1000
+        when(userRepository.streamIdentifiers()).thenAnswer(invocation -> IntStream.range(0, 1500)
+                .mapToObj(i -> identifier("user" + i, "user" + i + "@example.com")));
+
+        // When the filters are built
+        availabilityService.onApplicationReady();
+
+        // Then the table is streamed again into filters sized for what was seen, never counted
+        verify(userRepository, times(2)).streamIdentifiers();
+        verify(userRepository, never()).count();
+        assertThat(availabilityService.isUsernameAvailable("nobody")).isTrue();
+
+        // And the next rebuild is sized right the first time
+        availabilityService.rebuild();
+        verify(userRepository, times(3)).streamIdentifiers();
+    }
+
+    private void build(Stream<UserIdentifierView> identifiers) {
+        when(userRepository.streamIdentifiers()).thenReturn(identifiers);
+        availabilityService.onApplicationReady();
+        assertThat(availabilityService.isReady()).isTrue();
+    }
+
+    private static Stream<UserIdentifierView> identifiers(String username, String email) {
+        return Stream.of(identifier(username, email));
+    }
+
+    private static UserIdentifierView identifier(String username, String email) {
+        return new UserIdentifierView() {
+            @Override
+            public String getNormalizedUsername() {
+                return username;
+            }
+
+            @Override
+            public String getNormalizedEmail() {
+                return email;
+            }
+        };
+    }
+}
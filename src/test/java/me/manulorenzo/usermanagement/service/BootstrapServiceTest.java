@@ -0,0 +1,111 @@
+package me.manulorenzo.usermanagement.service;
+
+import me.manulorenzo.usermanagement.repository.BootstrapFlagRepository;
+import me.manulorenzo.usermanagement.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BootstrapServiceTest {
+
+    @Mock
+    private BootstrapFlagRepository bootstrapFlagRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Test
+    void claimFirstAdmin_ShouldReturnTrueOnce_ThenAnswerFromMemory() {
+        // Given
+        BootstrapService bootstrapService = new BootstrapService(true, bootstrapFlagRepository, userRepository);
+        when(bootstrapFlagRepository.claim(eq(BootstrapService.FIRST_ADMIN_FLAG), any(Instant.class))).thenReturn(1);
+
+        // When & Then
+        assertThat(bootstrapService.claimFirstAdmin()).isTrue();
+        assertThat(bootstrapService.claimFirstAdmin()).isFalse();
+        verify(bootstrapFlagRepository, times(1)).claim(eq(BootstrapService.FIRST_ADMIN_FLAG), any(Instant.class));
+    }
+
+    @Test
+    void claimFirstAdmin_ShouldReturnFalse_WhenClaimedByAnotherNode() {
+        // Given
+        BootstrapService bootstrapService = new BootstrapService(true, bootstrapFlagRepository, userRepository);
+        when(bootstrapFlagRepository.claim(eq(BootstrapService.FIRST_ADMIN_FLAG), any(Instant.class))).thenReturn(0);
+
+        // When & Then
+        assertThat(bootstrapService.claimFirstAdmin()).isFalse();
+        assertThat(bootstrapService.claimFirstAdmin()).isFalse();
+        verify(bootstrapFlagRepository, times(1)).claim(any(), any());
+    }
+
+    @Test
+    void claimFirstAdmin_ShouldRetry_WhenWinningTransactionRolledBack() {
+        // Given
+        BootstrapService bootstrapService = new BootstrapService(true, bootstrapFlagRepository, userRepository);
+        when(bootstrapFlagRepository.claim(eq(BootstrapService.FIRST_ADMIN_FLAG), any(Instant.class))).thenReturn(1);
+
+        // When
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThat(bootstrapService.claimFirstAdmin()).isTrue();
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // Then
+        assertThat(bootstrapService.claimFirstAdmin()).isTrue();
+    }
+
+    @Test
+    void claimFirstAdmin_ShouldNeverTouchDatabase_WhenFirstUserAdminDisabled() {
+        // Given
+        BootstrapService bootstrapService = new BootstrapService(false, bootstrapFlagRepository, userRepository);
+
+        // When & Then
+        assertThat(bootstrapService.claimFirstAdmin()).isFalse();
+        verifyNoInteractions(bootstrapFlagRepository);
+    }
+
+    @Test
+    void loadFirstAdminState_ShouldClaimFlag_WhenUsersAlreadyExist() {
+        // Given
+        BootstrapService bootstrapService = new BootstrapService(true, bootstrapFlagRepository, userRepository);
+        when(bootstrapFlagRepository.existsById(BootstrapService.FIRST_ADMIN_FLAG)).thenReturn(false);
+        when(userRepository.existsByIdNotNull()).thenReturn(true);
+
+        // When
+        bootstrapService.loadFirstAdminState();
+
+        // Then
+        verify(bootstrapFlagRepository).claim(eq(BootstrapService.FIRST_ADMIN_FLAG), any(Instant.class));
+        assertThat(bootstrapService.claimFirstAdmin()).isFalse();
+        verify(bootstrapFlagRepository, times(1)).claim(any(), any());
+    }
+
+    @Test
+    void loadFirstAdminState_ShouldLeaveFlagOpen_WhenDatabaseIsFresh() {
+        // Given
+        BootstrapService bootstrapService = new BootstrapService(true, bootstrapFlagRepository, userRepository);
+        when(bootstrapFlagRepository.existsById(BootstrapService.FIRST_ADMIN_FLAG)).thenReturn(false);
+        when(userRepository.existsByIdNotNull()).thenReturn(false);
+
+        // When
+        bootstrapService.loadFirstAdminState();
+
+        // Then
+        verify(bootstrapFlagRepository, never()).claim(any(), any());
+    }
+}
@@ -2,20 +2,23 @@ package me.manulorenzo.usermanagement.service;
 
 import me.manulorenzo.usermanagement.entity.Role;
 import me.manulorenzo.usermanagement.entity.User;
+import me.manulorenzo.usermanagement.repository.RoleRepository;
 import me.manulorenzo.usermanagement.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.when;
@@ -26,9 +29,20 @@ class CustomUserDetailsServiceTest {
     @Mock
     private UserRepository userRepo;
 
-    @InjectMocks
+    @Mock
+    private RoleRepository roleRepo;
+
+    private RoleRegistry roleRegistry;
     private CustomUserDetailsService userDetailsService;
 
+    @BeforeEach
+    void setUp() {
+        when(roleRepo.findAll()).thenReturn(List.of(new Role("ADMIN"), new Role("USER")));
+        roleRegistry = new RoleRegistry(roleRepo, 30000);
+        roleRegistry.refresh();
+        userDetailsService = new CustomUserDetailsService(userRepo, roleRegistry);
+    }
+
     @Test
     void loadUserByUsername_ShouldReturnUserDetails_WhenUserExists() {
         User user = new User();
@@ -47,6 +61,22 @@ class CustomUserDetailsServiceTest {
         assertTrue(userDetails.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_USER")));
     }
 
+    @Test
+    void loadUserByUsername_ShouldReuseSharedAuthorityInstances() {
+        User user = new User();
+        user.setUsername("john");
+        user.setPassword("encodedPassword");
+        user.setRoles(Set.of(new Role("USER")));
+
+        when(userRepo.findByUsername("john")).thenReturn(Optional.of(user));
+
+        UserDetails first = userDetailsService.loadUserByUsername("john");
+        UserDetails second = userDetailsService.loadUserByUsername("john");
+
+        assertSame(first.getAuthorities().iterator().next(), second.getAuthorities().iterator().next());
+        assertSame(roleRegistry.authorityOf("USER"), first.getAuthorities().iterator().next());
+    }
+
     @Test
     void loadUserByUsername_ShouldThrowException_WhenUserNotFound() {
         when(userRepo.findByUsername("nonexistent")).thenReturn(Optional.empty());
@@ -0,0 +1,158 @@
+package me.manulorenzo.usermanagement.service;
+
+import com.rabbitmq.client.Channel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.mail.MailSendException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmailBatchListenerTest {
+
+    private final Jackson2JsonMessageConverter converter = new Jackson2JsonMessageConverter();
+    private final EmailService emailService = mock(EmailService.class);
+    private final EmailRetryHandler retryHandler = mock(EmailRetryHandler.class);
+    private final Channel channel = mock(Channel.class);
+    private final EmailBatchListener listener = new EmailBatchListener(emailService, retryHandler, converter,
+            new EmailCoalescer(60000, 100, new SimpleMeterRegistry()),
+            new EmailSendShaper(true, 1, 100, 10, 2000, 100, mock(RabbitTemplate.class), new SimpleMeterRegistry()));
+
+    @Test
+    void handleEmailTasks_ShouldAckSentAndHandOverFailed_PerMessage() throws Exception {
+        // Given
+        MailSendException failure = new MailSendException("550 mailbox unavailable");
+        when(emailService.sendBatch(anyList())).thenAnswer(invocation -> {
+            Map<EmailTask, Exception> failed = new IdentityHashMap<>();
+            List<EmailTask> tasks = invocation.getArgument(0);
+            tasks.stream().filter(task -> task.getEmail().startsWith("bad")).forEach(task -> failed.put(task, failure));
+            return failed;
+        });
+
+        // When
+        listener.handleEmailTasks(List.of(
+                message(1, new EmailTask("verification", "a@example.com", "anna", "token-a")),
+                message(2, new EmailTask("verification", "bad@example.com", "bad", "token-b")),
+                message(3, new EmailTask("welcome", "c@example.com", "cara", "USER"))), channel);
+
+        // Then
+        verify(emailService).sendBatch(argThat(tasks -> tasks.size() == 3));
+        verify(retryHandler).handleFailure(argThat(task -> task.getEmail().equals("bad@example.com")), eq(failure));
+        verify(retryHandler).recordSent(2);
+        verify(channel).basicAck(1, false);
+        verify(channel).basicAck(2, false);
+        verify(channel).basicAck(3, false);
+    }
+
+    @Test
+    void handleEmailTasks_ShouldRequeue_WhenFailedTaskCannotBeHandedOver() throws Exception {
+        // Given
+        when(emailService.sendBatch(anyList())).thenAnswer(invocation -> {
+            Map<EmailTask, Exception> failed = new IdentityHashMap<>();
+            failed.put(invocation.<List<EmailTask>>getArgument(0).get(0), new MailSendException("421 try later"));
+            return failed;
+        });
+        doThrow(new AmqpConnectException(new RuntimeException("broker down"))).when(retryHandler).handleFailure(any(), any());
+
+        // When
+        listener.handleEmailTasks(List.of(message(4, new EmailTask("verification", "a@example.com", "anna", "token-a"))), channel);
+
+        // Then
+        verify(channel).basicNack(4, false, true);
+        verify(channel, never()).basicAck(4, false);
+    }
+
+    @Test
+    void handleEmailTasks_ShouldDeadLetterUnreadableMessage_AndSendTheRest() throws Exception {
+        // Given
+        MessageProperties properties = new MessageProperties();
+        properties.setDeliveryTag(7);
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        Message garbage = new Message("{not json".getBytes(StandardCharsets.UTF_8), properties);
+        when(emailService.sendBatch(anyList())).thenReturn(Map.of());
+
+        // When
+        listener.handleEmailTasks(List.of(garbage,
+                message(8, new EmailTask("verification", "a@example.com", "anna", "token-a"))), channel);
+
+        // Then
+        verify(retryHandler).deadLetter(eq(garbage), any());
+        verify(channel).basicAck(7, false);
+        verify(channel).basicAck(8, false);
+        verify(emailService).sendBatch(argThat(tasks -> {
+            assertThat(tasks).singleElement().extracting(EmailTask::getToken).isEqualTo("token-a");
+            return true;
+        }));
+    }
+
+    @Test
+    void handleEmailTasks_ShouldAckSupersededTaskWithoutSending() throws Exception {
+        // Given
+        when(emailService.sendBatch(anyList())).thenReturn(new IdentityHashMap<>());
+
+        // When
+        listener.handleEmailTasks(List.of(
+                message(5, new EmailTask("reset", "a@example.com", "anna", "old-token", true)),
+                message(6, new EmailTask("welcome", "a@example.com", "anna", "USER")),
+                message(7, new EmailTask("reset", "A@example.com", "anna", "new-token", true))), channel);
+
+        // Then
+        verify(emailService).sendBatch(argThat(tasks -> tasks.size() == 2
+                && tasks.stream().noneMatch(task -> "old-token".equals(task.getToken()))));
+        verify(retryHandler).recordSent(2);
+        verify(channel).basicAck(5, false);
+        verify(channel).basicAck(6, false);
+        verify(channel).basicAck(7, false);
+    }
+
+    @Test
+    void handleEmailTasks_ShouldDeferTasksOverDomainLimit_AndSendRestRoundRobin() throws Exception {
+        // Given
+        EmailSendShaper sendShaper = spy(new EmailSendShaper(true, 1, 2, 10, 2000, 100, mock(RabbitTemplate.class),
+                new SimpleMeterRegistry()));
+        EmailBatchListener shapedListener = new EmailBatchListener(emailService, retryHandler, converter,
+                new EmailCoalescer(60000, 100, new SimpleMeterRegistry()), sendShaper);
+        when(emailService.sendBatch(anyList())).thenReturn(new IdentityHashMap<>());
+
+        // When
+        shapedListener.handleEmailTasks(List.of(
+                message(1, new EmailTask("verification", "a1@corp.example", "a1", "t1")),
+                message(2, new EmailTask("verification", "a2@corp.example", "a2", "t2")),
+                message(3, new EmailTask("verification", "a3@corp.example", "a3", "t3")),
+                message(4, new EmailTask("verification", "b1@other.example", "b1", "t4"))), channel);
+
+        // Then
+        verify(sendShaper).defer(argThat(task -> task.getEmail().equals("a3@corp.example")));
+        verify(emailService).sendBatch(argThat(tasks -> tasks.stream().map(EmailTask::getEmail).toList()
+                .equals(List.of("a1@corp.example", "b1@other.example", "a2@corp.example"))));
+        verify(retryHandler).recordSent(3);
+        for (long deliveryTag = 1; deliveryTag <= 4; deliveryTag++) {
+            verify(channel).basicAck(deliveryTag, false);
+        }
+    }
+
+    private Message message(long deliveryTag, EmailTask task) {
+        MessageProperties properties = new MessageProperties();
+        properties.setDeliveryTag(deliveryTag);
+        return converter.toMessage(task, properties);
+    }
+}
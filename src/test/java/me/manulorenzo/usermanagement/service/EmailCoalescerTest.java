@@ -0,0 +1,88 @@
+package me.manulorenzo.usermanagement.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmailCoalescerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void tryAcquire_ShouldCollapseRepeats_WithinWindow() {
+        // Given
+        EmailCoalescer coalescer = new EmailCoalescer(60000, 100, meterRegistry, clock::get);
+
+        // When
+        boolean first = coalescer.tryAcquire("anna@example.com", "reset");
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        boolean repeat = coalescer.tryAcquire(" Anna@Example.com", "reset");
+        boolean otherType = coalescer.tryAcquire("anna@example.com", "verification");
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        boolean afterWindow = coalescer.tryAcquire("anna@example.com", "reset");
+
+        // Then
+        assertThat(first).isTrue();
+        assertThat(repeat).isFalse();
+        assertThat(otherType).isTrue();
+        assertThat(afterWindow).isTrue();
+        assertThat(meterRegistry.get("app.email.coalesced").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void tryAcquire_ShouldRelease_WhenTransactionRollsBack() {
+        // Given
+        EmailCoalescer coalescer = new EmailCoalescer(60000, 100, meterRegistry, clock::get);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            coalescer.tryAcquire("anna@example.com", "reset");
+
+            // When
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // Then
+        assertThat(coalescer.tryAcquire("anna@example.com", "reset")).isTrue();
+    }
+
+    @Test
+    void tryAcquire_ShouldLetTasksThrough_WhenDisabledOrFull() {
+        // Given
+        EmailCoalescer disabled = new EmailCoalescer(0, 100, meterRegistry, clock::get);
+        EmailCoalescer full = new EmailCoalescer(60000, 1, meterRegistry, clock::get);
+        full.tryAcquire("anna@example.com", "reset");
+
+        // When / Then
+        assertThat(disabled.tryAcquire("anna@example.com", "reset")).isTrue();
+        assertThat(disabled.tryAcquire("anna@example.com", "reset")).isTrue();
+        assertThat(full.tryAcquire("bob@example.com", "reset")).isTrue();
+        assertThat(full.tryAcquire("bob@example.com", "reset")).isTrue();
+        assertThat(full.size()).isEqualTo(1);
+    }
+
+    @Test
+    void superseded_ShouldReturnEarlierTasksForSameRecipientAndType() {
+        // Given
+        EmailCoalescer coalescer = new EmailCoalescer(60000, 100, meterRegistry, clock::get);
+        EmailTask oldReset = new EmailTask("reset", "anna@example.com", "anna", "old", true);
+        EmailTask welcome = new EmailTask("welcome", "anna@example.com", "anna", "USER");
+        EmailTask newReset = new EmailTask("reset", "ANNA@example.com", "anna", "new", true);
+
+        // When
+        var superseded = coalescer.superseded(List.of(oldReset, welcome, newReset));
+
+        // Then
+        assertThat(superseded).containsExactly(oldReset);
+    }
+}
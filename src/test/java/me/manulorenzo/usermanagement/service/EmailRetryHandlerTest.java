@@ -0,0 +1,119 @@
+package me.manulorenzo.usermanagement.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailSendException;
+
+import java.net.ConnectException;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class EmailRetryHandlerTest {
+
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final EmailRetryHandler handler = new EmailRetryHandler(4, 1000, 2.0, rabbitTemplate, meterRegistry);
+
+    @Test
+    void getRetryQueues_ShouldDoubleBackoff_ForEveryRetryOfEachLane() {
+        assertThat(handler.getRetryQueues()).extracting(EmailRetryHandler.RetryQueue::ttlMs)
+                .containsExactly(1000L, 2000L, 4000L, 1000L, 2000L, 4000L);
+        assertThat(handler.getRetryQueues()).extracting(EmailRetryHandler.RetryQueue::name)
+                .containsExactly("emailQueue.retry.1000ms", "emailQueue.retry.2000ms", "emailQueue.retry.4000ms",
+                        "emailQueue.critical.retry.1000ms", "emailQueue.critical.retry.2000ms", "emailQueue.critical.retry.4000ms");
+        assertThat(handler.getRetryQueues()).extracting(EmailRetryHandler.RetryQueue::lane)
+                .containsOnly(EmailRetryHandler.EMAIL_QUEUE, EmailRetryHandler.CRITICAL_QUEUE);
+    }
+
+    @Test
+    void queueFor_ShouldRouteVerificationAndResetToCriticalLane() {
+        assertThat(EmailRetryHandler.queueFor(new EmailTask("verification", "a@example.com", "anna", "token-a")))
+                .isEqualTo(EmailRetryHandler.CRITICAL_QUEUE);
+        assertThat(EmailRetryHandler.queueFor(new EmailTask("reset", "a@example.com", "anna", "token-a", true)))
+                .isEqualTo(EmailRetryHandler.CRITICAL_QUEUE);
+        assertThat(EmailRetryHandler.queueFor(new EmailTask("welcome", "a@example.com", "anna", "USER")))
+                .isEqualTo(EmailRetryHandler.EMAIL_QUEUE);
+    }
+
+    @Test
+    void handleFailure_ShouldRepublishToNextRetryQueueOfLane_WhenFailureIsTransient() {
+        // Given
+        EmailTask task = new EmailTask("verification", "a@example.com", "anna", "token-a");
+        task.setAttempt(1);
+
+        // When
+        handler.handleFailure(task, new MailSendException("Mail server connection failed", new MessagingException("down", new ConnectException())));
+
+        // Then
+        assertThat(task.getAttempt()).isEqualTo(2);
+        verify(rabbitTemplate).convertAndSend("", "emailQueue.critical.retry.2000ms", task);
+        assertThat(meterRegistry.get("app.email.retried").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void handleFailure_ShouldDeadLetter_WhenFailureIsPermanent() throws Exception {
+        // Given
+        EmailTask task = new EmailTask("verification", "nobody@example.com", "anna", "token-a");
+        SMTPAddressFailedException rejected = new SMTPAddressFailedException(new InternetAddress("nobody@example.com"),
+                "RCPT TO", 550, "550 5.1.1 mailbox unavailable");
+        MailSendException failure = new MailSendException(Map.of(new Object(), rejected));
+
+        // When
+        handler.handleFailure(task, failure);
+
+        // Then
+        verify(rabbitTemplate).convertAndSend(eq(""), eq("emailQueue.dlq"), eq(task), any(MessagePostProcessor.class));
+        assertThat(meterRegistry.get("app.email.dead-lettered").tag("reason", "permanent").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void handleFailure_ShouldDeadLetter_WhenAttemptsAreExhausted() {
+        // Given
+        EmailTask task = new EmailTask("reset", "a@example.com", "anna", "token-a", true);
+        task.setAttempt(3);
+
+        // When
+        handler.handleFailure(task, new MailSendException("Mail server connection failed"));
+
+        // Then
+        assertThat(task.getAttempt()).isEqualTo(4);
+        verify(rabbitTemplate).convertAndSend(eq(""), eq("emailQueue.dlq"), eq(task), any(MessagePostProcessor.class));
+        assertThat(meterRegistry.get("app.email.dead-lettered").tag("reason", "exhausted").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void deadLetter_ShouldForwardRawMessage_WithReason() {
+        // Given
+        Message message = new Message(new byte[]{1, 2, 3}, new MessageProperties());
+
+        // When
+        handler.deadLetter(message, new IllegalArgumentException("not json"));
+
+        // Then
+        verify(rabbitTemplate).send("", "emailQueue.dlq", message);
+        assertThat(message.getMessageProperties().<String>getHeader(EmailRetryHandler.REASON_HEADER)).isEqualTo("unreadable");
+    }
+
+    @Test
+    void isTransient_ShouldClassifyBySmtpReplyCode() {
+        assertThat(EmailRetryHandler.isTransient(new SMTPSendFailedException("DATA", 451, "451 try again later", null, null, null, null))).isTrue();
+        assertThat(EmailRetryHandler.isTransient(new SMTPSendFailedException("DATA", 554, "554 rejected", null, null, null, null))).isFalse();
+        assertThat(EmailRetryHandler.isTransient(new MailParseException("bad address"))).isFalse();
+        assertThat(EmailRetryHandler.isTransient(new MailSendException("Mail server connection failed", new ConnectException()))).isTrue();
+        assertThat(EmailRetryHandler.isTransient(new IllegalStateException("unexpected"))).isTrue();
+    }
+}
@@ -0,0 +1,122 @@
+package me.manulorenzo.usermanagement.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class EmailSendShaperTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private EmailSendShaper shaper(double ratePerSecond, int burst, int maxConcurrent, int maxDomains) {
+        return new EmailSendShaper(true, ratePerSecond, burst, maxConcurrent, 2000, maxDomains, rabbitTemplate,
+                meterRegistry, clock::get);
+    }
+
+    @Test
+    void tryAcquire_ShouldGrantBurstThenRefillAtRate() {
+        // Given
+        EmailSendShaper shaper = shaper(2, 5, 10, 100);
+
+        // When
+        int first;
+        try (EmailSendShaper.Permit permit = shaper.tryAcquire("corp.example", 8)) {
+            first = permit.granted();
+        }
+        int empty = shaper.tryAcquire("corp.example", 1).granted();
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        int refilled;
+        try (EmailSendShaper.Permit permit = shaper.tryAcquire("corp.example", 8)) {
+            refilled = permit.granted();
+        }
+
+        // Then
+        assertThat(first).isEqualTo(5);
+        assertThat(empty).isZero();
+        assertThat(refilled).isEqualTo(2);
+    }
+
+    @Test
+    void tryAcquire_ShouldCapConcurrentSendsPerDomain_WithoutAffectingOthers() {
+        // Given
+        EmailSendShaper shaper = shaper(100, 100, 1, 100);
+        EmailSendShaper.Permit held = shaper.tryAcquire("corp.example", 1);
+
+        // When
+        int sameDomain = shaper.tryAcquire("corp.example", 1).granted();
+        int otherDomain = shaper.tryAcquire("other.example", 1).granted();
+        held.close();
+        int afterRelease = shaper.tryAcquire("corp.example", 1).granted();
+
+        // Then
+        assertThat(held.granted()).isEqualTo(1);
+        assertThat(sameDomain).isZero();
+        assertThat(otherDomain).isEqualTo(1);
+        assertThat(afterRelease).isEqualTo(1);
+    }
+
+    @Test
+    void tryAcquire_ShouldForgetIdleDomains_WhenFull() {
+        // Given
+        EmailSendShaper shaper = shaper(1, 1, 1, 1);
+        shaper.tryAcquire("a.example", 1).close();
+
+        // When
+        int whileBusy = shaper.tryAcquire("b.example", 1).granted();
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        shaper.tryAcquire("c.example", 1).close();
+
+        // Then
+        // b.example is let through unshaped while a.example's bucket is still refilling
+        assertThat(whileBusy).isEqualTo(1);
+        assertThat(shaper.trackedDomains()).isEqualTo(1);
+    }
+
+    @Test
+    void defer_ShouldRepublishTaskToDeferQueueOfItsLane() {
+        // Given
+        EmailSendShaper shaper = shaper(1, 1, 1, 100);
+        EmailTask task = new EmailTask("verification", "anna@corp.example", "anna", "token");
+        EmailTask welcome = new EmailTask("welcome", "bert@corp.example", "bert", "USER");
+
+        // When
+        shaper.defer(task);
+        shaper.defer(welcome);
+
+        // Then
+        verify(rabbitTemplate).convertAndSend("", "emailQueue.critical.defer.2000ms", task);
+        verify(rabbitTemplate).convertAndSend("", "emailQueue.defer.2000ms", welcome);
+        assertThat(meterRegistry.get("app.email.deferred").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void roundRobin_ShouldInterleaveDomainsInOrder() {
+        // Given
+        EmailTask a1 = task("a1@corp.example");
+        EmailTask a2 = task("a2@CORP.example");
+        EmailTask a3 = task("a3@corp.example");
+        EmailTask b1 = task("b1@other.example");
+        EmailTask c1 = task("c1@third.example");
+
+        // When
+        List<EmailTask> ordered = EmailSendShaper.roundRobin(
+                EmailSendShaper.byDomain(List.of(a1, a2, b1, a3, c1)).values());
+
+        // Then
+        assertThat(ordered).containsExactly(a1, b1, c1, a2, a3);
+    }
+
+    private static EmailTask task(String email) {
+        return new EmailTask("verification", email, "user", "token");
+    }
+}
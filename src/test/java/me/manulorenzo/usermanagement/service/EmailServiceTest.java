@@ -0,0 +1,228 @@
+package me.manulorenzo.usermanagement.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import me.manulorenzo.usermanagement.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class EmailServiceTest {
+
+    private static final EmailTemplateEngine TEMPLATES = new EmailTemplateEngine("classpath:email-templates/", "en");
+
+    @Mock
+    private JavaMailSender mailSender;
+
+    @Mock
+    private EmailDispatcher emailDispatcher;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private EmailService emailService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(mailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage((Session) null));
+        emailService = new EmailService(mailSender, "noreply@test.com", "http://localhost:8080", emailDispatcher, TEMPLATES, meterRegistry);
+    }
+
+    @Test
+    void sendBatch_ShouldSendAllMessagesInOneCall() throws Exception {
+        // Given
+        List<EmailTask> tasks = List.of(
+                new EmailTask("verification", "a@example.com", "anna", "token-a"),
+                new EmailTask("reset", "b@example.com", "bert", "token-b", true),
+                new EmailTask("welcome", "c@example.com", "cara", "USER"));
+
+        // When
+        Map<EmailTask, Exception> failed = emailService.sendBatch(tasks);
+
+        // Then
+        assertThat(failed).isEmpty();
+        ArgumentCaptor<MimeMessage[]> captor = ArgumentCaptor.forClass(MimeMessage[].class);
+        verify(mailSender, times(1)).send(captor.capture());
+        MimeMessage[] messages = captor.getValue();
+        assertThat(messages).extracting(message -> ((InternetAddress) message.getAllRecipients()[0]).getAddress())
+                .containsExactly("a@example.com", "b@example.com", "c@example.com");
+        assertThat(raw(messages[0])).contains("token-a");
+        assertThat(messages[1].getSubject()).contains("Password Reset");
+    }
+
+    @Test
+    void send_ShouldSendTextAndHtmlAlternatives_ForVerification() throws Exception {
+        // Given
+        EmailTask task = new EmailTask("verification", "a@example.com", "<anna>", "token-a");
+
+        // When
+        emailService.send(task);
+
+        // Then
+        ArgumentCaptor<MimeMessage> captor = ArgumentCaptor.forClass(MimeMessage.class);
+        verify(mailSender).send(captor.capture());
+        MimeMessage message = captor.getValue();
+        message.saveChanges();
+        assertThat(message.getSubject()).isEqualTo("Verify Your Email - User Management");
+        assertThat(message.getContent()).isInstanceOf(MimeMultipart.class);
+        String raw = raw(message);
+        assertThat(raw).contains("text/plain").contains("text/html");
+        assertThat(raw).contains("Hi <anna>,").contains("Hi &lt;anna&gt;,");
+        assertThat(raw).contains("http://localhost:8080/verify-email?email=a@example.com&token=token-a");
+    }
+
+    @Test
+    void send_ShouldUseLocaleVariant_WhenTaskHasLocale() throws Exception {
+        // Given
+        EmailTask task = new EmailTask("welcome", "a@example.com", "anna", "USER");
+        task.setLocale("es-ES");
+
+        // When
+        emailService.send(task);
+
+        // Then
+        ArgumentCaptor<MimeMessage> captor = ArgumentCaptor.forClass(MimeMessage.class);
+        verify(mailSender).send(captor.capture());
+        assertThat(captor.getValue().getSubject()).isEqualTo("¡Bienvenido a User Management!");
+    }
+
+    @Test
+    void queueVerificationEmail_ShouldDispatchTask() {
+        // Given
+        User user = new User();
+        user.setUsername("anna");
+        user.setEmail("anna@example.com");
+
+        // When
+        emailService.queueVerificationEmail(user, "token-a");
+
+        // Then
+        verify(emailDispatcher).dispatch(argThat(task -> task.getType().equals("verification")
+                && task.getEmail().equals("anna@example.com") && task.getToken().equals("token-a")
+                && task.getQueuedAt() != null));
+    }
+
+    @Test
+    void queuePasswordResetEmail_ShouldCarryRequestLocale() {
+        // Given
+        User user = new User();
+        user.setUsername("anna");
+        user.setEmail("anna@example.com");
+        LocaleContextHolder.setLocale(Locale.forLanguageTag("es-ES"));
+        try {
+            // When
+            emailService.queuePasswordResetEmail(user, "token-a");
+        } finally {
+            LocaleContextHolder.resetLocaleContext();
+        }
+
+        // Then
+        verify(emailDispatcher).dispatch(argThat(task -> "es-ES".equals(task.getLocale())));
+    }
+
+    @Test
+    void sendBatch_ShouldRecordLatencyPerType_ForDeliveredTasks() {
+        // Given
+        EmailTask reset = new EmailTask("reset", "b@example.com", "bert", "token-b", true);
+        reset.setQueuedAt(System.currentTimeMillis() - 3000);
+        EmailTask welcome = new EmailTask("welcome", "c@example.com", "cara", "USER");
+
+        // When
+        emailService.sendBatch(List.of(reset, welcome));
+
+        // Then
+        assertThat(meterRegistry.get("app.email.latency").tag("type", "reset").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("app.email.latency").tag("type", "reset").timer()
+                .totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(3000);
+        // Queued before the timestamp existed, nothing to measure from
+        assertThat(meterRegistry.find("app.email.latency").tag("type", "welcome").timer()).isNull();
+    }
+
+    @Test
+    void send_ShouldPropagateFailure_SoTheTaskCanBeRetried() {
+        // Given
+        doThrow(new MailSendException("Connection refused")).when(mailSender).send(any(MimeMessage.class));
+
+        // When / Then
+        assertThatThrownBy(() -> emailService.send(new EmailTask("verification", "a@example.com", "anna", "token-a")))
+                .isInstanceOf(MailSendException.class);
+    }
+
+    @Test
+    void sendBatch_ShouldReturnOnlyRejectedTasks_WhenSomeMessagesFail() {
+        // Given
+        EmailTask good = new EmailTask("verification", "good@example.com", "good", "token-1");
+        EmailTask bad = new EmailTask("verification", "bad@example.com", "bad", "token-2");
+        doAnswer(invocation -> {
+            MimeMessage rejected = invocation.getArgument(1);
+            throw new MailSendException(Map.of(rejected, new RuntimeException("550 mailbox unavailable")));
+        }).when(mailSender).send(any(MimeMessage[].class));
+
+        // When
+        Map<EmailTask, Exception> failed = emailService.sendBatch(List.of(good, bad));
+
+        // Then
+        assertThat(failed).containsOnlyKeys(bad);
+        assertThat(failed.get(bad)).hasMessageContaining("550");
+    }
+
+    @Test
+    void sendBatch_ShouldFailWholeBatch_WhenConnectionCannotBeOpened() {
+        // Given
+        EmailTask first = new EmailTask("verification", "a@example.com", "anna", "token-a");
+        EmailTask second = new EmailTask("welcome", "b@example.com", "bert", "USER");
+        doThrow(new MailSendException("Connection refused")).when(mailSender).send(any(MimeMessage[].class));
+
+        // When
+        Map<EmailTask, Exception> failed = emailService.sendBatch(List.of(first, second));
+
+        // Then
+        assertThat(failed).containsOnlyKeys(first, second);
+    }
+
+    @Test
+    void sendBatch_ShouldSkipUnknownTypes_WithoutReportingThemAsFailed() {
+        // Given
+        EmailTask unknown = new EmailTask("newsletter", "a@example.com", "anna", null);
+
+        // When
+        Map<EmailTask, Exception> failed = emailService.sendBatch(List.of(unknown));
+
+        // Then
+        assertThat(failed).isEmpty();
+        verify(mailSender, never()).send(any(MimeMessage[].class));
+    }
+
+    private static String raw(MimeMessage message) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,76 @@
+package me.manulorenzo.usermanagement.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmailTemplateEngineTest {
+
+    private final EmailTemplateEngine engine = new EmailTemplateEngine("classpath:email-templates/", "en");
+
+    @Test
+    void render_ShouldMatchPreviousPlainTextBody() {
+        EmailTemplateEngine.RenderedEmail email = engine.render("reset", null,
+                Map.of("username", "anna", "url", "http://host/reset", "token", "abc"));
+
+        assertThat(email.subject()).isEqualTo("Password Reset - User Management");
+        assertThat(email.text()).isEqualTo(String.format(
+                "Hi %s,\n\n" +
+                        "You requested a password reset for your User Management account.\n\n" +
+                        "Please click the following link to reset your password:\n" +
+                        "%s\n\n" +
+                        "Or use this reset code: %s\n\n" +
+                        "This link will expire in 1 hour.\n\n" +
+                        "If you didn't request a password reset, please ignore this email.\n\n" +
+                        "Best regards,\n" +
+                        "User Management Team",
+                "anna", "http://host/reset", "abc"));
+    }
+
+    @Test
+    void render_ShouldEscapeValuesInHtmlOnly() {
+        EmailTemplateEngine.RenderedEmail email = engine.render("welcome", Locale.ENGLISH,
+                Map.of("username", "<b>\"Tom\" & 'Jerry'</b>", "loginUrl", "http://host", "role", "USER"));
+
+        assertThat(email.text()).contains("Hi <b>\"Tom\" & 'Jerry'</b>,");
+        assertThat(email.html()).contains("Hi &lt;b&gt;&quot;Tom&quot; &amp; &#39;Jerry&#39;&lt;/b&gt;,");
+    }
+
+    @Test
+    void render_ShouldFallBackToLanguageThenDefault() {
+        Map<String, String> values = Map.of("username", "anna", "url", "u", "token", "t");
+
+        assertThat(engine.render("verification", Locale.forLanguageTag("es-MX"), values).subject())
+                .isEqualTo("Verifica tu correo - User Management");
+        assertThat(engine.render("verification", Locale.GERMAN, values).subject())
+                .isEqualTo("Verify Your Email - User Management");
+    }
+
+    @Test
+    void render_ShouldResolveArbitraryLanguageTags_ToTemplateLocales() {
+        Map<String, String> values = Map.of("username", "anna", "url", "u", "token", "t");
+
+        assertThat(engine.render("verification", Locale.forLanguageTag("es-ES-u-ca-buddhist"), values).subject())
+                .isEqualTo("Verifica tu correo - User Management");
+        assertThat(engine.render("verification", Locale.forLanguageTag("qaa-Latn-XX-x-random"), values).subject())
+                .isEqualTo("Verify Your Email - User Management");
+    }
+
+    @Test
+    void render_ShouldRenderMissingValuesAsEmpty() {
+        EmailTemplateEngine.RenderedEmail email = engine.render("welcome", null, Map.of("username", "anna"));
+
+        assertThat(email.text()).contains("Your role: \n");
+    }
+
+    @Test
+    void render_ShouldReject_WhenTemplateDoesNotExist() {
+        assertThatThrownBy(() -> engine.render("newsletter", null, Map.of()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("not found");
+    }
+}
@@ -0,0 +1,122 @@
+package me.manulorenzo.usermanagement.service;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetup;
+import jakarta.mail.internet.MimeMessage;
+import me.manulorenzo.usermanagement.config.RabbitMQConfig;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Starts the application with {@code app.email.dispatcher=in-process} and no RabbitMQ, on H2 and
+ * GreenMail, and checks a registration still gets its verification email.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:in-process-email;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.amqp.RabbitAutoConfiguration",
+        "app.email.dispatcher=in-process",
+        // The first-admin claim is a Postgres INSERT ... ON CONFLICT, which H2 does not support
+        "app.security.first-user-admin=false",
+        "logging.file.name="
+})
+@AutoConfigureMockMvc
+class InProcessEmailDeliveryTest {
+
+    private static final GreenMail greenMail = new GreenMail(new ServerSetup(0, null, "smtp"));
+
+    static {
+        greenMail.start();
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.mail.host", () -> "localhost");
+        registry.add("spring.mail.port", () -> greenMail.getSmtp().getPort());
+    }
+
+    @AfterAll
+    static void stopMail() {
+        greenMail.stop();
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        greenMail.purgeEmailFromAllMailboxes();
+    }
+
+    @Test
+    void context_ShouldStartWithoutRabbitBeans() {
+        assertThat(applicationContext.getBean(EmailDispatcher.class)).isInstanceOf(InProcessEmailDispatcher.class);
+        for (Class<?> type : List.of(ConnectionFactory.class, RabbitTemplate.class, RabbitMQConfig.class,
+                EmailTaskListener.class, EmailBatchListener.class, EmailRetryHandler.class, EmailSendShaper.class,
+                OutboxService.class, OutboxRelay.class, OutboxPublisher.class, OutboxEmailDispatcher.class)) {
+            assertThat(applicationContext.getBeanNamesForType(type)).as(type.getSimpleName()).isEmpty();
+        }
+    }
+
+    @Test
+    void register_ShouldDeliverVerificationEmail() throws Exception {
+        register("anna", "anna@example.com", null);
+
+        MimeMessage message = receiveOne();
+        assertThat(message.getAllRecipients()[0].toString()).isEqualTo("anna@example.com");
+        assertThat(message.getSubject()).isEqualTo("Verify Your Email - User Management");
+        assertThat(GreenMailUtil.getBody(message)).contains("/verify-email?email=anna@example.com&token=");
+    }
+
+    @Test
+    void register_ShouldDeliverVerificationEmailInRequestLocale() throws Exception {
+        register("bert", "bert@example.com", "es-ES,es;q=0.9");
+
+        assertThat(receiveOne().getSubject()).isEqualTo("Verifica tu correo - User Management");
+    }
+
+    private void register(String username, String email, String acceptLanguage) throws Exception {
+        var request = post("/api/auth/register").with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"username\":\"" + username + "\",\"email\":\"" + email + "\",\"password\":\"password123\"}");
+        if (acceptLanguage != null) {
+            request.header(HttpHeaders.ACCEPT_LANGUAGE, acceptLanguage);
+        }
+        mockMvc.perform(request).andExpect(status().isOk());
+    }
+
+    private static MimeMessage receiveOne() {
+        assertThat(greenMail.waitForIncomingEmail(10_000, 1)).isTrue();
+        MimeMessage[] messages = greenMail.getReceivedMessages();
+        assertThat(messages).hasSize(1);
+        return messages[0];
+    }
+}
@@ -0,0 +1,193 @@
+package me.manulorenzo.usermanagement.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailSendException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InProcessEmailDispatcherTest {
+
+    private final EmailService emailService = mock(EmailService.class);
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @TempDir
+    Path spoolDir;
+
+    @SuppressWarnings("unchecked")
+    private InProcessEmailDispatcher dispatcher(int capacity, String spool, long backoffMs) {
+        ObjectProvider<EmailService> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(emailService);
+        return new InProcessEmailDispatcher(capacity, 1, spool, 1000, 3, backoffMs, 2.0, 2, provider, objectMapper, meterRegistry);
+    }
+
+    @Test
+    void dispatch_ShouldQueueOnlyAfterCommit() {
+        // Given
+        InProcessEmailDispatcher dispatcher = dispatcher(10, "", 10);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // When
+            dispatcher.dispatch(task("anna@example.com"));
+            int queuedBeforeCommit = dispatcher.depth();
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+            // Then
+            assertThat(queuedBeforeCommit).isZero();
+            assertThat(dispatcher.depth()).isEqualTo(1);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void sendNext_ShouldSendAndRemoveSpoolFile() throws Exception {
+        // Given
+        InProcessEmailDispatcher dispatcher = dispatcher(10, spoolDir.toString(), 10);
+        when(emailService.send(any())).thenReturn(true);
+        dispatcher.dispatch(task("anna@example.com"));
+        assertThat(spooledFiles()).hasSize(1);
+
+        // When
+        boolean sent = dispatcher.sendNext(0);
+
+        // Then
+        assertThat(sent).isTrue();
+        verify(emailService).send(argThat(task -> task.getEmail().equals("anna@example.com")));
+        assertThat(spooledFiles()).isEmpty();
+        assertThat(meterRegistry.get("app.email.sent").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void sweepSpool_ShouldSendTasksLeftByPreviousRun() throws Exception {
+        // Given
+        dispatcher(10, spoolDir.toString(), 10).dispatch(task("anna@example.com"));
+        InProcessEmailDispatcher restarted = dispatcher(10, spoolDir.toString(), 10);
+        when(emailService.send(any())).thenReturn(true);
+
+        // When
+        int queued = restarted.sweepSpool();
+        int queuedAgain = restarted.sweepSpool();
+        restarted.sendNext(0);
+
+        // Then
+        assertThat(queued).isEqualTo(1);
+        assertThat(queuedAgain).isZero();
+        verify(emailService).send(argThat(task -> task.getEmail().equals("anna@example.com")));
+        assertThat(spooledFiles()).isEmpty();
+    }
+
+    @Test
+    void dispatch_ShouldKeepTaskSpooled_WhenQueueIsFull() throws Exception {
+        // Given
+        InProcessEmailDispatcher dispatcher = dispatcher(1, spoolDir.toString(), 10);
+        dispatcher.dispatch(task("anna@example.com"));
+
+        // When
+        dispatcher.dispatch(task("bob@example.com"));
+
+        // Then
+        assertThat(dispatcher.depth()).isEqualTo(1);
+        assertThat(spooledFiles()).hasSize(2);
+        assertThat(meterRegistry.get("app.email.in-process.overflow").counter().count()).isEqualTo(1);
+        when(emailService.send(any())).thenReturn(true);
+        dispatcher.sendNext(0);
+        assertThat(dispatcher.sweepSpool()).isEqualTo(1);
+    }
+
+    @Test
+    void start_ShouldRetryTransientFailure_ThenSend() throws Exception {
+        // Given
+        InProcessEmailDispatcher dispatcher = dispatcher(10, spoolDir.toString(), 10);
+        when(emailService.send(any())).thenThrow(new MailSendException("421 try later")).thenReturn(true);
+        dispatcher.start();
+        try {
+            // When
+            dispatcher.dispatch(task("anna@example.com"));
+
+            // Then
+            verify(emailService, timeout(5000).times(2)).send(any());
+        } finally {
+            dispatcher.stop();
+        }
+        assertThat(meterRegistry.get("app.email.retried").counter().count()).isEqualTo(1);
+        assertThat(spooledFiles()).isEmpty();
+    }
+
+    @Test
+    void sendNext_ShouldMoveTaskAside_WhenFailureIsPermanent() throws Exception {
+        // Given
+        InProcessEmailDispatcher dispatcher = dispatcher(10, spoolDir.toString(), 10);
+        when(emailService.send(any())).thenThrow(new MailParseException("bad address"));
+        dispatcher.dispatch(task("anna@example.com"));
+
+        // When
+        dispatcher.sendNext(0);
+
+        // Then
+        verify(emailService, times(1)).send(any());
+        assertThat(spooledFiles()).isEmpty();
+        try (Stream<Path> dead = Files.list(spoolDir.resolve(InProcessEmailDispatcher.DEAD_DIRECTORY))) {
+            assertThat(dead).hasSize(1);
+        }
+        assertThat(meterRegistry.get("app.email.dead-lettered").tag("reason", "permanent").counter().count()).isEqualTo(1);
+        assertThat(dispatcher.sendNext(0)).isFalse();
+    }
+
+    @Test
+    void sendNext_ShouldPreferCriticalLane_ButNotStarveBulkLane() throws Exception {
+        // Given
+        InProcessEmailDispatcher dispatcher = dispatcher(10, "", 10);
+        when(emailService.send(any())).thenReturn(true);
+        dispatcher.dispatch(new EmailTask("welcome", "w1@example.com", "w1", "USER"));
+        dispatcher.dispatch(new EmailTask("welcome", "w2@example.com", "w2", "USER"));
+        for (int i = 1; i <= 4; i++) {
+            dispatcher.dispatch(task("v" + i + "@example.com"));
+        }
+
+        // When
+        for (int i = 0; i < 6; i++) {
+            dispatcher.sendNext(0);
+        }
+
+        // Then
+        ArgumentCaptor<EmailTask> captor = ArgumentCaptor.forClass(EmailTask.class);
+        verify(emailService, times(6)).send(captor.capture());
+        // Two critical tasks per bulk task with a critical weight of 2
+        assertThat(captor.getAllValues()).extracting(EmailTask::getEmail).containsExactly(
+                "v1@example.com", "v2@example.com", "w1@example.com", "v3@example.com", "v4@example.com", "w2@example.com");
+        assertThat(dispatcher.depth()).isZero();
+    }
+
+    private List<Path> spooledFiles() throws IOException {
+        try (Stream<Path> files = Files.list(spoolDir)) {
+            return files.filter(Files::isRegularFile).toList();
+        }
+    }
+
+    private static EmailTask task(String email) {
+        return new EmailTask("verification", email, "user", "token");
+    }
+}
@@ -0,0 +1,126 @@
+package me.manulorenzo.usermanagement.service;
+
+import me.manulorenzo.usermanagement.entity.OneTimeToken;
+import me.manulorenzo.usermanagement.entity.User;
+import me.manulorenzo.usermanagement.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LinkTokenServiceTest {
+
+    private static final String KEY = "link-signing-key-for-tests-only-at-least-32-bytes";
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    @Mock
+    private OneTimeTokenService oneTimeTokenService;
+    @Mock
+    private UserRepository userRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setUsername("john");
+        ReflectionTestUtils.setField(user, "id", 7L);
+        ReflectionTestUtils.setField(user, "version", 3L);
+    }
+
+    @Test
+    void signed_ShouldVerifyIssuedToken_WithoutWriting() {
+        LinkTokenService service = signed(NOW);
+        when(userRepository.findById(7L)).thenReturn(Optional.of(user));
+
+        String token = service.issue(user, OneTimeToken.Purpose.PASSWORD_RESET, Duration.ofHours(1));
+
+        assertThat(service.consume(token, OneTimeToken.Purpose.PASSWORD_RESET)).containsSame(user);
+        verifyNoInteractions(oneTimeTokenService);
+        verify(userRepository, never()).save(any());
+    }
+
+    @Test
+    void signed_ShouldReject_WhenUserChangedSinceIssued() {
+        LinkTokenService service = signed(NOW);
+        when(userRepository.findById(7L)).thenReturn(Optional.of(user));
+        String token = service.issue(user, OneTimeToken.Purpose.PASSWORD_RESET, Duration.ofHours(1));
+
+        // Using the token updates the user, which increments its version
+        ReflectionTestUtils.setField(user, "version", 4L);
+
+        assertThat(service.consume(token, OneTimeToken.Purpose.PASSWORD_RESET)).isEmpty();
+    }
+
+    @Test
+    void signed_ShouldReject_WhenExpired() {
+        String token = signed(NOW).issue(user, OneTimeToken.Purpose.EMAIL_VERIFICATION, Duration.ofHours(24));
+
+        assertThat(signed(NOW.plus(Duration.ofHours(24))).consume(token, OneTimeToken.Purpose.EMAIL_VERIFICATION)).isEmpty();
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void signed_ShouldReject_WhenPurposeDiffers() {
+        LinkTokenService service = signed(NOW);
+        String token = service.issue(user, OneTimeToken.Purpose.EMAIL_VERIFICATION, Duration.ofHours(24));
+
+        assertThat(service.consume(token, OneTimeToken.Purpose.PASSWORD_RESET)).isEmpty();
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void signed_ShouldReject_WhenTamperedOrMalformed() {
+        LinkTokenService service = signed(NOW);
+        String token = service.issue(user, OneTimeToken.Purpose.PASSWORD_RESET, Duration.ofHours(1));
+        char last = token.charAt(token.length() - 1);
+        String tampered = token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A');
+        String otherKey = new LinkTokenService(LinkTokenService.TokenMode.SIGNED, KEY + "-rotated", oneTimeTokenService,
+                userRepository, Clock.fixed(NOW, ZoneOffset.UTC)).issue(user, OneTimeToken.Purpose.PASSWORD_RESET, Duration.ofHours(1));
+
+        assertThat(service.consume(tampered, OneTimeToken.Purpose.PASSWORD_RESET)).isEmpty();
+        assertThat(service.consume(otherKey, OneTimeToken.Purpose.PASSWORD_RESET)).isEmpty();
+        assertThat(service.consume("not-a-token", OneTimeToken.Purpose.PASSWORD_RESET)).isEmpty();
+        assertThat(service.consume("a.b.c", OneTimeToken.Purpose.PASSWORD_RESET)).isEmpty();
+        assertThat(service.consume(null, OneTimeToken.Purpose.PASSWORD_RESET)).isEmpty();
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void stored_ShouldDelegateToOneTimeTokens() {
+        LinkTokenService service = new LinkTokenService("stored", "", oneTimeTokenService, userRepository);
+        when(oneTimeTokenService.issue(user, OneTimeToken.Purpose.EMAIL_VERIFICATION, Duration.ofHours(24))).thenReturn("stored-token");
+        when(oneTimeTokenService.consume("stored-token", OneTimeToken.Purpose.EMAIL_VERIFICATION)).thenReturn(Optional.of(7L));
+        when(userRepository.findById(7L)).thenReturn(Optional.of(user));
+
+        String token = service.issue(user, OneTimeToken.Purpose.EMAIL_VERIFICATION, Duration.ofHours(24));
+
+        assertThat(service.getMode()).isEqualTo(LinkTokenService.TokenMode.STORED);
+        assertThat(service.consume(token, OneTimeToken.Purpose.EMAIL_VERIFICATION)).containsSame(user);
+    }
+
+    @Test
+    void constructor_ShouldRejectShortSigningKey() {
+        assertThatThrownBy(() -> new LinkTokenService("signed", "too-short", oneTimeTokenService, userRepository))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private LinkTokenService signed(Instant now) {
+        return new LinkTokenService(LinkTokenService.TokenMode.SIGNED, KEY, oneTimeTokenService, userRepository,
+                Clock.fixed(now, ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,91 @@
+package me.manulorenzo.usermanagement.service;
+
+import me.manulorenzo.usermanagement.entity.OneTimeToken;
+import me.manulorenzo.usermanagement.entity.User;
+import me.manulorenzo.usermanagement.repository.OneTimeTokenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OneTimeTokenServiceTest {
+
+    @Mock
+    private OneTimeTokenRepository oneTimeTokenRepository;
+
+    private OneTimeTokenService oneTimeTokenService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        oneTimeTokenService = new OneTimeTokenService(oneTimeTokenRepository);
+        user = new User();
+        user.setUsername("john");
+        ReflectionTestUtils.setField(user, "id", 1L);
+    }
+
+    @Test
+    void issue_ShouldStoreOnlyHash_AndReplacePreviousTokens() {
+        Instant before = Instant.now();
+
+        String token = oneTimeTokenService.issue(user, OneTimeToken.Purpose.PASSWORD_RESET, Duration.ofHours(1));
+
+        ArgumentCaptor<OneTimeToken> saved = ArgumentCaptor.forClass(OneTimeToken.class);
+        verify(oneTimeTokenRepository).deleteByUserIdAndPurpose(1L, OneTimeToken.Purpose.PASSWORD_RESET);
+        verify(oneTimeTokenRepository).save(saved.capture());
+        assertThat(token).hasSize(43);
+        assertThat(saved.getValue().getTokenHash()).isEqualTo(OneTimeTokenService.hash(token)).isNotEqualTo(token).hasSize(64);
+        assertThat(saved.getValue().getPurpose()).isEqualTo(OneTimeToken.Purpose.PASSWORD_RESET);
+        assertThat(saved.getValue().getUser()).isSameAs(user);
+        assertThat(saved.getValue().getExpiresAt()).isAfterOrEqualTo(before.plus(Duration.ofHours(1)));
+    }
+
+    @Test
+    void issue_ShouldGenerateDifferentTokens() {
+        String first = oneTimeTokenService.issue(user, OneTimeToken.Purpose.EMAIL_VERIFICATION, Duration.ofHours(24));
+        String second = oneTimeTokenService.issue(user, OneTimeToken.Purpose.EMAIL_VERIFICATION, Duration.ofHours(24));
+
+        assertThat(first).isNotEqualTo(second);
+    }
+
+    @Test
+    void consume_ShouldLookUpByHashAndPurpose() {
+        when(oneTimeTokenRepository.consume(eq(OneTimeTokenService.hash("raw-token")), eq("EMAIL_VERIFICATION"), any(Instant.class)))
+                .thenReturn(Optional.of(1L));
+
+        assertThat(oneTimeTokenService.consume("raw-token", OneTimeToken.Purpose.EMAIL_VERIFICATION)).contains(1L);
+    }
+
+    @Test
+    void consume_ShouldReturnEmpty_WhenTokenBlank() {
+        assertThat(oneTimeTokenService.consume(" ", OneTimeToken.Purpose.PASSWORD_RESET)).isEmpty();
+        assertThat(oneTimeTokenService.consume(null, OneTimeToken.Purpose.PASSWORD_RESET)).isEmpty();
+        verify(oneTimeTokenRepository, never()).consume(anyString(), anyString(), any());
+    }
+
+    @Test
+    void purgeExpired_ShouldDeleteTokensExpiredBeforeNow() {
+        Instant before = Instant.now();
+        when(oneTimeTokenRepository.deleteExpired(any(Instant.class))).thenReturn(3);
+
+        oneTimeTokenService.purgeExpired();
+
+        ArgumentCaptor<Instant> now = ArgumentCaptor.forClass(Instant.class);
+        verify(oneTimeTokenRepository).deleteExpired(now.capture());
+        assertThat(now.getValue()).isAfterOrEqualTo(before);
+    }
+}
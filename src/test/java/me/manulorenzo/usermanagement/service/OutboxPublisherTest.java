@@ -0,0 +1,132 @@
+package me.manulorenzo.usermanagement.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.manulorenzo.usermanagement.entity.OutboxMessage;
+import me.manulorenzo.usermanagement.repository.OutboxMessageRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxPublisherTest {
+
+    private final OutboxRelay outboxRelay = mock(OutboxRelay.class);
+    private final OutboxMessageRepository repository = mock(OutboxMessageRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private OutboxPublisher publisher(int capacity, int batchSize, OutboxPublisher.OverflowPolicy overflowPolicy) {
+        return new OutboxPublisher(capacity, batchSize, overflowPolicy, outboxRelay, repository,
+                TransactionOperations.withoutTransaction(), meterRegistry);
+    }
+
+    @Test
+    void publishNextBatch_ShouldPublishBufferedMessagesAndDeleteConfirmedRows() throws Exception {
+        // Given
+        OutboxPublisher publisher = publisher(10, 2, OutboxPublisher.OverflowPolicy.DEFER);
+        OutboxMessage first = row(1);
+        OutboxMessage second = row(2);
+        publisher.offer(first);
+        publisher.offer(second);
+        publisher.offer(row(3));
+        when(outboxRelay.publish(anyList())).thenReturn(List.of(1L));
+
+        // When
+        int published = publisher.publishNextBatch(0);
+
+        // Then
+        assertThat(published).isEqualTo(1);
+        verify(outboxRelay).publish(List.of(first, second));
+        verify(repository).deleteByIdIn(List.of(1L));
+        assertThat(publisher.depth()).isEqualTo(1);
+        assertThat(meterRegistry.get("app.outbox.published").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("app.outbox.unconfirmed").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("app.outbox.publisher.depth").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void publishNextBatch_ShouldKeepRows_WhenNothingWasConfirmed() throws Exception {
+        // Given
+        OutboxPublisher publisher = publisher(10, 10, OutboxPublisher.OverflowPolicy.DEFER);
+        publisher.offer(row(1));
+        when(outboxRelay.publish(anyList())).thenReturn(List.of());
+
+        // When
+        int published = publisher.publishNextBatch(0);
+
+        // Then
+        assertThat(published).isZero();
+        verify(repository, never()).deleteByIdIn(any());
+    }
+
+    @Test
+    void offer_ShouldRejectNewMessage_WhenFullAndDeferring() {
+        // Given
+        OutboxPublisher publisher = publisher(2, 10, OutboxPublisher.OverflowPolicy.DEFER);
+        publisher.offer(row(1));
+        publisher.offer(row(2));
+
+        // When
+        boolean accepted = publisher.offer(row(3));
+
+        // Then
+        assertThat(accepted).isFalse();
+        assertThat(publisher.depth()).isEqualTo(2);
+        assertThat(meterRegistry.get("app.outbox.publisher.overflow").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void offer_ShouldEvictOldestMessage_WhenFullAndDroppingOldest() throws Exception {
+        // Given
+        OutboxPublisher publisher = publisher(2, 10, OutboxPublisher.OverflowPolicy.DROP_OLDEST);
+        OutboxMessage second = row(2);
+        OutboxMessage third = row(3);
+        publisher.offer(row(1));
+        publisher.offer(second);
+
+        // When
+        boolean accepted = publisher.offer(third);
+
+        // Then
+        assertThat(accepted).isTrue();
+        assertThat(meterRegistry.get("app.outbox.publisher.overflow").counter().count()).isEqualTo(1);
+        when(outboxRelay.publish(anyList())).thenReturn(List.of(2L, 3L));
+        publisher.publishNextBatch(0);
+        verify(outboxRelay).publish(List.of(second, third));
+    }
+
+    @Test
+    void start_ShouldPublishOfferedMessagesOnPublisherThread() {
+        // Given
+        OutboxPublisher publisher = publisher(10, 10, OutboxPublisher.OverflowPolicy.DEFER);
+        when(outboxRelay.publish(anyList())).thenReturn(List.of(7L));
+        publisher.start();
+        try {
+            // When
+            publisher.offer(row(7));
+
+            // Then
+            verify(repository, timeout(2000)).deleteByIdIn(List.of(7L));
+        } finally {
+            publisher.stop();
+        }
+        assertThat(publisher.isRunning()).isFalse();
+    }
+
+    private static OutboxMessage row(long id) {
+        OutboxMessage message = new OutboxMessage("", "emailQueue", "me.manulorenzo.usermanagement.service.EmailTask",
+                "{\"email\":\"user" + id + "@example.com\"}", Instant.now());
+        ReflectionTestUtils.setField(message, "id", id);
+        return message;
+    }
+}
@@ -0,0 +1,146 @@
+package me.manulorenzo.usermanagement.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.manulorenzo.usermanagement.entity.OutboxMessage;
+import me.manulorenzo.usermanagement.repository.OutboxMessageRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxRelayTest {
+
+    private final OutboxMessageRepository repository = mock(OutboxMessageRepository.class);
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Message> published = new ArrayList<>();
+
+    private OutboxRelay relay(int batchSize, long confirmTimeoutMs) {
+        return new OutboxRelay(true, batchSize, confirmTimeoutMs, 0, repository, rabbitTemplate,
+                TransactionOperations.withoutTransaction(), meterRegistry);
+    }
+
+    @Test
+    void relay_ShouldPublishAndDeleteConfirmedRows() {
+        // Given
+        when(repository.lockNextBatch(eq(100), any())).thenReturn(List.of(row(1), row(2)));
+        confirm(Set.of(), Set.of());
+
+        // When
+        int relayed = relay(100, 1000).relay();
+
+        // Then
+        assertThat(relayed).isEqualTo(2);
+        verify(repository).deleteByIdIn(List.of(1L, 2L));
+        assertThat(published).hasSize(2);
+        assertThat(published.get(0).getMessageProperties().<String>getHeader("__TypeId__"))
+                .isEqualTo("me.manulorenzo.usermanagement.service.EmailTask");
+        assertThat(new String(published.get(0).getBody(), StandardCharsets.UTF_8)).isEqualTo("{\"email\":\"user1@example.com\"}");
+        assertThat(meterRegistry.get("app.outbox.published").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void relay_ShouldKeepNackedAndReturnedRows_ForTheNextRun() {
+        // Given
+        when(repository.lockNextBatch(eq(3), any())).thenReturn(List.of(row(1), row(2), row(3)));
+        confirm(Set.of("2"), Set.of("3"));
+
+        // When
+        int relayed = relay(3, 1000).relay();
+
+        // Then
+        assertThat(relayed).isEqualTo(1);
+        verify(repository).deleteByIdIn(List.of(1L));
+        // A batch that was not fully confirmed ends the run instead of spinning on the same rows
+        verify(repository, times(1)).lockNextBatch(anyInt(), any());
+        assertThat(meterRegistry.get("app.outbox.unconfirmed").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void relay_ShouldKeepRows_WhenBrokerIsDown() {
+        // Given
+        when(repository.lockNextBatch(eq(100), any())).thenReturn(List.of(row(1), row(2)));
+        doAnswer(invocation -> {
+            throw new AmqpConnectException(new RuntimeException("Connection refused"));
+        }).when(rabbitTemplate).send(anyString(), anyString(), any(Message.class), any(CorrelationData.class));
+
+        // When
+        int relayed = relay(100, 1000).relay();
+
+        // Then
+        assertThat(relayed).isZero();
+        verify(repository, never()).deleteByIdIn(any());
+        verify(rabbitTemplate, times(1)).send(anyString(), anyString(), any(Message.class), any(CorrelationData.class));
+    }
+
+    @Test
+    void relay_ShouldKeepRows_WhenConfirmTimesOut() {
+        // Given
+        when(repository.lockNextBatch(eq(100), any())).thenReturn(List.of(row(1)));
+
+        // When
+        int relayed = relay(100, 50).relay();
+
+        // Then
+        assertThat(relayed).isZero();
+        verify(repository, never()).deleteByIdIn(any());
+    }
+
+    @Test
+    void relay_ShouldContinueWithNextBatch_WhenBatchWasFull() {
+        // Given
+        when(repository.lockNextBatch(eq(2), any())).thenReturn(List.of(row(1), row(2)), List.of(row(3)));
+        confirm(Set.of(), Set.of());
+
+        // When
+        int relayed = relay(2, 1000).relay();
+
+        // Then
+        assertThat(relayed).isEqualTo(3);
+        verify(repository).deleteByIdIn(List.of(1L, 2L));
+        verify(repository).deleteByIdIn(List.of(3L));
+    }
+
+    private void confirm(Set<String> nacked, Set<String> returned) {
+        doAnswer(invocation -> {
+            Message message = invocation.getArgument(2);
+            CorrelationData correlationData = invocation.getArgument(3);
+            published.add(message);
+            if (returned.contains(correlationData.getId())) {
+                correlationData.setReturned(new ReturnedMessage(message, 312, "NO_ROUTE", "", "emailQueue"));
+            }
+            correlationData.getFuture().complete(new CorrelationData.Confirm(!nacked.contains(correlationData.getId()),
+                    nacked.contains(correlationData.getId()) ? "nack" : null));
+            return null;
+        }).when(rabbitTemplate).send(eq(""), eq("emailQueue"), any(Message.class), any(CorrelationData.class));
+    }
+
+    private static OutboxMessage row(long id) {
+        OutboxMessage message = new OutboxMessage("", "emailQueue", "me.manulorenzo.usermanagement.service.EmailTask",
+                "{\"email\":\"user" + id + "@example.com\"}", Instant.now());
+        ReflectionTestUtils.setField(message, "id", id);
+        return message;
+    }
+}
@@ -0,0 +1,154 @@
+package me.manulorenzo.usermanagement.service;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetup;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mail.SimpleMailMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PooledJavaMailSenderTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(PooledJavaMailSenderTest.class);
+
+    private static final int THREADS = 8;
+    private static final int MESSAGES_PER_THREAD = 50;
+
+    private GreenMail greenMail;
+    private final List<PooledJavaMailSender> senders = new ArrayList<>();
+
+    @BeforeEach
+    void startMail() {
+        greenMail = new GreenMail(new ServerSetup(0, null, "smtp"));
+        greenMail.start();
+    }
+
+    @AfterEach
+    void stopMail() {
+        senders.forEach(PooledJavaMailSender::destroy);
+        greenMail.stop();
+    }
+
+    @Test
+    void send_ShouldReuseAtMostPoolSizeConnections_AndOutpaceConnectPerSend() throws Exception {
+        AtomicInteger pooledConnects = new AtomicInteger();
+        AtomicInteger plainConnects = new AtomicInteger();
+
+        long plainNanos = sendConcurrently(sender(0, 100, 30_000, plainConnects));
+        long pooledNanos = sendConcurrently(sender(4, 1_000, 30_000, pooledConnects));
+
+        int total = THREADS * MESSAGES_PER_THREAD;
+        assertThat(greenMail.getReceivedMessages()).hasSize(2 * total);
+        assertThat(plainConnects.get()).isEqualTo(total);
+        assertThat(pooledConnects.get()).isLessThanOrEqualTo(4);
+        logger.info("Sent {} emails from {} threads: {} msg/s connect-per-send, {} msg/s pooled",
+                total, THREADS, total * 1_000_000_000L / plainNanos, total * 1_000_000_000L / pooledNanos);
+    }
+
+    @Test
+    void send_ShouldReconnect_AfterMaxMessagesPerConnection() {
+        AtomicInteger connects = new AtomicInteger();
+        PooledJavaMailSender sender = sender(1, 3, 30_000, connects);
+
+        for (int i = 0; i < 10; i++) {
+            sender.send(message("user" + i + "@localhost"));
+        }
+
+        assertThat(greenMail.getReceivedMessages()).hasSize(10);
+        assertThat(connects.get()).isEqualTo(4);
+    }
+
+    @Test
+    void send_ShouldReconnect_WhenServerDroppedConnection() {
+        AtomicInteger connects = new AtomicInteger();
+        PooledJavaMailSender sender = sender(1, 100, 30_000, connects);
+        sender.send(message("before@localhost"));
+
+        restartMail();
+        sender.send(message("after@localhost"));
+
+        assertThat(greenMail.getReceivedMessages()).hasSize(1);
+        assertThat(connects.get()).isEqualTo(2);
+    }
+
+    @Test
+    void keepAlive_ShouldCloseIdleConnections_ThatNoLongerAnswer() throws Exception {
+        AtomicInteger connects = new AtomicInteger();
+        PooledJavaMailSender sender = sender(2, 100, 1, connects);
+        sender.send(message("first@localhost"));
+        Thread.sleep(5);
+        sender.keepAlive();
+        assertThat(sender.idleConnections()).isEqualTo(1);
+
+        restartMail();
+        Thread.sleep(5);
+        sender.keepAlive();
+
+        assertThat(sender.idleConnections()).isZero();
+    }
+
+    private long sendConcurrently(PooledJavaMailSender sender) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < MESSAGES_PER_THREAD; i++) {
+                        sender.send(message("user" + thread + "-" + i + "@localhost"));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return System.nanoTime() - start;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void restartMail() {
+        int port = greenMail.getSmtp().getPort();
+        greenMail.stop();
+        greenMail = new GreenMail(new ServerSetup(port, null, "smtp"));
+        greenMail.start();
+    }
+
+    private PooledJavaMailSender sender(int poolSize, int maxMessagesPerConnection, long keepAliveMs, AtomicInteger connects) {
+        PooledJavaMailSender sender = new PooledJavaMailSender(poolSize, maxMessagesPerConnection, keepAliveMs, 5_000) {
+            @Override
+            protected Transport connectTransport() throws MessagingException {
+                connects.incrementAndGet();
+                return super.connectTransport();
+            }
+        };
+        sender.setHost("localhost");
+        sender.setPort(greenMail.getSmtp().getPort());
+        senders.add(sender);
+        return sender;
+    }
+
+    private static SimpleMailMessage message(String to) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom("noreply@localhost");
+        message.setTo(to);
+        message.setSubject("Pool test");
+        message.setText("Hello " + to);
+        return message;
+    }
+}
@@ -0,0 +1,102 @@
+package me.manulorenzo.usermanagement.service;
+
+import me.manulorenzo.usermanagement.entity.RefreshToken;
+import me.manulorenzo.usermanagement.entity.User;
+import me.manulorenzo.usermanagement.repository.RefreshTokenRepository;
+import me.manulorenzo.usermanagement.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hammers a single user from 64 threads against a real database. Without per-user locking these
+ * interleavings fail with duplicate (user, device) keys and stale-state deletes.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "jwt.refresh-token.expiration-ms=60000",
+        "app.sessions.max-per-user=5"
+})
+@Import({RefreshTokenService.class, UserLockService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RefreshTokenServiceConcurrencyTest {
+
+    private static final int THREADS = 64;
+    private static final int ITERATIONS = 5;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setUsername("stress");
+        user.setEmail("stress@example.com");
+        user.setPassword("password");
+        user = userRepository.save(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        refreshTokenRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentLoginRefreshAndLogout_ShouldNotFail_WhenSameUserHammeredFrom64Threads() throws Exception {
+        // Given
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        // When
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            String device = "device-" + (t % 8);
+            boolean logsOut = t % 4 == 0;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    RefreshToken token = refreshTokenService.createRefreshToken("stress", device);
+                    refreshTokenService.findByToken(token.getToken())
+                            .ifPresent(refreshTokenService::verifyExpiration);
+                    if (logsOut) {
+                        refreshTokenService.deleteByToken(token.getToken());
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS); // rethrows any worker failure
+        }
+        executor.shutdown();
+
+        // Then
+        assertThat(refreshTokenRepository.countByUser(user)).isLessThanOrEqualTo(5);
+    }
+}
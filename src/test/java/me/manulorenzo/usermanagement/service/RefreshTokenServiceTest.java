@@ -10,15 +10,20 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
 
 import java.time.Instant;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -43,14 +48,17 @@ class RefreshTokenServiceTest {
 
         refreshTokenService = new RefreshTokenService(
                 refreshTokenExpirationMs,
+                2,
                 refreshTokenRepository,
-                userRepository
+                userRepository,
+                new UserLockService("local", 64, TransactionOperations.withoutTransaction(), null)
         );
 
         testUser = new User();
         testUser.setUsername("testuser");
         testUser.setEmail("test@example.com");
         testUser.setPassword("password");
+        ReflectionTestUtils.setField(testUser, "id", 1L);
 
         Role userRole = new Role();
         userRole.setName("USER");
@@ -68,7 +76,7 @@ class RefreshTokenServiceTest {
     void createRefreshToken_ShouldCreateNewToken_WhenUserExists() {
         // Given
         when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
-        when(refreshTokenRepository.findByUser(testUser)).thenReturn(Optional.empty());
+        when(refreshTokenRepository.findByUserAndDeviceId(testUser, RefreshToken.DEFAULT_DEVICE)).thenReturn(Optional.empty());
         when(refreshTokenRepository.save(any(RefreshToken.class))).thenReturn(testRefreshToken);
 
         // When
@@ -85,23 +93,65 @@ class RefreshTokenServiceTest {
     }
 
     @Test
-    void createRefreshToken_ShouldDeleteExistingToken_WhenUserHasExistingToken() {
+    void createRefreshToken_ShouldRotateTokenInPlace_WhenDeviceAlreadyHasSession() {
         // Given
         RefreshToken existingToken = new RefreshToken();
         existingToken.setToken("existing-token");
         existingToken.setUser(testUser);
+        existingToken.setDeviceId("phone");
+        existingToken.setCreatedAt(Instant.now().minusSeconds(3600));
 
         when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
-        when(refreshTokenRepository.findByUser(testUser)).thenReturn(Optional.of(existingToken));
-        when(refreshTokenRepository.save(any(RefreshToken.class))).thenReturn(testRefreshToken);
+        when(refreshTokenRepository.findByUserAndDeviceId(testUser, "phone")).thenReturn(Optional.of(existingToken));
+        when(refreshTokenRepository.save(existingToken)).thenReturn(existingToken);
 
         // When
-        RefreshToken result = refreshTokenService.createRefreshToken("testuser");
+        RefreshToken result = refreshTokenService.createRefreshToken("testuser", "phone");
 
         // Then
-        assertThat(result).isNotNull();
-        verify(refreshTokenRepository).delete(existingToken);
-        verify(refreshTokenRepository).save(any(RefreshToken.class));
+        assertThat(result).isSameAs(existingToken);
+        assertThat(result.getToken()).isNotEqualTo("existing-token");
+        assertThat(result.getLastUsedAt()).isNotNull();
+        verify(refreshTokenRepository, never()).delete(any(RefreshToken.class));
+        verify(refreshTokenRepository, never()).countByUser(any(User.class));
+    }
+
+    @Test
+    void createRefreshToken_ShouldEvictLeastRecentlyUsedSession_WhenSessionCapReached() {
+        // Given
+        RefreshToken oldest = new RefreshToken();
+        oldest.setToken("oldest-token");
+        oldest.setUser(testUser);
+        oldest.setDeviceId("tablet");
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+        when(refreshTokenRepository.findByUserAndDeviceId(testUser, "web")).thenReturn(Optional.empty());
+        when(refreshTokenRepository.countByUser(testUser)).thenReturn(2L);
+        when(refreshTokenRepository.findByUserOrderByLastUsedAtAsc(eq(testUser), any(Limit.class))).thenReturn(List.of(oldest));
+        when(refreshTokenRepository.save(any(RefreshToken.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        RefreshToken result = refreshTokenService.createRefreshToken("testuser", "web");
+
+        // Then
+        assertThat(result.getDeviceId()).isEqualTo("web");
+        verify(refreshTokenRepository).findByUserOrderByLastUsedAtAsc(testUser, Limit.of(1));
+        verify(refreshTokenRepository).deleteAll(List.of(oldest));
+    }
+
+    @Test
+    void createRefreshToken_ShouldUseDefaultDevice_WhenDeviceIdBlank() {
+        // Given
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+        when(refreshTokenRepository.findByUserAndDeviceId(testUser, RefreshToken.DEFAULT_DEVICE)).thenReturn(Optional.empty());
+        when(refreshTokenRepository.save(any(RefreshToken.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        RefreshToken result = refreshTokenService.createRefreshToken("testuser", "  ");
+
+        // Then
+        assertThat(result.getDeviceId()).isEqualTo(RefreshToken.DEFAULT_DEVICE);
+        verify(refreshTokenRepository, never()).deleteAll(any());
     }
 
     @Test
@@ -157,7 +207,7 @@ class RefreshTokenServiceTest {
 
         // Then
         assertThat(result).isEqualTo(testRefreshToken);
-        verify(refreshTokenRepository, never()).delete(any(RefreshToken.class));
+        verify(refreshTokenRepository, never()).deleteByToken(anyString());
     }
 
     @Test
@@ -170,7 +220,36 @@ class RefreshTokenServiceTest {
                 .isInstanceOf(RuntimeException.class)
                 .hasMessage("Refresh token was expired. Please make a new signin request");
 
-        verify(refreshTokenRepository).delete(testRefreshToken);
+        verify(refreshTokenRepository).deleteByToken("test-refresh-token");
+    }
+
+    @Test
+    void revokeSession_ShouldReturnFalse_WhenDeviceHasNoSession() {
+        // Given
+        when(userRepository.findIdByUsername("testuser")).thenReturn(Optional.of(1L));
+        when(refreshTokenRepository.deleteByUsernameAndDeviceId("testuser", "phone")).thenReturn(0);
+
+        // When & Then
+        assertThat(refreshTokenService.revokeSession("testuser", "phone")).isFalse();
+    }
+
+    @Test
+    void revokeSession_ShouldReturnFalse_WhenUserNotFound() {
+        // Given
+        when(userRepository.findIdByUsername("ghost")).thenReturn(Optional.empty());
+
+        // When & Then
+        assertThat(refreshTokenService.revokeSession("ghost", "phone")).isFalse();
+        verify(refreshTokenRepository, never()).deleteByUsernameAndDeviceId(anyString(), anyString());
+    }
+
+    @Test
+    void findSessions_ShouldBoundQueryBySessionCap() {
+        // When
+        refreshTokenService.findSessions("testuser");
+
+        // Then
+        verify(refreshTokenRepository).findSessionsByUsername("testuser", Limit.of(2));
     }
 
     @Test
@@ -185,26 +264,26 @@ class RefreshTokenServiceTest {
     @Test
     void deleteByToken_ShouldDeleteToken_WhenTokenExists() {
         // Given
-        when(refreshTokenRepository.findByToken("test-token")).thenReturn(Optional.of(testRefreshToken));
+        when(refreshTokenRepository.findUserIdByToken("test-token")).thenReturn(Optional.of(1L));
 
         // When
         refreshTokenService.deleteByToken("test-token");
 
         // Then
-        verify(refreshTokenRepository).findByToken("test-token");
-        verify(refreshTokenRepository).delete(testRefreshToken);
+        verify(refreshTokenRepository).findUserIdByToken("test-token");
+        verify(refreshTokenRepository).deleteByToken("test-token");
     }
 
     @Test
     void deleteByToken_ShouldNotDelete_WhenTokenNotExists() {
         // Given
-        when(refreshTokenRepository.findByToken("nonexistent-token")).thenReturn(Optional.empty());
+        when(refreshTokenRepository.findUserIdByToken("nonexistent-token")).thenReturn(Optional.empty());
 
         // When
         refreshTokenService.deleteByToken("nonexistent-token");
 
         // Then
-        verify(refreshTokenRepository).findByToken("nonexistent-token");
-        verify(refreshTokenRepository, never()).delete(any(RefreshToken.class));
+        verify(refreshTokenRepository).findUserIdByToken("nonexistent-token");
+        verify(refreshTokenRepository, never()).deleteByToken(anyString());
     }
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package me.manulorenzo.usermanagement.service;
+
+import me.manulorenzo.usermanagement.entity.Role;
+import me.manulorenzo.usermanagement.repository.RoleRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RoleRegistryTest {
+
+    @Mock
+    private RoleRepository roleRepository;
+
+    private long now;
+
+    @Test
+    void find_ShouldServeFromSnapshot_WithoutQueryingRoles() {
+        // Given
+        when(roleRepository.findAll()).thenReturn(List.of(new Role("ADMIN"), new Role("USER")));
+        RoleRegistry roleRegistry = new RoleRegistry(roleRepository, 30000, () -> now);
+        roleRegistry.refresh();
+
+        // When
+        Optional<RoleRegistry.RoleEntry> admin = roleRegistry.find("ADMIN");
+        roleRegistry.find("USER");
+        roleRegistry.find("ADMIN");
+
+        // Then
+        assertThat(admin).isPresent();
+        assertThat(admin.get().authority()).isEqualTo(new SimpleGrantedAuthority("ROLE_ADMIN"));
+        verify(roleRepository, times(1)).findAll();
+        verify(roleRepository, never()).findByName(anyString());
+    }
+
+    @Test
+    void find_ShouldReload_WhenRoleCreatedAfterSnapshot() {
+        // Given
+        when(roleRepository.findAll())
+                .thenReturn(List.of(new Role("USER")))
+                .thenReturn(List.of(new Role("USER"), new Role("MODERATOR")));
+        RoleRegistry roleRegistry = new RoleRegistry(roleRepository, 30000, () -> now);
+        roleRegistry.refresh();
+        now += TimeUnit.SECONDS.toNanos(31);
+
+        // When
+        Optional<RoleRegistry.RoleEntry> moderator = roleRegistry.find("MODERATOR");
+
+        // Then
+        assertThat(moderator).isPresent();
+        verify(roleRepository, times(2)).findAll();
+    }
+
+    @Test
+    void find_ShouldNotReload_WhenMissRepeatsWithinInterval() {
+        // Given
+        when(roleRepository.findAll()).thenReturn(List.of(new Role("USER")));
+        RoleRegistry roleRegistry = new RoleRegistry(roleRepository, 30000, () -> now);
+        roleRegistry.refresh();
+        now += TimeUnit.SECONDS.toNanos(31);
+
+        // When
+        Optional<RoleRegistry.RoleEntry> first = roleRegistry.find("MISSING");
+        now += TimeUnit.SECONDS.toNanos(1);
+        Optional<RoleRegistry.RoleEntry> second = roleRegistry.find("MISSING");
+        roleRegistry.find("OTHER");
+
+        // Then
+        assertThat(first).isEmpty();
+        assertThat(second).isEmpty();
+        verify(roleRepository, times(2)).findAll();
+    }
+
+    @Test
+    void findRole_ShouldReturnEmpty_WhenRoleDoesNotExist() {
+        // Given
+        when(roleRepository.findAll()).thenReturn(List.of(new Role("USER")));
+        RoleRegistry roleRegistry = new RoleRegistry(roleRepository, 30000, () -> now);
+        roleRegistry.refresh();
+
+        // When & Then
+        assertThat(roleRegistry.findRole("MISSING")).isEmpty();
+        verify(roleRepository, never()).getReferenceById(anyLong());
+    }
+
+    @Test
+    void authorityOf_ShouldReturnSameInstance_ForKnownRole() {
+        // Given
+        when(roleRepository.findAll()).thenReturn(List.of(new Role("USER")));
+        RoleRegistry roleRegistry = new RoleRegistry(roleRepository, 30000, () -> now);
+        roleRegistry.refresh();
+
+        // When & Then
+        assertThat(roleRegistry.authorityOf("USER")).isSameAs(roleRegistry.authorityOf("USER"));
+        assertThat(roleRegistry.authorityOf("UNKNOWN")).isEqualTo(new SimpleGrantedAuthority("ROLE_UNKNOWN"));
+    }
+}
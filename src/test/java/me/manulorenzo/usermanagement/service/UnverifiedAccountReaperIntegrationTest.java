@@ -0,0 +1,127 @@
+package me.manulorenzo.usermanagement.service;
+
+import me.manulorenzo.usermanagement.entity.User;
+import me.manulorenzo.usermanagement.repository.RoleRepository;
+import me.manulorenzo.usermanagement.repository.UserRepository;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+@SpringBootTest(properties = {
+        "spring.rabbitmq.listener.simple.auto-startup=false",
+        "app.accounts.unverified.chunk-size=2",
+        "app.accounts.unverified.archive=true"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class UnverifiedAccountReaperIntegrationTest {
+    private static final PostgreSQLContainer<?> postgres;
+
+    static {
+        postgres = new PostgreSQLContainer<>("postgres:16");
+        postgres.start();
+    }
+
+    @Autowired
+    private UnverifiedAccountReaper reaper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Test
+    void reap_ShouldRemoveOnlyOldUnverifiedAccounts() {
+        Long stale = saveUser("stale", false, Duration.ofDays(30));
+        Long staleVerified = saveUser("stale-verified", true, Duration.ofDays(30));
+        Long fresh = saveUser("fresh", false, Duration.ofHours(1));
+
+        reaper.reap();
+
+        Assertions.assertFalse(userRepository.existsById(stale));
+        Assertions.assertTrue(userRepository.existsById(staleVerified));
+        Assertions.assertTrue(userRepository.existsById(fresh));
+        Assertions.assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM app_user_archive WHERE user_id = ?", Integer.class, stale));
+    }
+
+    @Test
+    void reap_ShouldKeepUnverifiedAdmin_SoTheBootstrapAdminIsNeverLost() {
+        Long admin = saveUser("bootstrap-admin", false, Duration.ofDays(30));
+        transactionTemplate.executeWithoutResult(status -> {
+            User user = userRepository.findById(admin).orElseThrow();
+            user.getRoles().add(roleRepository.findByName("ADMIN").orElseThrow());
+        });
+
+        reaper.reap();
+
+        Assertions.assertTrue(userRepository.existsById(admin));
+    }
+
+    @Test
+    void reap_ShouldReapEachAccountOnce_WhenRunConcurrently() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            saveUser("concurrent-" + i, false, Duration.ofDays(30));
+        }
+        int reapers = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(reapers);
+        List<Future<Integer>> results = new java.util.ArrayList<>();
+        for (int i = 0; i < reapers; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return reaper.reap();
+            }));
+        }
+        start.countDown();
+
+        int reaped = 0;
+        for (Future<Integer> result : results) {
+            reaped += result.get();
+        }
+        executor.shutdown();
+
+        Assertions.assertEquals(10, reaped);
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM app_user WHERE username LIKE 'concurrent-%'", Integer.class));
+    }
+
+    private Long saveUser(String username, boolean verified, Duration age) {
+        User user = new User();
+        user.setUsername(username + "-" + System.nanoTime());
+        user.setEmail(user.getUsername() + "@example.com");
+        user.setPassword("encoded");
+        user.setEmailVerified(verified);
+        Long id = userRepository.save(user).getId();
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(
+                "UPDATE app_user SET created_at = ? WHERE id = ?", Timestamp.from(Instant.now().minus(age)), id));
+        return id;
+    }
+}
@@ -0,0 +1,88 @@
+package me.manulorenzo.usermanagement.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.manulorenzo.usermanagement.repository.RefreshTokenRepository;
+import me.manulorenzo.usermanagement.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UnverifiedAccountReaperTest {
+
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void reap_ShouldDeleteInChunks_UntilChunkIsNotFull() {
+        UnverifiedAccountReaper reaper = reaper(7, 2, 10, false);
+        when(userRepository.lockUnverifiedCreatedBefore(any(Instant.class), eq("ADMIN"), eq(2)))
+                .thenReturn(List.of(1L, 2L), List.of(3L));
+        when(userRepository.deleteByIdIn(anyList())).thenAnswer(invocation -> invocation.<List<Long>>getArgument(0).size());
+        Instant before = Instant.now();
+
+        int reaped = reaper.reap();
+
+        assertThat(reaped).isEqualTo(3);
+        verify(userRepository, times(2)).lockUnverifiedCreatedBefore(
+                argThat(cutoff -> !cutoff.isAfter(before.minus(Duration.ofDays(7)).plusSeconds(1))), eq("ADMIN"), eq(2));
+        verify(userRepository).deleteRoleLinksByUserIdIn(List.of(1L, 2L));
+        verify(refreshTokenRepository).deleteByUserIdIn(List.of(1L, 2L));
+        verify(userRepository).deleteByIdIn(List.of(3L));
+        verify(userRepository, never()).archiveByIdIn(anyList(), any());
+        assertThat(meterRegistry.get("app.accounts.unverified.reaped").counter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("app.accounts.unverified.reap").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void reap_ShouldStopAfterMaxChunks() {
+        UnverifiedAccountReaper reaper = reaper(7, 1, 3, false);
+        when(userRepository.lockUnverifiedCreatedBefore(any(Instant.class), eq("ADMIN"), eq(1))).thenReturn(List.of(1L));
+        when(userRepository.deleteByIdIn(anyList())).thenReturn(1);
+
+        assertThat(reaper.reap()).isEqualTo(3);
+        verify(userRepository, times(3)).lockUnverifiedCreatedBefore(any(Instant.class), eq("ADMIN"), eq(1));
+    }
+
+    @Test
+    void reap_ShouldArchiveBeforeDeleting_WhenArchiveEnabled() {
+        UnverifiedAccountReaper reaper = reaper(7, 10, 10, true);
+        when(userRepository.lockUnverifiedCreatedBefore(any(Instant.class), eq("ADMIN"), eq(10))).thenReturn(List.of(4L));
+        when(userRepository.deleteByIdIn(List.of(4L))).thenReturn(1);
+
+        reaper.reap();
+
+        var order = inOrder(userRepository);
+        order.verify(userRepository).archiveByIdIn(eq(List.of(4L)), any(Instant.class));
+        order.verify(userRepository).deleteByIdIn(List.of(4L));
+    }
+
+    @Test
+    void reap_ShouldDoNothing_WhenRetentionDisabled() {
+        assertThat(reaper(0, 10, 10, false).reap()).isZero();
+        verify(userRepository, never()).lockUnverifiedCreatedBefore(any(), any(), anyInt());
+    }
+
+    private UnverifiedAccountReaper reaper(int retentionDays, int chunkSize, int maxChunks, boolean archive) {
+        return new UnverifiedAccountReaper(retentionDays, chunkSize, maxChunks, archive, "ADMIN", userRepository,
+                refreshTokenRepository, TransactionOperations.withoutTransaction(), meterRegistry);
+    }
+}
@@ -0,0 +1,136 @@
+package me.manulorenzo.usermanagement.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class UserLockServiceTest {
+
+    private static final int THREADS = 64;
+    private static final int ITERATIONS = 500;
+
+    private final UserLockService localLockService =
+            new UserLockService("local", 64, TransactionOperations.withoutTransaction(), null);
+
+    @Test
+    void withUserLock_ShouldSerializeSameUser_WhenHammeredFrom64Threads() throws Exception {
+        // Given
+        int[] counter = {0}; // deliberately not thread-safe
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger maxInside = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        // When
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    localLockService.withUserLock(42L, () -> {
+                        maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                        counter[0]++;
+                        inside.decrementAndGet();
+                    });
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Then
+        assertThat(counter[0]).isEqualTo(THREADS * ITERATIONS);
+        assertThat(maxInside.get()).isEqualTo(1);
+    }
+
+    @Test
+    void withUserLock_ShouldNotBlockOtherUsers_WhenUserLockIsHeld() throws Exception {
+        // Given
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> holder = executor.submit(() -> localLockService.withUserLock(1L, () -> {
+            holding.countDown();
+            await(release);
+        }));
+        holding.await(5, TimeUnit.SECONDS);
+
+        // When
+        String result = localLockService.withUserLock(2L, () -> "done");
+
+        // Then
+        assertThat(result).isEqualTo("done");
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+    }
+
+    @Test
+    void constructor_ShouldRoundStripesUpToPowerOfTwo() {
+        assertThat(new UserLockService("local", 100, TransactionOperations.withoutTransaction(), null).getStripeCount())
+                .isEqualTo(128);
+        assertThat(new UserLockService("LOCAL", 0, TransactionOperations.withoutTransaction(), null).getStripeCount())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void withUserLock_ShouldTakeAdvisoryLock_WhenAdvisoryMode() {
+        // Given
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        UserLockService advisoryLockService =
+                new UserLockService("advisory", 64, TransactionOperations.withoutTransaction(), jdbcTemplate);
+
+        // When
+        String result = advisoryLockService.withUserLock(7L, () -> "done");
+
+        // Then
+        assertThat(advisoryLockService.getMode()).isEqualTo(UserLockService.LockMode.ADVISORY);
+        assertThat(result).isEqualTo("done");
+        verify(jdbcTemplate).query(eq("SELECT pg_advisory_xact_lock(?, ?)"), any(ResultSetExtractor.class),
+                eq(UserLockService.ADVISORY_LOCK_NAMESPACE), eq(7));
+    }
+
+    @Test
+    void withUserLock_ShouldNotTouchDatabase_WhenLocalMode() {
+        // Given
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        UserLockService lockService = new UserLockService("local", 64, TransactionOperations.withoutTransaction(), jdbcTemplate);
+
+        // When
+        lockService.withUserLock(7L, () -> "done");
+
+        // Then
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,19 +1,27 @@
 package me.manulorenzo.usermanagement.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import me.manulorenzo.usermanagement.dto.*;
+import me.manulorenzo.usermanagement.entity.OneTimeToken;
+import me.manulorenzo.usermanagement.entity.Profile;
 import me.manulorenzo.usermanagement.entity.Role;
 import me.manulorenzo.usermanagement.entity.User;
-import me.manulorenzo.usermanagement.repository.RoleRepository;
+import me.manulorenzo.usermanagement.repository.ProfileRepository;
+import me.manulorenzo.usermanagement.repository.UserProfileView;
 import me.manulorenzo.usermanagement.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
 
-import java.time.Instant;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -27,12 +35,19 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepo;
     @Mock
-    private RoleRepository roleRepo;
+    private RoleRegistry roleRegistry;
     @Mock
     private PasswordEncoder encoder;
     @Mock
     private EmailService emailService;
+    @Mock
+    private BootstrapService bootstrapService;
+    @Mock
+    private ProfileRepository profileRepo;
+    @Mock
+    private LinkTokenService linkTokenService;
 
+    private EmailCoalescer emailCoalescer;
     private UserService userService;
 
     @BeforeEach
@@ -40,16 +55,18 @@ class UserServiceTest {
         // Initialize UserService with test configuration values
         String adminRoleName = "ADMIN";
         String userRoleName = "USER";
-        boolean firstUserAdmin = true;
-
+        emailCoalescer = new EmailCoalescer(60000, 100, new SimpleMeterRegistry());
         userService = new UserService(
                 adminRoleName,
                 userRoleName,
-                firstUserAdmin,
+                bootstrapService,
                 userRepo,
-                roleRepo,
+                roleRegistry,
                 encoder,
-                emailService
+                emailService,
+                profileRepo,
+                linkTokenService,
+                emailCoalescer
         );
     }
 
@@ -57,82 +74,80 @@ class UserServiceTest {
     @Test
     void register_ShouldSaveUser_WhenValidRequest() {
         RegisterRequest request = new RegisterRequest("john", "john@example.com", "password");
-        when(userRepo.findByUsername("john")).thenReturn(Optional.empty());
-        when(userRepo.findByEmail("john@example.com")).thenReturn(Optional.empty());
         when(encoder.encode("password")).thenReturn("hashed");
-        when(userRepo.count()).thenReturn(0L);
-        when(roleRepo.findByName("ADMIN")).thenReturn(Optional.of(new Role("ADMIN")));
-        when(userRepo.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(bootstrapService.claimFirstAdmin()).thenReturn(true);
+        when(roleRegistry.findRole("ADMIN")).thenReturn(Optional.of(new Role("ADMIN")));
+        when(userRepo.saveAndFlush(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         userService.register(request);
 
-        verify(userRepo).save(any(User.class));
-        verify(emailService).queueVerificationEmail(any(User.class));
+        verify(userRepo).saveAndFlush(any(User.class));
+        verify(userRepo, never()).count();
+        verify(emailService).queueVerificationEmail(any(User.class), any());
     }
 
     @Test
     void register_ShouldSaveFirstUser_WithAdminRole() {
         RegisterRequest request = new RegisterRequest("alice", "alice@example.com", "pass");
-        when(userRepo.findByUsername("alice")).thenReturn(Optional.empty());
-        when(userRepo.findByEmail("alice@example.com")).thenReturn(Optional.empty());
         when(encoder.encode("pass")).thenReturn("hashed_pass");
-        when(userRepo.count()).thenReturn(0L);
-        when(roleRepo.findByName("ADMIN")).thenReturn(Optional.of(new Role("ADMIN")));
-        when(userRepo.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(bootstrapService.claimFirstAdmin()).thenReturn(true);
+        when(roleRegistry.findRole("ADMIN")).thenReturn(Optional.of(new Role("ADMIN")));
+        when(userRepo.saveAndFlush(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         userService.register(request);
-        verify(userRepo).save(any(User.class));
-        verify(emailService).queueVerificationEmail(any(User.class));
+        verify(userRepo).saveAndFlush(any(User.class));
+        verify(emailService).queueVerificationEmail(any(User.class), any());
     }
 
     @Test
     void register_ShouldSaveUser_WhenNotFirstUser_UserRole() {
         RegisterRequest request = new RegisterRequest("bob", "bob@example.com", "secret");
-        when(userRepo.findByUsername("bob")).thenReturn(Optional.empty());
-        when(userRepo.findByEmail("bob@example.com")).thenReturn(Optional.empty());
         when(encoder.encode("secret")).thenReturn("enc_secret");
-        when(userRepo.count()).thenReturn(10L);
-        when(roleRepo.findByName("USER")).thenReturn(Optional.of(new Role("USER")));
-        when(userRepo.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(bootstrapService.claimFirstAdmin()).thenReturn(false);
+        when(roleRegistry.findRole("USER")).thenReturn(Optional.of(new Role("USER")));
+        when(userRepo.saveAndFlush(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         userService.register(request);
-        verify(userRepo).save(any(User.class));
-        verify(emailService).queueVerificationEmail(any(User.class));
+        verify(userRepo).saveAndFlush(any(User.class));
+        verify(emailService).queueVerificationEmail(any(User.class), any());
     }
 
     @Test
     void register_ShouldThrow_WhenUsernameExists() {
         RegisterRequest request = new RegisterRequest("existing", "existing@example.com", "pass");
-        when(userRepo.findByUsername("existing")).thenReturn(Optional.of(new User()));
-
-        assertThrows(RuntimeException.class, () -> userService.register(request));
-        verify(userRepo, never()).save(any(User.class));
-        verify(emailService, never()).queueVerificationEmail(any(User.class));
+        when(encoder.encode("pass")).thenReturn("enc_pass");
+        when(roleRegistry.findRole("USER")).thenReturn(Optional.of(new Role("USER")));
+        when(userRepo.saveAndFlush(any(User.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate key violates unique constraint \"" + User.UK_USERNAME + "\""));
+
+        assertThrows(DataIntegrityViolationException.class, () -> userService.register(request));
+        verify(userRepo, never()).findByUsername(anyString());
+        verify(emailService, never()).queueVerificationEmail(any(User.class), any());
     }
 
     @Test
     void register_ShouldThrow_WhenEmailExists() {
         RegisterRequest request = new RegisterRequest("newuser", "existing@example.com", "pass");
-        when(userRepo.findByUsername("newuser")).thenReturn(Optional.empty());
-        when(userRepo.findByEmail("existing@example.com")).thenReturn(Optional.of(new User()));
-
-        assertThrows(RuntimeException.class, () -> userService.register(request));
-        verify(userRepo, never()).save(any(User.class));
-        verify(emailService, never()).queueVerificationEmail(any(User.class));
+        when(encoder.encode("pass")).thenReturn("enc_pass");
+        when(roleRegistry.findRole("USER")).thenReturn(Optional.of(new Role("USER")));
+        when(userRepo.saveAndFlush(any(User.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate key violates unique constraint \"" + User.UK_EMAIL + "\""));
+
+        assertThrows(DataIntegrityViolationException.class, () -> userService.register(request));
+        verify(userRepo, never()).findByEmail(anyString());
+        verify(emailService, never()).queueVerificationEmail(any(User.class), any());
     }
 
     @Test
     void register_ShouldThrow_WhenRoleMissing() {
         RegisterRequest request = new RegisterRequest("brad", "brad@example.com", "foo");
-        when(userRepo.findByUsername("brad")).thenReturn(Optional.empty());
-        when(userRepo.findByEmail("brad@example.com")).thenReturn(Optional.empty());
         when(encoder.encode("foo")).thenReturn("enc_foo");
-        when(userRepo.count()).thenReturn(1L);
-        when(roleRepo.findByName("USER")).thenReturn(Optional.empty());
+        when(bootstrapService.claimFirstAdmin()).thenReturn(false);
+        when(roleRegistry.findRole("USER")).thenReturn(Optional.empty());
 
         assertThrows(RuntimeException.class, () -> userService.register(request));
-        verify(userRepo, never()).save(any(User.class));
-        verify(emailService, never()).queueVerificationEmail(any(User.class));
+        verify(userRepo, never()).saveAndFlush(any(User.class));
+        verify(emailService, never()).queueVerificationEmail(any(User.class), any());
     }
 
     // Email Verification Tests
@@ -144,20 +159,16 @@ class UserServiceTest {
 
         User user = new User();
         user.setEmail("john@example.com");
-        user.setVerificationToken("valid-token");
-        user.setVerificationTokenExpiry(Instant.now().plusSeconds(3600));
         user.setEnabled(false);
         user.setEmailVerified(false);
 
-        when(userRepo.findByEmail("john@example.com")).thenReturn(Optional.of(user));
+        when(linkTokenService.consume("valid-token", OneTimeToken.Purpose.EMAIL_VERIFICATION)).thenReturn(Optional.of(user));
 
         String result = userService.verifyEmail(request);
 
         assertEquals("Email verification successful", result);
         assertTrue(user.isEnabled());
         assertTrue(user.isEmailVerified());
-        assertNull(user.getVerificationToken());
-        assertNull(user.getVerificationTokenExpiry());
         verify(userRepo).save(user);
         verify(emailService).queueWelcomeEmail(user);
     }
@@ -168,6 +179,7 @@ class UserServiceTest {
         request.setEmail("nonexistent@example.com");
         request.setToken("some-token");
 
+        when(linkTokenService.consume("some-token", OneTimeToken.Purpose.EMAIL_VERIFICATION)).thenReturn(Optional.empty());
         when(userRepo.findByEmail("nonexistent@example.com")).thenReturn(Optional.empty());
 
         assertThrows(RuntimeException.class, () -> userService.verifyEmail(request));
@@ -176,39 +188,54 @@ class UserServiceTest {
     }
 
     @Test
-    void verifyEmail_ShouldThrow_WhenTokenMismatch() {
+    void verifyEmail_ShouldThrow_WhenTokenInvalidOrExpired() {
         VerifyEmailRequest request = new VerifyEmailRequest();
         request.setEmail("john@example.com");
         request.setToken("wrong-token");
 
         User user = new User();
         user.setEmail("john@example.com");
-        user.setVerificationToken("correct-token");
-        user.setVerificationTokenExpiry(Instant.now().plusSeconds(3600));
 
+        when(linkTokenService.consume("wrong-token", OneTimeToken.Purpose.EMAIL_VERIFICATION)).thenReturn(Optional.empty());
         when(userRepo.findByEmail("john@example.com")).thenReturn(Optional.of(user));
 
-        assertThrows(RuntimeException.class, () -> userService.verifyEmail(request));
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> userService.verifyEmail(request));
+        assertEquals("Invalid or expired verification token", exception.getMessage());
         verify(userRepo, never()).save(any(User.class));
         verify(emailService, never()).queueWelcomeEmail(any(User.class));
     }
 
     @Test
-    void verifyEmail_ShouldThrow_WhenTokenExpired() {
+    void verifyEmail_ShouldThrow_WhenTokenBelongsToAnotherUser() {
         VerifyEmailRequest request = new VerifyEmailRequest();
         request.setEmail("john@example.com");
-        request.setToken("expired-token");
+        request.setToken("janes-token");
+
+        User jane = new User();
+        jane.setEmail("jane@example.com");
+
+        when(linkTokenService.consume("janes-token", OneTimeToken.Purpose.EMAIL_VERIFICATION)).thenReturn(Optional.of(jane));
+
+        assertThrows(RuntimeException.class, () -> userService.verifyEmail(request));
+        assertFalse(jane.isEmailVerified());
+        verify(userRepo, never()).save(any(User.class));
+    }
+
+    @Test
+    void verifyEmail_ShouldReturnAlreadyVerified_WhenTokenUsedBefore() {
+        VerifyEmailRequest request = new VerifyEmailRequest();
+        request.setEmail("john@example.com");
+        request.setToken("used-token");
 
         User user = new User();
         user.setEmail("john@example.com");
-        user.setVerificationToken("expired-token");
-        user.setVerificationTokenExpiry(Instant.now().minusSeconds(3600)); // expired
+        user.setEmailVerified(true);
 
+        when(linkTokenService.consume("used-token", OneTimeToken.Purpose.EMAIL_VERIFICATION)).thenReturn(Optional.empty());
         when(userRepo.findByEmail("john@example.com")).thenReturn(Optional.of(user));
 
-        assertThrows(RuntimeException.class, () -> userService.verifyEmail(request));
+        assertEquals("Email already verified", userService.verifyEmail(request));
         verify(userRepo, never()).save(any(User.class));
-        verify(emailService, never()).queueWelcomeEmail(any(User.class));
     }
 
     @Test
@@ -219,14 +246,13 @@ class UserServiceTest {
         user.setEmailVerified(false);
 
         when(userRepo.findByEmail(email)).thenReturn(Optional.of(user));
+        when(linkTokenService.issue(eq(user), eq(OneTimeToken.Purpose.EMAIL_VERIFICATION), any())).thenReturn("new-token");
 
         String result = userService.resendVerificationEmail(email);
 
         assertEquals("Verification email sent", result);
-        assertNotNull(user.getVerificationToken());
-        assertNotNull(user.getVerificationTokenExpiry());
-        verify(userRepo).save(user);
-        verify(emailService).queueVerificationEmail(user);
+        verify(userRepo, never()).save(any(User.class));
+        verify(emailService).queueVerificationEmail(user, "new-token");
     }
 
     @Test
@@ -235,8 +261,8 @@ class UserServiceTest {
         when(userRepo.findByEmail(email)).thenReturn(Optional.empty());
 
         assertThrows(RuntimeException.class, () -> userService.resendVerificationEmail(email));
-        verify(userRepo, never()).save(any(User.class));
-        verify(emailService, never()).queueVerificationEmail(any(User.class));
+        verify(linkTokenService, never()).issue(any(), any(), any());
+        verify(emailService, never()).queueVerificationEmail(any(User.class), any());
     }
 
     @Test
@@ -251,8 +277,8 @@ class UserServiceTest {
         String result = userService.resendVerificationEmail(email);
 
         assertEquals("Email already verified", result);
-        verify(userRepo, never()).save(any(User.class));
-        verify(emailService, never()).queueVerificationEmail(any(User.class));
+        verify(linkTokenService, never()).issue(any(), any(), any());
+        verify(emailService, never()).queueVerificationEmail(any(User.class), any());
     }
 
     // Password Reset Tests
@@ -265,14 +291,73 @@ class UserServiceTest {
         user.setEmail("john@example.com");
 
         when(userRepo.findByEmail("john@example.com")).thenReturn(Optional.of(user));
+        when(linkTokenService.issue(eq(user), eq(OneTimeToken.Purpose.PASSWORD_RESET), any())).thenReturn("reset-token");
 
         String result = userService.forgotPassword(request);
 
         assertEquals("Password reset email sent", result);
-        assertNotNull(user.getPasswordResetToken());
-        assertNotNull(user.getPasswordResetTokenExpiry());
-        verify(userRepo).save(user);
-        verify(emailService).queuePasswordResetEmail(user);
+        verify(userRepo, never()).save(any(User.class));
+        verify(emailService).queuePasswordResetEmail(user, "reset-token");
+    }
+
+    @Test
+    void forgotPassword_ShouldNotIssueAnotherToken_WhenRepeatedWithinWindow() {
+        ForgotPasswordRequest request = new ForgotPasswordRequest();
+        request.setEmail("john@example.com");
+
+        User user = new User();
+        user.setEmail("john@example.com");
+
+        when(userRepo.findByEmail("john@example.com")).thenReturn(Optional.of(user));
+        when(linkTokenService.issue(eq(user), eq(OneTimeToken.Purpose.PASSWORD_RESET), any())).thenReturn("reset-token");
+
+        userService.forgotPassword(request);
+        String result = userService.forgotPassword(request);
+
+        // Same answer, but the first email keeps the only valid token
+        assertEquals("Password reset email sent", result);
+        verify(linkTokenService, times(1)).issue(any(), any(), any());
+        verify(emailService, times(1)).queuePasswordResetEmail(any(User.class), any());
+    }
+
+    @Test
+    void resendVerificationEmail_ShouldNotSend_WhenRequestedRightAfterRegistration() {
+        // Given a user who just registered
+        RegisterRequest request = new RegisterRequest("john", "john@example.com", "password");
+        when(encoder.encode("password")).thenReturn("hashed");
+        when(bootstrapService.claimFirstAdmin()).thenReturn(false);
+        when(roleRegistry.findRole("USER")).thenReturn(Optional.of(new Role("USER")));
+        when(userRepo.saveAndFlush(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(linkTokenService.issue(any(User.class), eq(OneTimeToken.Purpose.EMAIL_VERIFICATION), any())).thenReturn("token");
+        userService.register(request);
+        User user = new User();
+        user.setEmail("john@example.com");
+        when(userRepo.findByEmail("john@example.com")).thenReturn(Optional.of(user));
+
+        // When they ask for a resend before the first email arrives
+        String result = userService.resendVerificationEmail("john@example.com");
+
+        // Then the registration email keeps the only valid token
+        assertEquals("Verification email sent", result);
+        verify(linkTokenService, times(1)).issue(any(), any(), any());
+        verify(emailService, times(1)).queueVerificationEmail(any(User.class), any());
+    }
+
+    @Test
+    void resendVerificationEmail_ShouldSendAgain_ForAnotherEmailType() {
+        User user = new User();
+        user.setEmail("john@example.com");
+
+        when(userRepo.findByEmail("john@example.com")).thenReturn(Optional.of(user));
+        when(linkTokenService.issue(eq(user), any(), any())).thenReturn("token");
+        ForgotPasswordRequest request = new ForgotPasswordRequest();
+        request.setEmail("john@example.com");
+        userService.forgotPassword(request);
+
+        String result = userService.resendVerificationEmail("john@example.com");
+
+        assertEquals("Verification email sent", result);
+        verify(emailService).queueVerificationEmail(user, "token");
     }
 
     @Test
@@ -283,8 +368,8 @@ class UserServiceTest {
         when(userRepo.findByEmail("nonexistent@example.com")).thenReturn(Optional.empty());
 
         assertThrows(RuntimeException.class, () -> userService.forgotPassword(request));
-        verify(userRepo, never()).save(any(User.class));
-        verify(emailService, never()).queuePasswordResetEmail(any(User.class));
+        verify(linkTokenService, never()).issue(any(), any(), any());
+        verify(emailService, never()).queuePasswordResetEmail(any(User.class), any());
     }
 
     @Test
@@ -296,67 +381,46 @@ class UserServiceTest {
 
         User user = new User();
         user.setEmail("john@example.com");
-        user.setPasswordResetToken("valid-reset-token");
-        user.setPasswordResetTokenExpiry(Instant.now().plusSeconds(3600));
 
-        when(userRepo.findByEmail("john@example.com")).thenReturn(Optional.of(user));
+        when(linkTokenService.consume("valid-reset-token", OneTimeToken.Purpose.PASSWORD_RESET)).thenReturn(Optional.of(user));
         when(encoder.encode("newPassword123")).thenReturn("encoded-new-password");
 
         String result = userService.resetPassword(request);
 
         assertEquals("Password reset successful", result);
         assertEquals("encoded-new-password", user.getPassword());
-        assertNull(user.getPasswordResetToken());
-        assertNull(user.getPasswordResetTokenExpiry());
         verify(userRepo).save(user);
     }
 
     @Test
-    void resetPassword_ShouldThrow_WhenUserNotFound() {
-        ResetPasswordRequest request = new ResetPasswordRequest();
-        request.setEmail("nonexistent@example.com");
-        request.setToken("some-token");
-        request.setNewPassword("newPassword123");
-
-        when(userRepo.findByEmail("nonexistent@example.com")).thenReturn(Optional.empty());
-
-        assertThrows(RuntimeException.class, () -> userService.resetPassword(request));
-        verify(userRepo, never()).save(any(User.class));
-    }
-
-    @Test
-    void resetPassword_ShouldThrow_WhenTokenMismatch() {
+    void resetPassword_ShouldThrow_WhenTokenInvalidOrExpired() {
         ResetPasswordRequest request = new ResetPasswordRequest();
         request.setEmail("john@example.com");
-        request.setToken("wrong-token");
+        request.setToken("expired-token");
         request.setNewPassword("newPassword123");
 
-        User user = new User();
-        user.setEmail("john@example.com");
-        user.setPasswordResetToken("correct-token");
-        user.setPasswordResetTokenExpiry(Instant.now().plusSeconds(3600));
+        when(linkTokenService.consume("expired-token", OneTimeToken.Purpose.PASSWORD_RESET)).thenReturn(Optional.empty());
 
-        when(userRepo.findByEmail("john@example.com")).thenReturn(Optional.of(user));
-
-        assertThrows(RuntimeException.class, () -> userService.resetPassword(request));
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> userService.resetPassword(request));
+        assertEquals("Invalid or expired reset token", exception.getMessage());
         verify(userRepo, never()).save(any(User.class));
     }
 
     @Test
-    void resetPassword_ShouldThrow_WhenTokenExpired() {
+    void resetPassword_ShouldThrow_WhenTokenBelongsToAnotherUser() {
         ResetPasswordRequest request = new ResetPasswordRequest();
         request.setEmail("john@example.com");
-        request.setToken("expired-token");
+        request.setToken("janes-token");
         request.setNewPassword("newPassword123");
 
-        User user = new User();
-        user.setEmail("john@example.com");
-        user.setPasswordResetToken("expired-token");
-        user.setPasswordResetTokenExpiry(Instant.now().minusSeconds(3600)); // expired
+        User jane = new User();
+        jane.setEmail("jane@example.com");
+        jane.setPassword("janes-password");
 
-        when(userRepo.findByEmail("john@example.com")).thenReturn(Optional.of(user));
+        when(linkTokenService.consume("janes-token", OneTimeToken.Purpose.PASSWORD_RESET)).thenReturn(Optional.of(jane));
 
         assertThrows(RuntimeException.class, () -> userService.resetPassword(request));
+        assertEquals("janes-password", jane.getPassword());
         verify(userRepo, never()).save(any(User.class));
     }
 
@@ -367,7 +431,7 @@ class UserServiceTest {
         user.setUsername("joan");
         Role role = new Role("MODERATOR");
         when(userRepo.findByUsername("joan")).thenReturn(Optional.of(user));
-        when(roleRepo.findByName("MODERATOR")).thenReturn(Optional.of(role));
+        when(roleRegistry.findRole("MODERATOR")).thenReturn(Optional.of(role));
 
         userService.addRoleToUser("joan", "MODERATOR");
         verify(userRepo).save(user);
@@ -385,7 +449,7 @@ class UserServiceTest {
         User user = new User();
         user.setUsername("pete");
         when(userRepo.findByUsername("pete")).thenReturn(Optional.of(user));
-        when(roleRepo.findByName("MISSING")).thenReturn(Optional.empty());
+        when(roleRegistry.findRole("MISSING")).thenReturn(Optional.empty());
         assertThrows(RuntimeException.class, () -> userService.addRoleToUser("pete", "MISSING"));
     }
 
@@ -397,7 +461,7 @@ class UserServiceTest {
         user.getRoles().add(role); // user already has the role
 
         when(userRepo.findByUsername("jane")).thenReturn(Optional.of(user));
-        when(roleRepo.findByName("USER")).thenReturn(Optional.of(role));
+        when(roleRegistry.findRole("USER")).thenReturn(Optional.of(new Role("USER"))); // a separate reference
 
         userService.addRoleToUser("jane", "USER");
 
@@ -408,17 +472,19 @@ class UserServiceTest {
     // Profile Management Tests
     @Test
     void getUserProfile_ShouldReturnProfile_WhenUserExists() {
-        User user = new User();
-        user.setUsername("john");
-        user.setEmail("john@example.com");
-        user.setFullName("John Doe");
-        user.setBio("Developer");
-        user.setImageUrl("http://example.com/image.jpg");
+        UserProfileView view = new SpelAwareProxyProjectionFactory().createProjection(UserProfileView.class, Map.of(
+                "username", "john",
+                "email", "john@example.com",
+                "fullName", "John Doe",
+                "bio", "Developer",
+                "imageUrl", "http://example.com/image.jpg"));
 
-        when(userRepo.findByUsername("john")).thenReturn(Optional.of(user));
+        when(userRepo.findProfileByUsername("john")).thenReturn(Optional.of(view));
 
         UserProfile profile = userService.getUserProfile("john");
 
+        verify(userRepo, never()).findByUsername(anyString());
+
         assertEquals("john", profile.getUsername());
         assertEquals("john@example.com", profile.getEmail());
         assertEquals("John Doe", profile.getFullName());
@@ -426,9 +492,22 @@ class UserServiceTest {
         assertEquals("http://example.com/image.jpg", profile.getImageUrl());
     }
 
+    @Test
+    void getUserProfile_ShouldReturnVersion_WhenUserExists() {
+        UserProfileView view = new SpelAwareProxyProjectionFactory().createProjection(UserProfileView.class, Map.of(
+                "id", 7L,
+                "username", "john",
+                "version", 3L));
+        when(userRepo.findProfileByUsername("john")).thenReturn(Optional.of(view));
+
+        UserProfile profile = userService.getUserProfile("john");
+
+        assertEquals(3L, profile.getVersion());
+    }
+
     @Test
     void getUserProfile_ShouldThrow_WhenUserNotFound() {
-        when(userRepo.findByUsername("nonexistent")).thenReturn(Optional.empty());
+        when(userRepo.findProfileByUsername("nonexistent")).thenReturn(Optional.empty());
         assertThrows(UsernameNotFoundException.class, () -> userService.getUserProfile("nonexistent"));
     }
 
@@ -438,13 +517,13 @@ class UserServiceTest {
         oldUser.setUsername("oldUser");
         oldUser.setEmail("old@example.com");
         when(userRepo.findByUsername("oldUser")).thenReturn(Optional.of(oldUser));
-        when(userRepo.findByUsername("newName")).thenReturn(Optional.of(new User())); // already taken
+        when(userRepo.saveAndFlush(oldUser)).thenThrow(new DataIntegrityViolationException(User.UK_USERNAME)); // already taken
 
         UserProfile changes = new UserProfile();
         changes.setUsername("newName"); // try changing to taken username
         changes.setEmail("other@example.com");
 
-        assertThrows(RuntimeException.class, () -> userService.updateUserProfile("oldUser", changes));
+        assertThrows(DataIntegrityViolationException.class, () -> userService.updateUserProfile("oldUser", changes));
     }
 
     @Test
@@ -453,13 +532,13 @@ class UserServiceTest {
         oldUser.setUsername("carl");
         oldUser.setEmail("carl@ex.com");
         when(userRepo.findByUsername("carl")).thenReturn(Optional.of(oldUser));
-        when(userRepo.findByEmail("dupe@ex.com")).thenReturn(Optional.of(new User())); // already taken
+        when(userRepo.saveAndFlush(oldUser)).thenThrow(new DataIntegrityViolationException(User.UK_EMAIL)); // already taken
 
         UserProfile changes = new UserProfile();
         changes.setUsername("carl");
         changes.setEmail("dupe@ex.com"); // try changing to taken email
 
-        assertThrows(RuntimeException.class, () -> userService.updateUserProfile("carl", changes));
+        assertThrows(DataIntegrityViolationException.class, () -> userService.updateUserProfile("carl", changes));
     }
 
     @Test
@@ -468,8 +547,6 @@ class UserServiceTest {
         oldUser.setUsername("jdoe");
         oldUser.setEmail("jdoe@ex.com");
         when(userRepo.findByUsername("jdoe")).thenReturn(Optional.of(oldUser));
-        when(userRepo.findByUsername("newjdoe")).thenReturn(Optional.empty());
-        when(userRepo.findByEmail("new@ex.com")).thenReturn(Optional.empty());
 
         UserProfile changes = new UserProfile();
         changes.setUsername("newjdoe");
@@ -480,19 +557,28 @@ class UserServiceTest {
 
         UserProfile result = userService.updateUserProfile("jdoe", changes);
 
-        verify(userRepo).save(oldUser);
+        verify(userRepo).saveAndFlush(oldUser);
+        verify(userRepo, never()).findByEmail(anyString());
+        verify(profileRepo).save(any(Profile.class));
+        // The app_user row changes anyway, so its version moves without an extra lock
+        verify(userRepo, never()).incrementVersion(any(), any());
         assertEquals("newjdoe", oldUser.getUsername());
         assertEquals("new@ex.com", oldUser.getEmail());
-        assertEquals("Joe Doe", oldUser.getFullName());
+        assertEquals("Joe Doe", result.getFullName());
         assertEquals("newjdoe", result.getUsername());
     }
 
     @Test
     void updateUserProfile_ShouldUpdateFields_WhenNoUsernameOrEmailChange() {
         User oldUser = new User();
+        ReflectionTestUtils.setField(oldUser, "id", 5L);
+        ReflectionTestUtils.setField(oldUser, "version", 2L);
         oldUser.setUsername("emma");
         oldUser.setEmail("emma@ex.com");
         when(userRepo.findByUsername("emma")).thenReturn(Optional.of(oldUser));
+        Profile profile = new Profile(oldUser);
+        when(profileRepo.findById(5L)).thenReturn(Optional.of(profile));
+        when(userRepo.incrementVersion(5L, 2L)).thenReturn(1);
 
         UserProfile changes = new UserProfile();
         changes.setUsername("emma");
@@ -503,11 +589,123 @@ class UserServiceTest {
 
         UserProfile result = userService.updateUserProfile("emma", changes);
 
-        verify(userRepo).save(oldUser);
+        verify(userRepo).saveAndFlush(oldUser);
+        verify(profileRepo).save(profile);
         assertEquals("emma", oldUser.getUsername());
-        assertEquals("Emma Watson", oldUser.getFullName());
-        assertEquals("Actress", oldUser.getBio());
+        assertEquals("Emma Watson", profile.getFullName());
+        assertEquals("Actress", profile.getBio());
         assertEquals("Emma Watson", result.getFullName());
+        assertEquals(3L, result.getVersion());
+    }
+
+    @Test
+    void patchUserProfile_ShouldOnlyApplySuppliedFields() {
+        User user = new User();
+        ReflectionTestUtils.setField(user, "id", 6L);
+        ReflectionTestUtils.setField(user, "version", 0L);
+        user.setUsername("lena");
+        user.setEmail("lena@ex.com");
+        Profile profile = new Profile(user);
+        profile.setFullName("Lena Smith");
+        profile.setBio("Designer");
+        profile.setImageUrl("img");
+        when(userRepo.findByUsername("lena")).thenReturn(Optional.of(user));
+        when(profileRepo.findById(6L)).thenReturn(Optional.of(profile));
+        when(userRepo.incrementVersion(6L, 0L)).thenReturn(1);
+
+        UserProfile patch = new UserProfile();
+        patch.setBio("Illustrator");
+
+        UserProfile result = userService.patchUserProfile("lena", patch);
+
+        verify(userRepo).saveAndFlush(user);
+        assertEquals("lena", user.getUsername());
+        assertEquals("lena@ex.com", user.getEmail());
+        assertEquals("Lena Smith", profile.getFullName());
+        assertEquals("Illustrator", profile.getBio());
+        assertEquals("img", profile.getImageUrl());
+        assertEquals("Illustrator", result.getBio());
+        assertEquals("Lena Smith", result.getFullName());
+    }
+
+    @Test
+    void patchUserProfile_ShouldThrow_WhenVersionIsStale() {
+        User user = new User();
+        user.setUsername("lena");
+        ReflectionTestUtils.setField(user, "version", 4L);
+        when(userRepo.findByUsername("lena")).thenReturn(Optional.of(user));
+
+        UserProfile patch = new UserProfile();
+        patch.setBio("Illustrator");
+        patch.setVersion(3L);
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> userService.patchUserProfile("lena", patch));
+        verify(userRepo, never()).saveAndFlush(any());
+        verify(profileRepo, never()).save(any());
+    }
+
+    @Test
+    void patchUserProfile_ShouldApply_WhenVersionMatches() {
+        User user = new User();
+        ReflectionTestUtils.setField(user, "id", 6L);
+        user.setUsername("lena");
+        ReflectionTestUtils.setField(user, "version", 4L);
+        when(userRepo.findByUsername("lena")).thenReturn(Optional.of(user));
+        when(userRepo.incrementVersion(6L, 4L)).thenReturn(1);
+
+        UserProfile patch = new UserProfile();
+        patch.setFullName("Lena Smith");
+        patch.setVersion(4L);
+
+        UserProfile result = userService.patchUserProfile("lena", patch);
+
+        // First profile edit creates the profile row
+        verify(profileRepo).save(any(Profile.class));
+        verify(userRepo).saveAndFlush(user);
+        assertEquals("Lena Smith", result.getFullName());
+        assertEquals(5L, result.getVersion());
+    }
+
+    @Test
+    void patchUserProfile_ShouldThrow_WhenVersionMovedBeforeIncrement() {
+        User user = new User();
+        ReflectionTestUtils.setField(user, "id", 6L);
+        user.setUsername("lena");
+        ReflectionTestUtils.setField(user, "version", 4L);
+        when(userRepo.findByUsername("lena")).thenReturn(Optional.of(user));
+        when(userRepo.incrementVersion(6L, 4L)).thenReturn(0);
+
+        UserProfile patch = new UserProfile();
+        patch.setBio("Illustrator");
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> userService.patchUserProfile("lena", patch));
+    }
+
+    @Test
+    void patchUserProfile_ShouldNotWriteProfile_WhenNothingChanged() {
+        User user = new User();
+        ReflectionTestUtils.setField(user, "id", 6L);
+        user.setUsername("lena");
+        Profile profile = new Profile(user);
+        profile.setBio("Designer");
+        when(userRepo.findByUsername("lena")).thenReturn(Optional.of(user));
+        when(profileRepo.findById(6L)).thenReturn(Optional.of(profile));
+
+        UserProfile patch = new UserProfile();
+        patch.setUsername("lena");
+        patch.setBio("Designer");
+
+        userService.patchUserProfile("lena", patch);
+
+        verify(profileRepo, never()).save(any());
+        verify(userRepo, never()).incrementVersion(any(), any());
+    }
+
+    @Test
+    void patchUserProfile_ShouldThrow_WhenUserNotFound() {
+        when(userRepo.findByUsername("nonexistent")).thenReturn(Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> userService.patchUserProfile("nonexistent", new UserProfile()));
     }
 
     @Test
@@ -0,0 +1,84 @@
+package me.manulorenzo.usermanagement.tools;
+
+import me.manulorenzo.usermanagement.security.BreachedPasswordChecker;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BreachedPasswordFileBuilderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void build_ShouldWriteSortedDistinctPrefixes_WhenInputSpansSeveralRuns() throws IOException {
+        Random random = new Random(42);
+        List<String> lines = new ArrayList<>();
+        long[] prefixes = new long[1000];
+        for (int i = 0; i < prefixes.length; i++) {
+            prefixes[i] = random.nextLong();
+            lines.add(String.format("%016X%024X:%d", prefixes[i], i, i + 1));
+        }
+        // Duplicates, lower case and lines that are not hashes
+        lines.add(String.format("%016x%024x", prefixes[0], 0));
+        lines.add(String.format("%016X%024X:7", prefixes[500], 1));
+        lines.add("");
+        lines.add("not-a-hash");
+        lines.add("ZZZZZZZZZZZZZZZZZZZZZZZZZZZZZZZZZZZZZZZZ");
+        Path list = tempDir.resolve("hashes.txt");
+        Files.write(list, lines);
+        Path output = tempDir.resolve("breached.bin");
+
+        BreachedPasswordFileBuilder.Result result = BreachedPasswordFileBuilder.build(list, output, 64);
+
+        assertThat(result.entries()).isEqualTo(1000);
+        assertThat(result.skippedLines()).isEqualTo(3);
+        long[] expected = prefixes.clone();
+        BreachedPasswordFileBuilder.sortUnsigned(expected, expected.length);
+        assertThat(readPrefixes(output)).containsExactly(expected);
+    }
+
+    @Test
+    void build_ShouldNotWriteAnEntry_ForUnparsableHash() throws IOException {
+        Path list = tempDir.resolve("hashes.txt");
+        Files.write(list, List.of("ZZZZZZZZZZZZZZZZZZZZZZZZZZZZZZZZZZZZZZZZ", "5BAA61E4C9B93F3F0682250B6CF8331B7EE68FD8:3861493"));
+        Path output = tempDir.resolve("breached.bin");
+
+        BreachedPasswordFileBuilder.Result result = BreachedPasswordFileBuilder.build(list, output, 64);
+
+        assertThat(result.entries()).isEqualTo(1);
+        assertThat(result.skippedLines()).isEqualTo(1);
+        assertThat(readPrefixes(output)).containsExactly(Long.parseUnsignedLong("5BAA61E4C9B93F3F", 16)).doesNotContain(0L);
+    }
+
+    @Test
+    void sortUnsigned_ShouldPlaceHighBitValuesLast() {
+        long[] values = {-1L, 5L, Long.MIN_VALUE, 0L, Long.MAX_VALUE};
+
+        BreachedPasswordFileBuilder.sortUnsigned(values, values.length);
+
+        assertThat(values).containsExactly(0L, 5L, Long.MAX_VALUE, Long.MIN_VALUE, -1L);
+    }
+
+    private static long[] readPrefixes(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            byte[] header = in.readNBytes(BreachedPasswordChecker.HEADER_BYTES);
+            assertThat(Arrays.copyOf(header, BreachedPasswordChecker.FILE_MAGIC.length)).isEqualTo(BreachedPasswordChecker.FILE_MAGIC);
+            long[] prefixes = new long[(int) ((Files.size(file) - header.length) / Long.BYTES)];
+            for (int i = 0; i < prefixes.length; i++) {
+                prefixes[i] = in.readLong();
+            }
+            return prefixes;
+        }
+    }
+}